@@ -16,6 +16,9 @@
 package eu.hlavki.text.lemmagen;
 
 import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.codec.ModelCodec;
+import eu.hlavki.text.lemmagen.codec.ModelFormat;
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -23,13 +26,33 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.SectionedModel;
+import eu.hlavki.text.lemmagen.metrics.LemmatizerMetrics;
+import eu.hlavki.text.lemmagen.metrics.MetricsRegistry;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  *
@@ -39,6 +62,7 @@ public final class LemmatizerFactory {
 
     private static final Logger log = LoggerFactory.getLogger(LemmatizerFactory.class);
     private static final String PREBUILD_PATTERN = "{0}.lem";
+    public static final ModelCodec DEFAULT_CODEC = ModelCodec.GZIP;
 
 
     private LemmatizerFactory() {
@@ -51,7 +75,7 @@ public final class LemmatizerFactory {
         InputStream in = cl.getResourceAsStream(resource);
         Lemmatizer result = null;
         if (in != null) {
-            result = read(in);
+            result = read(in, name);
         } else {
             throw new IOException("Cannot found resource " + resource);
         }
@@ -59,14 +83,201 @@ public final class LemmatizerFactory {
     }
 
 
+    /**
+     * Loads prebuilt lexicon in common fork join pool.
+     *
+     * @param name name of lexicon
+     * @return future completed with lemmatizer
+     * @throws IOException if lexicon resource doesn't exist
+     * @see #getPrebuiltAsync(String, Executor)
+     */
+    public static CompletableFuture<Lemmatizer> getPrebuiltAsync(String name) throws IOException {
+        return getPrebuiltAsync(name, ForkJoinPool.commonPool());
+    }
+
+
+    /**
+     * Loads prebuilt lexicon using given executor. Resource is looked up by context class loader of calling
+     * thread before loading is started, so missing lexicon is reported immediately.
+     *
+     * @param name name of lexicon
+     * @param executor executor reading the lexicon
+     * @return future completed with lemmatizer
+     * @throws IOException if lexicon resource doesn't exist
+     */
+    public static CompletableFuture<Lemmatizer> getPrebuiltAsync(String name, Executor executor)
+        throws IOException {
+        final URL url = findPrebuilt(name);
+        final String lexicon = name;
+        return CompletableFuture.supplyAsync(new Supplier<Lemmatizer>() {
+            @Override
+            public Lemmatizer get() {
+                try (InputStream in = url.openStream()) {
+                    return read(in, lexicon);
+                } catch (IOException e) {
+                    throw new CompletionException(new IOException("Cannot read lexicon " + lexicon, e));
+                }
+            }
+        }, executor);
+    }
+
+
+    /**
+     * Loads prebuilt lexicons in parallel by at most given number of threads. Threads are released when
+     * all lexicons are loaded.
+     *
+     * @param names names of lexicons
+     * @param threads maximal number of loading threads
+     * @return future completed when all lexicons are loaded or exceptionally when the first one fails
+     * @throws IOException if any lexicon resource doesn't exist, nothing is loaded in that case
+     */
+    public static CompletableFuture<PreloadResult> preload(Collection<String> names, int threads)
+        throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads,
+            names.size())), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "lemmagen-preload-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            CompletableFuture<PreloadResult> result = preload(names, executor);
+            result.whenComplete(new BiConsumer<PreloadResult, Throwable>() {
+                @Override
+                public void accept(PreloadResult result, Throwable error) {
+                    executor.shutdownNow();
+                }
+            });
+            return result;
+        } catch (IOException | RuntimeException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Loads prebuilt lexicons in parallel using given executor. Resources of all lexicons are checked
+     * before loading is started.
+     *
+     * @param names names of lexicons
+     * @param executor executor reading lexicons
+     * @return future completed when all lexicons are loaded or exceptionally when the first one fails
+     * @throws IOException if any lexicon resource doesn't exist, nothing is loaded in that case
+     */
+    public static CompletableFuture<PreloadResult> preload(Collection<String> names, Executor executor)
+        throws IOException {
+        List<String> missing = new ArrayList<>();
+        final Map<String, URL> urls = new LinkedHashMap<>();
+        for (String name : names) {
+            try {
+                urls.put(name, findPrebuilt(name));
+            } catch (IOException e) {
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) throw new IOException("Cannot found prebuilt lexicons " + missing);
+
+        final long start = System.nanoTime();
+        final Map<String, Lemmatizer> lemmatizers = new ConcurrentHashMap<>();
+        final Map<String, Long> loadTimes = new ConcurrentHashMap<>();
+        final CompletableFuture<PreloadResult> result = new CompletableFuture<>();
+        final List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (final Map.Entry<String, URL> entry : urls.entrySet()) {
+            loads.add(CompletableFuture.runAsync(new Runnable() {
+                @Override
+                public void run() {
+                    if (result.isDone()) return;
+                    String name = entry.getKey();
+                    long loadStart = System.nanoTime();
+                    try (InputStream in = entry.getValue().openStream()) {
+                        lemmatizers.put(name, read(in, name));
+                    } catch (IOException | RuntimeException e) {
+                        result.completeExceptionally(new IOException("Cannot read lexicon " + name, e));
+                        return;
+                    }
+                    long time = System.nanoTime() - loadStart;
+                    loadTimes.put(name, time);
+                    log.info("Lexicon " + name + " loaded in " + time / 1000000 + " ms");
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()]))
+            .whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void value, Throwable error) {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                        return;
+                    }
+                    Map<String, Lemmatizer> orderedLemmatizers = new LinkedHashMap<>();
+                    Map<String, Long> orderedTimes = new LinkedHashMap<>();
+                    for (String name : urls.keySet()) {
+                        orderedLemmatizers.put(name, lemmatizers.get(name));
+                        orderedTimes.put(name, loadTimes.get(name));
+                    }
+                    result.complete(new PreloadResult(orderedLemmatizers, orderedTimes,
+                        System.nanoTime() - start));
+                }
+            });
+        return result;
+    }
+
+
+    private static URL findPrebuilt(String name) throws IOException {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        String resource = MessageFormat.format(PREBUILD_PATTERN, name);
+        URL url = cl.getResource(resource);
+        if (url == null) throw new IOException("Cannot found resource " + resource);
+        return url;
+    }
+
+
+    /**
+     * Saves model in format of older versions, i.e. GZIP stream without header, so the file is readable by
+     * all versions. Training thresholds of settings are not saved in this format. Use
+     * {@link #saveToFile(DefaultLemmatizer, File, ModelCodec, int)} to choose codec.
+     *
+     * @param lemmatizer lemmatizer
+     * @param file model file
+     * @throws IOException if model cannot be written
+     */
     public static void saveToFile(DefaultLemmatizer lemmatizer, File file) throws IOException {
+        saveToFile(lemmatizer, file, ModelFormat.legacy(), Deflater.DEFAULT_COMPRESSION);
+    }
+
+
+    /**
+     * Saves model compressed by given codec. Codec is written to model header, so model is read by
+     * {@link #read(InputStream)} regardless of codec.
+     *
+     * @param lemmatizer lemmatizer
+     * @param file model file
+     * @param codec compression codec
+     * @param level compression level of deflate based codecs or {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IOException if model cannot be written
+     */
+    public static void saveToFile(DefaultLemmatizer lemmatizer, File file, ModelCodec codec, int level)
+        throws IOException {
+        saveToFile(lemmatizer, file, new ModelFormat(codec), level);
+    }
+
+
+    private static void saveToFile(DefaultLemmatizer lemmatizer, File file, ModelFormat format, int level)
+        throws IOException {
+        long start = System.nanoTime();
         ObjectOutputStream oos = null;
         try {
             FileOutputStream fos = new FileOutputStream(file);
-            BufferedOutputStream bos = new BufferedOutputStream(fos);
-            GZIPOutputStream zos = new GZIPOutputStream(bos);
+            BufferedOutputStream bos = new BufferedOutputStream(fos, ModelCodec.BUFFER_SIZE);
+            ModelFormat modelFormat = lemmatizer.modelFormat(format);
+            OutputStream zos = modelFormat.encode(bos, level);
             oos = new ObjectOutputStream(zos);
-            lemmatizer.writeObject(oos, false);
+            lemmatizer.writeObject(oos, false, modelFormat);
         } finally {
             try {
                 if (oos != null) oos.close();
@@ -74,17 +285,87 @@ public final class LemmatizerFactory {
                 log.warn("Can't close stream", e);
             }
         }
+        LemmatizerMetrics metrics = lemmatizer.getMetrics();
+        if (metrics != null) metrics.recordSave(System.nanoTime() - start);
+    }
+
+
+    /**
+     * Saves model with independently compressed sections, which are decoded in parallel by
+     * {@link #read(InputStream)}. Files are not readable by versions without sectioned model support.
+     *
+     * @param lemmatizer lemmatizer
+     * @param file model file
+     * @param codec compression codec of sections
+     * @param level compression level of deflate based codecs or {@link Deflater#DEFAULT_COMPRESSION}
+     * @throws IOException if model cannot be written
+     * @see SectionedModel
+     */
+    public static void saveSectioned(DefaultLemmatizer lemmatizer, File file, ModelCodec codec, int level)
+        throws IOException {
+        long start = System.nanoTime();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), ModelCodec.BUFFER_SIZE)) {
+            SectionedModel.write(lemmatizer, out, codec, level);
+        }
+        LemmatizerMetrics metrics = lemmatizer.getMetrics();
+        if (metrics != null) metrics.recordSave(System.nanoTime() - start);
+    }
+
+
+    /**
+     * Saves training checkpoint of lemmatizer, see {@link DefaultLemmatizer#writeCheckpoint(java.io.ObjectOutput)}.
+     * Checkpoint is not compressed, so it's read as fast as possible.
+     *
+     * @param lemmatizer lemmatizer
+     * @param file checkpoint file
+     * @throws IOException if checkpoint cannot be written
+     */
+    public static void saveCheckpoint(DefaultLemmatizer lemmatizer, File file) throws IOException {
+        BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(file), ModelCodec.BUFFER_SIZE);
+        try (ObjectOutputStream oos = new ObjectOutputStream(new ModelFormat(ModelCodec.NONE).encode(bos,
+            Deflater.DEFAULT_COMPRESSION))) {
+            lemmatizer.writeCheckpoint(oos);
+        }
+    }
+
+
+    /**
+     * Reads training checkpoint. Model of returned lemmatizer is built from checkpointed examples on the
+     * first lemmatization or by {@link DefaultLemmatizer#buildModel()}.
+     *
+     * @param file checkpoint file
+     * @return lemmatizer
+     * @throws IOException if checkpoint cannot be read
+     */
+    public static DefaultLemmatizer readCheckpoint(File file) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file), ModelCodec.BUFFER_SIZE);
+        try (ObjectInputStream ois = new ObjectInputStream(ModelFormat.read(bis).decode(bis))) {
+            return DefaultLemmatizer.readCheckpoint(ois);
+        } finally {
+            bis.close();
+        }
     }
 
 
     public static Lemmatizer read(InputStream in) throws IOException {
-        Lemmatizer retVal = null;
+        return read(in, null);
+    }
+
+
+    private static DefaultLemmatizer read(InputStream in, String name) throws IOException {
+        long start = System.nanoTime();
+        DefaultLemmatizer retVal = null;
         ObjectInputStream ois = null;
         try {
-            GZIPInputStream zis = new GZIPInputStream(in);
-            ois = new ObjectInputStream(zis);
-            retVal = new DefaultLemmatizer(ois);
-            ois.close();
+            BufferedInputStream bis = new BufferedInputStream(in, ModelCodec.BUFFER_SIZE);
+            ModelFormat format = ModelFormat.read(bis);
+            if (format.isSectioned()) {
+                retVal = SectionedModel.read(bis, format, ForkJoinPool.commonPool());
+            } else {
+                ois = new ObjectInputStream(format.decode(bis));
+                retVal = new DefaultLemmatizer(ois, format);
+                ois.close();
+            }
         } finally {
             try {
                 if (ois != null) ois.close();
@@ -92,8 +373,12 @@ public final class LemmatizerFactory {
                 log.warn("Can't close stream", e);
             }
         }
+        LemmatizerMetrics metrics = MetricsRegistry.get(name);
+        if (metrics != null) {
+            metrics.recordRead(System.nanoTime() - start);
+            retVal.setMetrics(metrics);
+        }
         return retVal;
-
     }
 
 
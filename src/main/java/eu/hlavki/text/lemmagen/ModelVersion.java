@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.io.File;
+
+/**
+ * One published model of {@link ReloadableLemmatizer} together with its load statistics.
+ *
+ * @author Michal Hlavac
+ */
+public final class ModelVersion {
+
+    private final long version;
+    private final Lemmatizer lemmatizer;
+    private final File file;
+    private final long loadTime;
+    private final long validationTime;
+    private final long publishedAt;
+
+
+    ModelVersion(long version, Lemmatizer lemmatizer, File file, long loadTime, long validationTime) {
+        this.version = version;
+        this.lemmatizer = lemmatizer;
+        this.file = file;
+        this.loadTime = loadTime;
+        this.validationTime = validationTime;
+        this.publishedAt = System.currentTimeMillis();
+    }
+
+
+    /**
+     * @return sequence number of the version, the first version is 1
+     */
+    public long getVersion() {
+        return version;
+    }
+
+
+    public Lemmatizer getLemmatizer() {
+        return lemmatizer;
+    }
+
+
+    /**
+     * @return model file or null if lemmatizer wasn't loaded from file
+     */
+    public File getFile() {
+        return file;
+    }
+
+
+    /**
+     * @return time of reading the model in nanoseconds
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+
+    /**
+     * @return time of smoke test in nanoseconds
+     */
+    public long getValidationTime() {
+        return validationTime;
+    }
+
+
+    /**
+     * @return time of publishing in milliseconds since epoch
+     */
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+
+
+    @Override
+    public String toString() {
+        return "Version " + version + (file == null ? "" : " of " + file) + ", loaded in " + loadTime / 1000000
+            + " ms, validated in " + validationTime / 1000000 + " ms";
+    }
+}
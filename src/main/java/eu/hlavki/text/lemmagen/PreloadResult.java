@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Lemmatizers loaded by {@link LemmatizerFactory#preload(java.util.Collection, int)} together with load
+ * times. Maps iterate in order of requested names.
+ *
+ * @author Michal Hlavac
+ */
+public final class PreloadResult {
+
+    private final Map<String, Lemmatizer> lemmatizers;
+    private final Map<String, Long> loadTimes;
+    private final long totalTime;
+
+
+    PreloadResult(Map<String, Lemmatizer> lemmatizers, Map<String, Long> loadTimes, long totalTime) {
+        this.lemmatizers = Collections.unmodifiableMap(lemmatizers);
+        this.loadTimes = Collections.unmodifiableMap(loadTimes);
+        this.totalTime = totalTime;
+    }
+
+
+    public Lemmatizer get(String name) {
+        return lemmatizers.get(name);
+    }
+
+
+    public Map<String, Lemmatizer> getLemmatizers() {
+        return lemmatizers;
+    }
+
+
+    /**
+     * @return load time of every lexicon in nanoseconds
+     */
+    public Map<String, Long> getLoadTimes() {
+        return loadTimes;
+    }
+
+
+    /**
+     * @return wall time of whole preload in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Preloaded ").append(lemmatizers.size()).append(" lexicons in ")
+            .append(totalTime / 1000000).append(" ms");
+        for (Map.Entry<String, Long> entry : loadTimes.entrySet()) {
+            sb.append(", ").append(entry.getKey()).append(": ").append(entry.getValue() / 1000000).append(" ms");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lemmatizer delegating to replaceable model. New model is loaded in background thread, validated by smoke test
+ * and published by one volatile write, so lookups in progress finish with the old model and are never blocked.
+ * Previous version is kept for {@link #rollback()}.
+ * <p>
+ * Model file can be watched for changes. Reload starts when the file wasn't modified for settle delay, replace
+ * the file by atomic move to avoid reading partially written model. Model which can't be read or fails smoke test
+ * is not published.
+ *
+ * @author Michal Hlavac
+ */
+public class ReloadableLemmatizer implements Lemmatizer, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReloadableLemmatizer.class);
+    private static final long DEFAULT_SETTLE_DELAY = 500;
+
+    private final File file;
+    private final ExecutorService loader;
+    private volatile ModelVersion current;
+    private volatile ModelVersion previous;
+    private volatile Map<String, String> smokeTest;
+    private long lastVersion;
+    private long settleDelay;
+    private WatchService watchService;
+    private Thread watcher;
+
+
+    /**
+     * Loads the first version of the model from file.
+     *
+     * @param file model file
+     * @throws IOException if the model cannot be read or fails smoke test
+     */
+    public ReloadableLemmatizer(File file) throws IOException {
+        this(file, Executors.newSingleThreadExecutor(daemon("lemmagen-reload")));
+        try {
+            load(file);
+        } catch (IOException | RuntimeException e) {
+            loader.shutdown();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Creates lemmatizer with already loaded first version.
+     *
+     * @param lemmatizer the first version
+     */
+    public ReloadableLemmatizer(Lemmatizer lemmatizer) {
+        this(null, Executors.newSingleThreadExecutor(daemon("lemmagen-reload")));
+        publish(lemmatizer, null, 0, 0);
+    }
+
+
+    private ReloadableLemmatizer(File file, ExecutorService loader) {
+        this.file = file;
+        this.loader = loader;
+        this.smokeTest = Collections.emptyMap();
+        this.settleDelay = DEFAULT_SETTLE_DELAY;
+    }
+
+
+    @Override
+    public CharSequence lemmatize(CharSequence word) {
+        return current.getLemmatizer().lemmatize(word);
+    }
+
+
+    @Override
+    public void lemmatize(CharSequence[] words, CharSequence[] lemmas, int offset, int length) {
+        current.getLemmatizer().lemmatize(words, lemmas, offset, length);
+    }
+
+
+    /**
+     * @return currently published version
+     */
+    public ModelVersion getVersion() {
+        return current;
+    }
+
+
+    /**
+     * @return version replaced by current one or null if there's nothing to roll back to
+     */
+    public ModelVersion getPreviousVersion() {
+        return previous;
+    }
+
+
+    public Map<String, String> getSmokeTest() {
+        return smokeTest;
+    }
+
+
+    /**
+     * Sets words and expected lemmas checked before new model is published.
+     *
+     * @param smokeTest expected lemmas of words
+     */
+    public void setSmokeTest(Map<String, String> smokeTest) {
+        this.smokeTest = Collections.unmodifiableMap(new LinkedHashMap<>(smokeTest));
+    }
+
+
+    public synchronized long getSettleDelay() {
+        return settleDelay;
+    }
+
+
+    /**
+     * @param settleDelay time in milliseconds without changes of watched file before it's reloaded
+     */
+    public synchronized void setSettleDelay(long settleDelay) {
+        this.settleDelay = settleDelay;
+    }
+
+
+    /**
+     * Reads model from file, validates it and publishes it as new version. Current version is kept if loading
+     * fails.
+     *
+     * @param modelFile model file
+     * @return published version
+     * @throws IOException if the model cannot be read or fails smoke test
+     */
+    public ModelVersion load(File modelFile) throws IOException {
+        long start = System.nanoTime();
+        Lemmatizer lemmatizer;
+        try (InputStream in = new FileInputStream(modelFile)) {
+            lemmatizer = LemmatizerFactory.read(in);
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot read model " + modelFile, e);
+        }
+        long loadTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        validate(lemmatizer, modelFile);
+        return publish(lemmatizer, modelFile, loadTime, System.nanoTime() - start);
+    }
+
+
+    /**
+     * Loads the model file in background thread.
+     *
+     * @return future completed with published version or exceptionally if loading fails
+     * @see #load(File)
+     */
+    public CompletableFuture<ModelVersion> reload() {
+        if (file == null) throw new IllegalStateException("Lemmatizer wasn't loaded from file");
+        return reload(file);
+    }
+
+
+    /**
+     * Loads the model from given file in background thread.
+     *
+     * @param modelFile model file
+     * @return future completed with published version or exceptionally if loading fails
+     * @see #load(File)
+     */
+    public CompletableFuture<ModelVersion> reload(final File modelFile) {
+        return CompletableFuture.supplyAsync(new Supplier<ModelVersion>() {
+            @Override
+            public ModelVersion get() {
+                try {
+                    return load(modelFile);
+                } catch (IOException e) {
+                    log.warn("Model " + modelFile + " not published", e);
+                    throw new CompletionException(e);
+                }
+            }
+        }, loader);
+    }
+
+
+    /**
+     * Publishes previous version again. The version replaced by rollback is dropped.
+     *
+     * @return true if previous version was published
+     */
+    public synchronized boolean rollback() {
+        if (previous == null) return false;
+        ModelVersion rolledBack = current;
+        current = previous;
+        previous = null;
+        log.info("Rolled back from version " + rolledBack.getVersion() + " to " + current.getVersion());
+        return true;
+    }
+
+
+    private void validate(Lemmatizer lemmatizer, File modelFile) throws IOException {
+        try {
+            for (Map.Entry<String, String> test : smokeTest.entrySet()) {
+                String lemma = String.valueOf(lemmatizer.lemmatize(test.getKey()));
+                if (!lemma.equals(test.getValue())) {
+                    throw new IOException("Model " + modelFile + " failed smoke test: " + test.getKey() + " -> "
+                        + lemma + ", expected " + test.getValue());
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Model " + modelFile + " failed smoke test", e);
+        }
+    }
+
+
+    private synchronized ModelVersion publish(Lemmatizer lemmatizer, File modelFile, long loadTime,
+        long validationTime) {
+        ModelVersion version = new ModelVersion(++lastVersion, lemmatizer, modelFile, loadTime, validationTime);
+        previous = current;
+        current = version;
+        log.info("Published " + version);
+        return version;
+    }
+
+
+    /**
+     * Starts watching the model file and reloads it when it's changed.
+     *
+     * @throws IOException if watch service cannot be created
+     */
+    public synchronized void watch() throws IOException {
+        if (file == null) throw new IllegalStateException("Lemmatizer wasn't loaded from file");
+        if (watchService != null) return;
+        final Path path = file.getAbsoluteFile().toPath();
+        final WatchService service = FileSystems.getDefault().newWatchService();
+        path.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        watchService = service;
+        watcher = daemon("lemmagen-watch").newThread(new Runnable() {
+            @Override
+            public void run() {
+                watch(service, path.getFileName());
+            }
+        });
+        watcher.start();
+    }
+
+
+    private void watch(WatchService service, Path name) {
+        try {
+            while (true) {
+                if (!changed(service.take(), name)) continue;
+                //wait until the file settles
+                WatchKey key;
+                while ((key = service.poll(getSettleDelay(), TimeUnit.MILLISECONDS)) != null) {
+                    changed(key, name);
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watching stopped
+        }
+    }
+
+
+    private static boolean changed(WatchKey key, Path name) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (name.equals(event.context())) changed = true;
+        }
+        key.reset();
+        return changed;
+    }
+
+
+    /**
+     * Stops watching the model file and background loading.
+     */
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Can't close watch service", e);
+            }
+            watcher.interrupt();
+            watchService = null;
+            watcher = null;
+        }
+        loader.shutdown();
+    }
+
+
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
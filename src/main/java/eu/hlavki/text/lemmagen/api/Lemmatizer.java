@@ -22,4 +22,20 @@ package eu.hlavki.text.lemmagen.api;
 public interface Lemmatizer {
 
     CharSequence lemmatize(CharSequence word);
+
+
+    /**
+     * Lemmatizes words in bulk. Lemma of <code>words[offset + i]</code> is stored to
+     * <code>lemmas[offset + i]</code>.
+     *
+     * @param words words to lemmatize
+     * @param lemmas array for lemmas
+     * @param offset index of the first word
+     * @param length number of words
+     */
+    default void lemmatize(CharSequence[] words, CharSequence[] lemmas, int offset, int length) {
+        for (int idx = offset; idx < offset + length; idx++) {
+            lemmas[idx] = lemmatize(words[idx]);
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.codec;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Reads blocks written by {@link BlockOutputStream} and verifies their checksums.
+ *
+ * @author Michal Hlavac
+ */
+final class BlockInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final byte[] buffer;
+    private final byte[] compressed;
+    private final CRC32 crc;
+    private int pos;
+    private int count;
+    private boolean eof;
+
+
+    BlockInputStream(InputStream in) {
+        this.in = new DataInputStream(in);
+        this.buffer = new byte[BlockOutputStream.BLOCK_SIZE];
+        this.compressed = new byte[LzCompressor.maxCompressedLength(BlockOutputStream.BLOCK_SIZE)];
+        this.crc = new CRC32();
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        if (pos == count && !readBlock()) return -1;
+        return buffer[pos++] & 0xff;
+    }
+
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (pos == count && !readBlock()) return -1;
+        int chunk = Math.min(len, count - pos);
+        System.arraycopy(buffer, pos, b, off, chunk);
+        pos += chunk;
+        return chunk;
+    }
+
+
+    @Override
+    public int available() {
+        return count - pos;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    private boolean readBlock() throws IOException {
+        if (eof) return false;
+        int raw = in.readInt();
+        if (raw == 0) {
+            eof = true;
+            return false;
+        }
+        int stored = in.readInt();
+        int checksum = in.readInt();
+        if (raw < 0 || raw > buffer.length || stored < 0 || stored > raw) {
+            throw new IOException("Corrupted block header");
+        }
+        if (stored == raw) {
+            in.readFully(buffer, 0, raw);
+        } else {
+            in.readFully(compressed, 0, stored);
+            LzCompressor.decompress(compressed, stored, buffer, raw);
+        }
+        crc.reset();
+        crc.update(buffer, 0, raw);
+        if ((int) crc.getValue() != checksum) throw new IOException("Block checksum mismatch");
+        pos = 0;
+        count = raw;
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.codec;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Writes data in checksummed blocks. Every block starts with raw length, stored length and CRC32 of raw
+ * data. Block is stored compressed by {@link LzCompressor} if compression is enabled and it makes block
+ * smaller, otherwise it's stored as is. Stream ends with zero raw length.
+ *
+ * @author Michal Hlavac
+ */
+final class BlockOutputStream extends OutputStream {
+
+    static final int BLOCK_SIZE = 1 << 16;
+
+    private final DataOutputStream out;
+    private final LzCompressor compressor;
+    private final byte[] buffer;
+    private final byte[] compressed;
+    private final CRC32 crc;
+    private int count;
+    private boolean closed;
+
+
+    BlockOutputStream(OutputStream out, boolean compress) {
+        this.out = new DataOutputStream(out);
+        this.compressor = compress ? new LzCompressor() : null;
+        this.buffer = new byte[BLOCK_SIZE];
+        this.compressed = compress ? new byte[LzCompressor.maxCompressedLength(BLOCK_SIZE)] : null;
+        this.crc = new CRC32();
+    }
+
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == BLOCK_SIZE) writeBlock();
+        buffer[count++] = (byte) b;
+    }
+
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == BLOCK_SIZE) writeBlock();
+            int chunk = Math.min(len, BLOCK_SIZE - count);
+            System.arraycopy(b, off, buffer, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) writeBlock();
+        out.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (count > 0) writeBlock();
+            out.writeInt(0);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+
+    private void writeBlock() throws IOException {
+        crc.reset();
+        crc.update(buffer, 0, count);
+        int stored = compressor == null ? count : compressor.compress(buffer, count, compressed);
+        out.writeInt(count);
+        if (stored < count) {
+            out.writeInt(stored);
+            out.writeInt((int) crc.getValue());
+            out.write(compressed, 0, stored);
+        } else {
+            out.writeInt(count);
+            out.writeInt((int) crc.getValue());
+            out.write(buffer, 0, count);
+        }
+        count = 0;
+    }
+}
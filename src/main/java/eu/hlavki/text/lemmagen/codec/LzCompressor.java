@@ -0,0 +1,184 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fast LZ77 compressor of byte blocks with format similar to LZ4 block format. Every sequence starts with
+ * token containing literal length in high nibble and match length minus 4 in low nibble, followed by
+ * extension bytes of literal length, literals, little endian 16 bit match offset and extension bytes of
+ * match length. The last sequence contains literals only. Matches are found by single entry hash table, so
+ * compression is fast with moderate ratio and decompression is a simple copy loop.
+ *
+ * @author Michal Hlavac
+ */
+final class LzCompressor {
+
+    static final int MAX_OFFSET = 0xffff;
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_BITS = 14;
+
+    private final int[] table;
+
+
+    LzCompressor() {
+        this.table = new int[1 << HASH_BITS];
+    }
+
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+
+    /**
+     * Compresses bytes.
+     *
+     * @param src source bytes
+     * @param length number of source bytes
+     * @param dst destination at least {@link #maxCompressedLength(int)} long
+     * @return number of compressed bytes
+     */
+    int compress(byte[] src, int length, byte[] dst) {
+        Arrays.fill(table, -1);
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+        int limit = length - MIN_MATCH;
+        while (ip <= limit) {
+            int seq = readInt(src, ip);
+            int hash = (seq * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[hash];
+            table[hash] = ip;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                ip++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < length && src[ref + matchLength] == src[ip + matchLength]) {
+                matchLength++;
+            }
+            op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+            ip += matchLength;
+            anchor = ip;
+        }
+        return writeSequence(src, anchor, length - anchor, 0, 0, dst, op);
+    }
+
+
+    /**
+     * Decompresses bytes.
+     *
+     * @param src compressed bytes
+     * @param length number of compressed bytes
+     * @param dst destination
+     * @param rawLength expected number of decompressed bytes
+     * @throws IOException if data are corrupted
+     */
+    static void decompress(byte[] src, int length, byte[] dst, int rawLength) throws IOException {
+        int ip = 0;
+        int op = 0;
+        try {
+            while (ip < length) {
+                int token = src[ip++] & 0xff;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip >= length) break;
+
+                int offset = (src[ip++] & 0xff) | (src[ip++] & 0xff) << 8;
+                int matchLength = token & 0x0f;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < 0 || op + matchLength > rawLength) {
+                    throw new IOException("Corrupted compressed block");
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    for (int idx = 0; idx < matchLength; idx++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted compressed block", e);
+        }
+        if (op != rawLength) throw new IOException("Corrupted compressed block");
+    }
+
+
+    private static int writeSequence(byte[] src, int start, int literals, int offset, int matchLength,
+        byte[] dst, int op) {
+        int tokenPos = op++;
+        int token;
+        if (literals >= 15) {
+            token = 15 << 4;
+            op = writeLength(literals - 15, dst, op);
+        } else {
+            token = literals << 4;
+        }
+        System.arraycopy(src, start, dst, op, literals);
+        op += literals;
+        if (matchLength > 0) {
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            int length = matchLength - MIN_MATCH;
+            if (length >= 15) {
+                token |= 15;
+                op = writeLength(length - 15, dst, op);
+            } else {
+                token |= length;
+            }
+        }
+        dst[tokenPos] = (byte) token;
+        return op;
+    }
+
+
+    private static int writeLength(int length, byte[] dst, int op) {
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+
+    private static int readInt(byte[] buf, int pos) {
+        return (buf[pos] & 0xff) | (buf[pos + 1] & 0xff) << 8 | (buf[pos + 2] & 0xff) << 16
+            | (buf[pos + 3] & 0xff) << 24;
+    }
+}
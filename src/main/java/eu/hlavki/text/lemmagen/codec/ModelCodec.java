@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of serialized models. Codec is stored in model header, so reader detects it automatically.
+ *
+ * @author Michal Hlavac
+ */
+public enum ModelCodec {
+
+    /**
+     * Uncompressed data in blocks with CRC32 checksums. Fastest to load, biggest files.
+     */
+    NONE(0) {
+        @Override
+        OutputStream encoder(OutputStream out, int level) {
+            return new BlockOutputStream(out, false);
+        }
+
+
+        @Override
+        InputStream decoder(InputStream in) {
+            return new BlockInputStream(in);
+        }
+    },
+    /**
+     * GZIP stream, format of models written by older versions.
+     */
+    GZIP(1) {
+        @Override
+        OutputStream encoder(OutputStream out, final int level) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+
+
+        @Override
+        InputStream decoder(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    },
+    /**
+     * Zlib stream with selectable compression level.
+     */
+    DEFLATE(2) {
+        @Override
+        OutputStream encoder(OutputStream out, int level) {
+            return new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+
+
+        @Override
+        InputStream decoder(InputStream in) {
+            return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inf.end();
+                    }
+                }
+            };
+        }
+    },
+    /**
+     * Fast LZ77 compression in blocks with CRC32 checksums. Loads faster than deflate with bigger files.
+     */
+    LZ(3) {
+        @Override
+        OutputStream encoder(OutputStream out, int level) {
+            return new BlockOutputStream(out, true);
+        }
+
+
+        @Override
+        InputStream decoder(InputStream in) {
+            return new BlockInputStream(in);
+        }
+    };
+
+    public static final int BUFFER_SIZE = 1 << 16;
+    private final int id;
+
+
+    private ModelCodec(int id) {
+        this.id = id;
+    }
+
+
+    public int getId() {
+        return id;
+    }
+
+
+    /**
+     * Wraps stream by compressor.
+     *
+     * @param out stream
+     * @param level compression level for deflate based codecs, {@link Deflater#DEFAULT_COMPRESSION} for
+     * default level
+     * @return compressing stream
+     */
+    abstract OutputStream encoder(OutputStream out, int level) throws IOException;
+
+
+    abstract InputStream decoder(InputStream in) throws IOException;
+
+
+    public static ModelCodec valueOf(int id) {
+        for (ModelCodec codec : values()) {
+            if (codec.id == id) return codec;
+        }
+        throw new IllegalArgumentException("Unknown codec " + id);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.codec;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Header of model file. Header consists of magic bytes <code>LGMF</code>, format version, codec id and
+ * flags. Models written by older versions have no header and are plain GZIP streams, they are recognized by
+ * GZIP magic bytes and reported as version 0. Version 2 marks sectioned models, whose sections are
+ * compressed independently, see <code>SectionedModel</code>. Flag {@link #THRESHOLDS_FLAG} marks models whose
+ * settings are followed by training thresholds; legacy models have no flags.
+ *
+ * @author Michal Hlavac
+ */
+public final class ModelFormat {
+
+    public static final int LEGACY_VERSION = 0;
+    public static final int CURRENT_VERSION = 1;
+    public static final int SECTIONED_VERSION = 2;
+    public static final int THRESHOLDS_FLAG = 0x01;
+    private static final int KNOWN_FLAGS = THRESHOLDS_FLAG;
+    private static final byte[] MAGIC = {'L', 'G', 'M', 'F'};
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private final int version;
+    private final ModelCodec codec;
+    private final int flags;
+
+
+    public ModelFormat(ModelCodec codec) {
+        this(CURRENT_VERSION, codec, 0);
+    }
+
+
+    public ModelFormat(ModelCodec codec, boolean sectioned) {
+        this(sectioned ? SECTIONED_VERSION : CURRENT_VERSION, codec, 0);
+    }
+
+
+    private ModelFormat(int version, ModelCodec codec, int flags) {
+        this.version = version;
+        this.codec = codec;
+        this.flags = flags;
+    }
+
+
+    /**
+     * @return format of models written by older versions, i.e. GZIP stream without header
+     */
+    public static ModelFormat legacy() {
+        return new ModelFormat(LEGACY_VERSION, ModelCodec.GZIP, 0);
+    }
+
+
+    /**
+     * Returns format with given flags. Flags are written in header only, so legacy format doesn't accept them.
+     *
+     * @param flags flags, e.g. {@link #THRESHOLDS_FLAG}
+     * @return format with the same version and codec
+     */
+    public ModelFormat withFlags(int flags) {
+        if ((flags & ~KNOWN_FLAGS) != 0) throw new IllegalArgumentException("Unknown model flags " + flags);
+        if (isLegacy() && flags != 0) throw new IllegalStateException("Legacy model has no flags");
+        return new ModelFormat(version, codec, flags);
+    }
+
+
+    public int getVersion() {
+        return version;
+    }
+
+
+    public ModelCodec getCodec() {
+        return codec;
+    }
+
+
+    public int getFlags() {
+        return flags;
+    }
+
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+
+    public boolean isLegacy() {
+        return version == LEGACY_VERSION;
+    }
+
+
+    public boolean isSectioned() {
+        return version == SECTIONED_VERSION;
+    }
+
+
+    /**
+     * Writes header and returns stream compressing model data.
+     *
+     * @param out output stream
+     * @param level compression level of deflate based codecs or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return compressing stream
+     * @throws IOException if header cannot be written
+     */
+    public OutputStream encode(OutputStream out, int level) throws IOException {
+        writeHeader(out);
+        return codec.encoder(out, level);
+    }
+
+
+    /**
+     * Writes header only. Used by sectioned models, which compress every section by
+     * {@link #encodeSection(OutputStream, int)}.
+     *
+     * @param out output stream
+     * @throws IOException if header cannot be written
+     */
+    public void writeHeader(OutputStream out) throws IOException {
+        if (isLegacy()) return;
+        out.write(MAGIC);
+        out.write(version);
+        out.write(codec.getId());
+        out.write(flags);
+    }
+
+
+    /**
+     * Returns stream compressing one section of sectioned model. Sections are decompressed by
+     * {@link #decode(InputStream)}.
+     *
+     * @param out output stream
+     * @param level compression level of deflate based codecs or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return compressing stream
+     * @throws IOException if stream cannot be opened
+     */
+    public OutputStream encodeSection(OutputStream out, int level) throws IOException {
+        return codec.encoder(out, level);
+    }
+
+
+    /**
+     * Returns stream decompressing model data which follow the header.
+     *
+     * @param in stream positioned after header by {@link #read(InputStream)}
+     * @return decompressing stream
+     * @throws IOException if stream cannot be opened
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        return codec.decoder(in);
+    }
+
+
+    /**
+     * Reads header of model. Stream must support mark, because legacy models are detected by peeking at
+     * GZIP magic bytes.
+     *
+     * @param in input stream, e.g. {@link BufferedInputStream}
+     * @return format of model
+     * @throws IOException if header is not valid
+     */
+    public static ModelFormat read(InputStream in) throws IOException {
+        if (!in.markSupported()) throw new IllegalArgumentException("Stream must support mark");
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        if (first == GZIP_MAGIC_1 && second == GZIP_MAGIC_2) {
+            in.reset();
+            return legacy();
+        }
+        if (first != MAGIC[0] || second != MAGIC[1] || readByte(in) != MAGIC[2] || readByte(in) != MAGIC[3]) {
+            throw new IOException("Not a lemmatizer model");
+        }
+        int version = readByte(in);
+        if (version > SECTIONED_VERSION) throw new IOException("Unsupported model version " + version);
+        ModelCodec codec;
+        try {
+            codec = ModelCodec.valueOf(readByte(in));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        int flags = readByte(in);
+        if ((flags & ~KNOWN_FLAGS) != 0) throw new IOException("Unsupported model flags " + flags);
+        return new ModelFormat(version, codec, flags);
+    }
+
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException("Unexpected end of model header");
+        return b;
+    }
+
+
+    @Override
+    public String toString() {
+        return "ModelFormat{version=" + version + ", codec=" + codec + ", flags=" + flags + '}';
+    }
+}
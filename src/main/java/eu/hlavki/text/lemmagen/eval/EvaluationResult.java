@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.eval;
+
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Results of cross validation of one settings. Accuracy is the share of test words lemmatized exactly as
+ * in lexicon, other values are averages over folds.
+ *
+ * @author Michal Hlavac
+ */
+public final class EvaluationResult {
+
+    private final LemmatizerSettings settings;
+    private final double[] accuracy;
+    private final long[] trainingNanos;
+    private final long[] modelBytes;
+    private final int[] nodes;
+    private final double[] wordsPerSecond;
+
+
+    EvaluationResult(LemmatizerSettings settings, int folds) {
+        this.settings = settings;
+        this.accuracy = new double[folds];
+        this.trainingNanos = new long[folds];
+        this.modelBytes = new long[folds];
+        this.nodes = new int[folds];
+        this.wordsPerSecond = new double[folds];
+    }
+
+
+    void setFold(int fold, double accuracy, long trainingNanos, long modelBytes, int nodes,
+        double wordsPerSecond) {
+        this.accuracy[fold] = accuracy;
+        this.trainingNanos[fold] = trainingNanos;
+        this.modelBytes[fold] = modelBytes;
+        this.nodes[fold] = nodes;
+        this.wordsPerSecond[fold] = wordsPerSecond;
+    }
+
+
+    public LemmatizerSettings getSettings() {
+        return settings;
+    }
+
+
+    public int getFolds() {
+        return accuracy.length;
+    }
+
+
+    public double getAccuracy(int fold) {
+        return accuracy[fold];
+    }
+
+
+    public double getAccuracy() {
+        double sum = 0;
+        for (double value : accuracy) {
+            sum += value;
+        }
+        return sum / accuracy.length;
+    }
+
+
+    public double getAccuracyDeviation() {
+        double mean = getAccuracy();
+        double sum = 0;
+        for (double value : accuracy) {
+            sum += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(sum / accuracy.length);
+    }
+
+
+    /**
+     * @return average training time in milliseconds
+     */
+    public double getTrainingMillis() {
+        long sum = 0;
+        for (long value : trainingNanos) {
+            sum += value;
+        }
+        return sum / 1e6 / trainingNanos.length;
+    }
+
+
+    /**
+     * @return average size of uncompressed serialized model without examples
+     */
+    public long getModelBytes() {
+        long sum = 0;
+        for (long value : modelBytes) {
+            sum += value;
+        }
+        return sum / modelBytes.length;
+    }
+
+
+    public int getNodes() {
+        long sum = 0;
+        for (int value : nodes) {
+            sum += value;
+        }
+        return (int) (sum / nodes.length);
+    }
+
+
+    public double getWordsPerSecond() {
+        double sum = 0;
+        for (double value : wordsPerSecond) {
+            sum += value;
+        }
+        return sum / wordsPerSecond.length;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%-5s %-19s %4d %-5s %7.3f%% %6.3f %9.1f %10d %8d %11.0f",
+            settings.isUseFromInRules(), settings.getMsdConsider(), settings.getMaxRulesPerNode(),
+            settings.isBuildFrontLemmatizer(), 100 * getAccuracy(), 100 * getAccuracyDeviation(),
+            getTrainingMillis(), getModelBytes(), getNodes(), getWordsPerSecond());
+    }
+
+
+    /**
+     * Writes table of results, one settings per line.
+     *
+     * @param results results
+     * @param out output
+     * @throws IOException if output fails
+     */
+    public static void write(Collection<EvaluationResult> results, Appendable out) throws IOException {
+        out.append(String.format(Locale.ROOT, "%-5s %-19s %4s %-5s %8s %6s %9s %10s %8s %11s%n", "from",
+            "msd", "max", "front", "accuracy", "stddev", "train ms", "model B", "nodes", "words/s"));
+        for (EvaluationResult result : results) {
+            out.append(result.toString()).append(String.format("%n"));
+        }
+    }
+}
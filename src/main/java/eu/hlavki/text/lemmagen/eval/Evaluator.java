@@ -0,0 +1,281 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.eval;
+
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings.MsdConsideration;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cross validation of lemmatizer settings. Lexicon is split into k folds, every fold is lemmatized by
+ * lemmatizer trained on remaining folds. Folds of all evaluated settings are trained and tested in
+ * parallel. Lookup throughput is measured while other folds are processed, use single thread for
+ * comparable throughput numbers.
+ *
+ * @author Michal Hlavac
+ */
+public class Evaluator {
+
+    private int folds;
+    private int threads;
+    private long seed;
+
+
+    public Evaluator() {
+        this.folds = 10;
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.seed = 0;
+    }
+
+
+    public int getFolds() {
+        return folds;
+    }
+
+
+    public void setFolds(int folds) {
+        this.folds = folds;
+    }
+
+
+    public int getThreads() {
+        return threads;
+    }
+
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+
+    public long getSeed() {
+        return seed;
+    }
+
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+
+    public EvaluationResult evaluate(Lexicon lexicon, LemmatizerSettings settings) throws IOException {
+        return evaluate(lexicon, Collections.singletonList(settings)).get(0);
+    }
+
+
+    /**
+     * Evaluates all settings on the same folds.
+     *
+     * @param lexicon lexicon
+     * @param settingsList evaluated settings
+     * @return results in order of settings
+     * @throws IOException if evaluation fails
+     */
+    public List<EvaluationResult> evaluate(Lexicon lexicon, List<LemmatizerSettings> settingsList)
+        throws IOException {
+        final List<Lexicon> split = lexicon.split(folds, seed);
+        List<EvaluationResult> results = new ArrayList<>();
+        List<Future<?>> tasks = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (final LemmatizerSettings settings : settingsList) {
+                final EvaluationResult result = new EvaluationResult(settings, folds);
+                results.add(result);
+                for (int fold = 0; fold < folds; fold++) {
+                    final int testFold = fold;
+                    tasks.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            evaluateFold(result, testFold, Lexicon.join(split, testFold), split.get(testFold));
+                        }
+                    }));
+                }
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Evaluation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Evaluation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+
+    private static void evaluateFold(EvaluationResult result, int fold, Lexicon train, Lexicon test) {
+        long start = System.nanoTime();
+        DefaultLemmatizer lm = new DefaultLemmatizer(result.getSettings());
+        lm.setMetrics(null);
+        for (Lexicon.Entry entry : train.getEntries()) {
+            lm.addExample(entry.getWord(), entry.getLemma(), entry.getWeight(), entry.getMsd());
+        }
+        lm.buildModel();
+        long trainingNanos = System.nanoTime() - start;
+
+        int correct = 0;
+        for (Lexicon.Entry entry : test.getEntries()) {
+            if (entry.getLemma().contentEquals(lm.lemmatize(entry.getWord()))) correct++;
+        }
+
+        List<Lexicon.Entry> entries = test.getEntries();
+        int words = 0;
+        start = System.nanoTime();
+        long elapsed;
+        do {
+            for (Lexicon.Entry entry : entries) {
+                lm.lemmatize(entry.getWord());
+            }
+            words += entries.size();
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < 100000000L && !entries.isEmpty());
+
+        int nodes = lm.getRootNode().getTreeSize();
+        if (result.getSettings().isBuildFrontLemmatizer()) nodes += lm.getRootNodeFront().getTreeSize();
+        result.setFold(fold, entries.isEmpty() ? 0 : (double) correct / entries.size(), trainingNanos,
+            modelBytes(lm), nodes, elapsed == 0 ? 0 : words * 1e9 / elapsed);
+    }
+
+
+    private static long modelBytes(DefaultLemmatizer lm) {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+            lm.writeObject(out, false);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return counter.count;
+    }
+
+
+    /**
+     * Creates all combinations of given settings values.
+     *
+     * @param useFromInRules values of useFromInRules
+     * @param msdConsiderations values of msdConsider
+     * @param maxRulesPerNode values of maxRulesPerNode
+     * @param buildFrontLemmatizer values of buildFrontLemmatizer
+     * @return settings
+     */
+    public static List<LemmatizerSettings> grid(boolean[] useFromInRules, MsdConsideration[] msdConsiderations,
+        int[] maxRulesPerNode, boolean[] buildFrontLemmatizer) {
+        List<LemmatizerSettings> grid = new ArrayList<>();
+        for (boolean useFrom : useFromInRules) {
+            for (MsdConsideration msd : msdConsiderations) {
+                for (int maxRules : maxRulesPerNode) {
+                    for (boolean front : buildFrontLemmatizer) {
+                        grid.add(new LemmatizerSettings(useFrom, msd, maxRules, front));
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+
+    /**
+     * Evaluates default settings or settings grid on lexicon file.
+     *
+     * @param args [-k folds] [-threads n] [-seed s] [-format WLM] [-grid] lexicon.tbl
+     * @throws IOException if lexicon cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Evaluator evaluator = new Evaluator();
+        String format = "WLM";
+        boolean grid = false;
+        String file = null;
+        for (int idx = 0; idx < args.length; idx++) {
+            String arg = args[idx];
+            if ("-grid".equals(arg)) {
+                grid = true;
+            } else if (arg.startsWith("-") && idx + 1 < args.length) {
+                String value = args[++idx];
+                switch (arg) {
+                case "-k":
+                    evaluator.setFolds(Integer.parseInt(value));
+                    break;
+                case "-threads":
+                    evaluator.setThreads(Integer.parseInt(value));
+                    break;
+                case "-seed":
+                    evaluator.setSeed(Long.parseLong(value));
+                    break;
+                case "-format":
+                    format = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } else {
+                file = arg;
+            }
+        }
+        if (file == null) {
+            System.err.println("Usage: Evaluator [-k folds] [-threads n] [-seed s] [-format WLM] [-grid] "
+                + "lexicon.tbl");
+            System.exit(1);
+        }
+
+        Lexicon lexicon;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+            StandardCharsets.UTF_8))) {
+            lexicon = Lexicon.read(reader, format);
+        }
+        List<LemmatizerSettings> settings = grid
+            ? grid(new boolean[]{true, false}, new MsdConsideration[]{MsdConsideration.DISTINCT,
+                MsdConsideration.IGNORE}, new int[]{0, 1}, new boolean[]{false, true})
+            : Collections.singletonList(new LemmatizerSettings());
+        Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        EvaluationResult.write(evaluator.evaluate(lexicon, settings), out);
+        out.flush();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.eval;
+
+import eu.hlavki.text.lemmagen.impl.MultextFormat;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lexicon entries kept in memory for repeated training. Lexicon is read in the same formats as
+ * {@link eu.hlavki.text.lemmagen.impl.ExampleList#addMultextFile(BufferedReader, String)}.
+ *
+ * @author Michal Hlavac
+ */
+public final class Lexicon {
+
+    private static final Logger log = LoggerFactory.getLogger(Lexicon.class);
+
+    private final List<Entry> entries;
+
+
+    public Lexicon() {
+        this.entries = new ArrayList<>();
+    }
+
+
+    private Lexicon(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+
+    public void add(String word, String lemma, double weight, String msd) {
+        entries.add(new Entry(word, lemma, weight, msd));
+    }
+
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+
+    public int size() {
+        return entries.size();
+    }
+
+
+    /**
+     * Splits lexicon into folds of similar size. All entries of the same word form are kept in the same
+     * fold, so tested words are never seen during training.
+     *
+     * @param k number of folds
+     * @param seed seed of random assignment of words to folds
+     * @return folds
+     */
+    public List<Lexicon> split(int k, long seed) {
+        if (k < 2) throw new IllegalArgumentException("At least two folds required");
+        Map<String, List<Entry>> byWord = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            List<Entry> group = byWord.get(entry.word);
+            if (group == null) {
+                group = new ArrayList<>(1);
+                byWord.put(entry.word, group);
+            }
+            group.add(entry);
+        }
+        List<List<Entry>> groups = new ArrayList<>(byWord.values());
+        Collections.shuffle(groups, new Random(seed));
+        List<Lexicon> folds = new ArrayList<>(k);
+        for (int idx = 0; idx < k; idx++) {
+            folds.add(new Lexicon());
+        }
+        for (int idx = 0; idx < groups.size(); idx++) {
+            folds.get(idx % k).entries.addAll(groups.get(idx));
+        }
+        return folds;
+    }
+
+
+    /**
+     * Joins all folds except the one with given index.
+     *
+     * @param folds folds
+     * @param excluded index of excluded fold
+     * @return joined lexicon
+     */
+    public static Lexicon join(List<Lexicon> folds, int excluded) {
+        List<Entry> joined = new ArrayList<>();
+        for (int idx = 0; idx < folds.size(); idx++) {
+            if (idx != excluded) joined.addAll(folds.get(idx).entries);
+        }
+        return new Lexicon(joined);
+    }
+
+
+    /**
+     * Reads lexicon in multext format.
+     *
+     * @param reader reader
+     * @param format order of columns, e.g. <code>WLM</code> (word, lemma, msd, frequency)
+     * @return lexicon
+     * @throws IOException if reader fails
+     * @throws IllegalArgumentException if format has no word or lemma column
+     */
+    public static Lexicon read(BufferedReader reader, String format) throws IOException {
+        MultextFormat columns = new MultextFormat(format);
+        Lexicon lexicon = new Lexicon();
+        int lineIdx = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineIdx++;
+            String[] words = columns.split(line);
+            if (words == null) {
+                log.warn("Line doesn't confirm to the given format \"" + format + "\"! Line " + lineIdx + ".");
+                continue;
+            }
+            lexicon.add(columns.getWord(words), columns.getLemma(words), columns.getWeight(words),
+                columns.getMsd(words));
+        }
+        return lexicon;
+    }
+
+    public static final class Entry {
+
+        private final String word;
+        private final String lemma;
+        private final double weight;
+        private final String msd;
+
+
+        Entry(String word, String lemma, double weight, String msd) {
+            this.word = word;
+            this.lemma = lemma;
+            this.weight = weight;
+            this.msd = msd;
+        }
+
+
+        public String getWord() {
+            return word;
+        }
+
+
+        public String getLemma() {
+            return lemma;
+        }
+
+
+        public double getWeight() {
+            return weight;
+        }
+
+
+        public String getMsd() {
+            return msd;
+        }
+    }
+}
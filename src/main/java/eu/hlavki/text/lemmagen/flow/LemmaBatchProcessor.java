@@ -0,0 +1,318 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.flow;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Streaming stage which lemmatizes batches of words. Every batch received from upstream is lemmatized
+ * by task of configured executor, lemma batches are emitted downstream in the order of received batches.
+ * <p>
+ * Stage honors downstream demand: it requests batches from upstream only when downstream requested more
+ * lemma batches than are already in progress and number of batches in progress (requested, lemmatizing or
+ * waiting for demand) never exceeds configured limit. Signals follow Reactive Streams rules, i.e. emitted
+ * signals are serialized and lemma batches are never emitted without demand.
+ * <p>
+ * This class is independent of concrete streaming API. Subclass connects it to upstream and downstream,
+ * see <code>LemmaFlowProcessor</code> for {@link java.util.concurrent.Flow} (Java 9+).
+ *
+ * @author Michal Hlavac
+ */
+public abstract class LemmaBatchProcessor {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final Lemmatizer lemmatizer;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Deque<Batch> pending;
+    private long demand;
+    private int outstanding;
+    private boolean upstream;
+    private boolean downstream;
+    private boolean upstreamDone;
+    private boolean terminated;
+    private Throwable failure;
+    private boolean emitting;
+    private boolean missed;
+
+
+    protected LemmaBatchProcessor(Lemmatizer lemmatizer) {
+        this(lemmatizer, ForkJoinPool.commonPool(), DEFAULT_MAX_IN_FLIGHT);
+    }
+
+
+    /**
+     * @param lemmatizer lemmatizer
+     * @param executor executor running lemmatization of batches
+     * @param maxInFlight maximum number of batches requested from upstream and not yet emitted downstream
+     */
+    protected LemmaBatchProcessor(Lemmatizer lemmatizer, Executor executor, int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be positive");
+        this.lemmatizer = lemmatizer;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.pending = new ArrayDeque<>();
+    }
+
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+
+    /**
+     * Receives batch of words from upstream.
+     *
+     * @param words words
+     */
+    public void onNext(CharSequence[] words) {
+        if (words == null) throw new NullPointerException("words");
+        final Batch batch = new Batch(words);
+        synchronized (this) {
+            if (terminated || upstreamDone) return;
+            if (outstanding > 0) outstanding--;
+            pending.addLast(batch);
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    process(batch);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            complete(batch, null, e);
+        }
+    }
+
+
+    /**
+     * Receives upstream failure. Failure is emitted downstream immediately, batches in progress are
+     * dropped.
+     *
+     * @param error failure
+     */
+    public void onError(Throwable error) {
+        if (error == null) throw new NullPointerException("error");
+        synchronized (this) {
+            if (terminated || upstreamDone) return;
+            upstreamDone = true;
+            failure = error;
+        }
+        drain();
+    }
+
+
+    /**
+     * Receives upstream completion. Completion is emitted downstream after all batches in progress.
+     */
+    public void onComplete() {
+        synchronized (this) {
+            if (terminated || upstreamDone) return;
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+
+    /**
+     * Must be called by subclass when upstream is connected, i.e. {@link #requestUpstream(long)} may be
+     * called.
+     */
+    protected final void upstreamSubscribed() {
+        synchronized (this) {
+            upstream = true;
+        }
+        drain();
+    }
+
+
+    /**
+     * Must be called by subclass when downstream is connected, i.e. emit methods may be called.
+     */
+    protected final void downstreamSubscribed() {
+        synchronized (this) {
+            downstream = true;
+        }
+        drain();
+    }
+
+
+    /**
+     * Adds downstream demand.
+     *
+     * @param n number of requested lemma batches
+     */
+    protected final void request(long n) {
+        synchronized (this) {
+            if (terminated) return;
+            if (n <= 0) {
+                if (failure == null) failure = new IllegalArgumentException("Non-positive request " + n);
+            } else {
+                demand += n;
+                if (demand < 0) demand = Long.MAX_VALUE;
+            }
+        }
+        drain();
+    }
+
+
+    /**
+     * Cancels processing by downstream. Upstream is cancelled and batches in progress are dropped.
+     */
+    protected final void cancel() {
+        boolean cancelUpstream;
+        synchronized (this) {
+            if (terminated) return;
+            cancelUpstream = upstream && !upstreamDone;
+            terminate();
+        }
+        if (cancelUpstream) cancelUpstream();
+    }
+
+
+    protected abstract void requestUpstream(long n);
+
+
+    protected abstract void cancelUpstream();
+
+
+    protected abstract void emitNext(CharSequence[] lemmas);
+
+
+    protected abstract void emitError(Throwable error);
+
+
+    protected abstract void emitComplete();
+
+
+    private void process(Batch batch) {
+        try {
+            CharSequence[] lemmas = new CharSequence[batch.words.length];
+            lemmatizer.lemmatize(batch.words, lemmas, 0, lemmas.length);
+            complete(batch, lemmas, null);
+        } catch (RuntimeException e) {
+            complete(batch, null, e);
+        }
+    }
+
+
+    private void complete(Batch batch, CharSequence[] lemmas, Throwable error) {
+        synchronized (this) {
+            batch.lemmas = lemmas;
+            batch.error = error;
+            batch.done = true;
+        }
+        drain();
+    }
+
+
+    private void terminate() {
+        terminated = true;
+        pending.clear();
+    }
+
+
+    private long missingRequests() {
+        if (!upstream || upstreamDone || failure != null) return 0;
+        long missing = Math.min(demand, maxInFlight) - pending.size() - outstanding;
+        return Math.max(missing, 0);
+    }
+
+
+    /**
+     * Emits completed batches and terminal signals and requests upstream. Only one thread emits at a time,
+     * concurrent callers just mark that state was changed.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (emitting) {
+                missed = true;
+                return;
+            }
+            emitting = true;
+        }
+        for (;;) {
+            CharSequence[] lemmas = null;
+            Throwable error = null;
+            boolean complete = false;
+            boolean cancelUpstream = false;
+            long request = 0;
+            synchronized (this) {
+                Batch head = pending.peekFirst();
+                if (terminated) {
+                    emitting = false;
+                    return;
+                } else if (downstream && failure != null) {
+                    error = failure;
+                    cancelUpstream = upstream && !upstreamDone;
+                    terminate();
+                } else if (downstream && head != null && head.done && head.error != null) {
+                    error = head.error;
+                    cancelUpstream = upstream && !upstreamDone;
+                    terminate();
+                } else if (head != null && head.done && demand > 0) {
+                    pending.removeFirst();
+                    if (demand != Long.MAX_VALUE) demand--;
+                    lemmas = head.lemmas;
+                } else if (downstream && head == null && upstreamDone) {
+                    complete = true;
+                    terminate();
+                } else {
+                    request = missingRequests();
+                    if (request == 0) {
+                        if (!missed) {
+                            emitting = false;
+                            return;
+                        }
+                        missed = false;
+                        continue;
+                    }
+                    outstanding += request;
+                }
+            }
+            if (lemmas != null) {
+                emitNext(lemmas);
+            } else if (error != null) {
+                if (cancelUpstream) cancelUpstream();
+                emitError(error);
+            } else if (complete) {
+                emitComplete();
+            } else {
+                requestUpstream(request);
+            }
+        }
+    }
+
+    private static final class Batch {
+
+        private final CharSequence[] words;
+        private CharSequence[] lemmas;
+        private Throwable error;
+        private boolean done;
+
+
+        Batch(CharSequence[] words) {
+            this.words = words;
+        }
+    }
+}
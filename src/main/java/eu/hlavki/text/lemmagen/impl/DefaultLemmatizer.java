@@ -19,9 +19,17 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import eu.hlavki.text.lemmagen.api.TrainableLemmatizer;
+import eu.hlavki.text.lemmagen.codec.ModelFormat;
+import eu.hlavki.text.lemmagen.metrics.LemmatizerMetrics;
+import eu.hlavki.text.lemmagen.metrics.MetricsRegistry;
+import eu.hlavki.text.lemmagen.training.TrainingMonitor;
+import static eu.hlavki.text.lemmagen.training.TrainingPhase.*;
 
 /**
  *
@@ -30,10 +38,20 @@ import eu.hlavki.text.lemmagen.api.TrainableLemmatizer;
 public class DefaultLemmatizer implements TrainableLemmatizer {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultLemmatizer.class);
+    private static final int CHECKPOINT_MAGIC = 0x4C47434B; // LGCK
+    private static final int CHECKPOINT_VERSION = 2;
     private LemmatizerSettings settings;
     private ExampleList examples;
     private LemmaTreeNode rootNode;
     private LemmaTreeNode rootNodeFront;
+    //rear and front examples derived for front lemmatizer, kept until examples change
+    private ExampleList examplesRear;
+    private ExampleList examplesFront;
+    private LemmatizerMetrics metrics;
+    private LemmaPool lemmaPool;
+    private int suffixIndexLength;
+    private volatile SuffixIndex suffixIndex;
+    private volatile int treeModCount; //changes of trees, suffix index is built for the current trees only
 
 
     public DefaultLemmatizer() {
@@ -46,6 +64,7 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
         this.examples = new ExampleList(settings);
         this.rootNode = null;
         this.rootNodeFront = null;
+        this.metrics = MetricsRegistry.get(null);
     }
 
 
@@ -56,6 +75,16 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
     }
 
 
+    public LemmatizerSettings getSettings() {
+        return settings;
+    }
+
+
+    public ExampleList getExamples() {
+        return examples;
+    }
+
+
     public LemmaTreeNode getRootNode() {
         return getRootNodeSafe();
     }
@@ -66,6 +95,93 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
     }
 
 
+    public LemmatizerMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Sets metrics where lemmatizations and model building are recorded. Null disables measurement.
+     *
+     * @param metrics metrics or null
+     */
+    public void setMetrics(LemmatizerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+
+    public LemmaPool getLemmaPool() {
+        return lemmaPool;
+    }
+
+
+    /**
+     * Sets pool of canonical lemma instances. Lemmatizer with pool returns the same instance for equal lemmas.
+     * Null disables pooling.
+     *
+     * @param lemmaPool pool or null
+     */
+    public void setLemmaPool(LemmaPool lemmaPool) {
+        this.lemmaPool = lemmaPool;
+    }
+
+
+    public int getSuffixIndexLength() {
+        return suffixIndexLength;
+    }
+
+
+    /**
+     * Sets number of the last word characters indexed by {@link SuffixIndex} of the rear tree. Lookups start
+     * at node found by the index instead of the root, results don't change. Index is built on the first
+     * lemmatization after model is built.
+     *
+     * @param suffixIndexLength number of characters from 1 to {@link SuffixIndex#MAX_SUFFIX_LENGTH}, 0
+     * disables the index
+     */
+    public void setSuffixIndexLength(int suffixIndexLength) {
+        if (suffixIndexLength < 0 || suffixIndexLength > SuffixIndex.MAX_SUFFIX_LENGTH) {
+            throw new IllegalArgumentException("Invalid suffix index length " + suffixIndexLength);
+        }
+        this.suffixIndexLength = suffixIndexLength;
+        this.suffixIndex = null;
+    }
+
+
+    /**
+     * Finds the deepest node of the rear tree, by suffix index if it's enabled. Index is rebuilt when the tree
+     * is replaced or changed by {@link #retainNodes(Set)}.
+     */
+    private LemmaTreeNode findNode(CharSequence word) {
+        LemmaTreeNode root = getRootNodeSafe();
+        int length = suffixIndexLength;
+        if (length == 0) return root.findNode(word);
+        SuffixIndex index = suffixIndex;
+        if (index == null || index.getRoot() != root || index.getSuffixLength() != length) {
+            int modCount = treeModCount;
+            index = new SuffixIndex(root, length);
+            if (modCount == treeModCount) suffixIndex = index;
+        }
+        return index.findNode(word);
+    }
+
+
+    /**
+     * Removes nodes of the trees which are not retained. Words which would be lemmatized by removed subtrees
+     * are lemmatized by the best rule of the nearest retained ancestor. Trees are changed in place, so suffix
+     * index built over them is dropped.
+     *
+     * @param retained retained nodes including roots
+     */
+    public void retainNodes(Set<LemmaTreeNode> retained) {
+        for (LemmaTreeNode node : retained) {
+            node.retainSubNodes(retained);
+        }
+        treeModCount++;
+        suffixIndex = null;
+    }
+
+
     private LemmaTreeNode getRootNodeSafe() {
         if (rootNode == null) buildModel();
         return rootNode;
@@ -79,8 +195,50 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
 
 
     public final void addMultextFile(BufferedReader reader, String format) throws IOException {
-        this.examples.addMultextFile(reader, format);
-        rootNode = null;
+        addMultextFile(reader, format, new TrainingMonitor());
+    }
+
+
+    /**
+     * Reads examples from lexicon and reports progress of parsing and joining to the monitor.
+     *
+     * @param reader lexicon reader
+     * @param format format of lexicon lines, e.g. WLM
+     * @param monitor training monitor
+     * @throws IOException if lexicon cannot be read
+     * @throws CancellationException if training is cancelled, examples read so far are kept
+     */
+    public final void addMultextFile(BufferedReader reader, String format, TrainingMonitor monitor)
+        throws IOException {
+        examplesChanged();
+        this.examples.addMultextFile(reader, format, monitor);
+    }
+
+
+    /**
+     * Reads lexicons in parallel, see {@link ExampleList#addMultextFiles(List, String, int)}.
+     *
+     * @param readers lexicon readers
+     * @param format format of lexicon lines, e.g. WLM
+     * @param threads number of threads
+     * @throws IOException if any lexicon cannot be read
+     */
+    public final void addMultextFiles(List<BufferedReader> readers, String format, int threads)
+        throws IOException {
+        examplesChanged();
+        this.examples.addMultextFiles(readers, format, threads);
+    }
+
+
+    /**
+     * Creates buffer for concurrent producer of examples. Buffers are merged in order of creation when
+     * model is built.
+     *
+     * @return new buffer
+     */
+    public ExampleBuffer newExampleBuffer() {
+        examplesChanged();
+        return examples.newBuffer();
     }
 
 
@@ -99,12 +257,21 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
     @Override
     public void addExample(String word, String lemma, double weight, String msd) {
         examples.addExample(word, lemma, weight, msd);
-        rootNode = null;
+        examplesChanged();
     }
 
 
     public void clearExamples() {
         examples.clear();
+        examplesRear = null;
+        examplesFront = null;
+    }
+
+
+    private void examplesChanged() {
+        rootNode = null;
+        examplesRear = null;
+        examplesFront = null;
     }
 
 
@@ -115,43 +282,214 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
 
     @Override
     public final void buildModel() {
+        buildModel(new TrainingMonitor());
+    }
+
+
+    /**
+     * Builds the model and reports progress of sorting, front/rear derivation, tree building and
+     * collapsing to the monitor. Model is replaced only when building succeeds, so cancelled build leaves
+     * lemmatizer without model and the next call starts from the beginning.
+     *
+     * @param monitor training monitor
+     * @throws CancellationException if training is cancelled or time budget is exceeded
+     */
+    public final void buildModel(TrainingMonitor monitor) {
         if (rootNode != null) return;
 
+        long start = System.nanoTime();
+        monitor.begin(SORTING);
+        examples.finalizeAdditions();
+        monitor.worked(examples.getSize());
+        monitor.finish(SORTING);
+        LemmaTreeNode rear;
+        LemmaTreeNode front = null;
         if (!settings.isBuildFrontLemmatizer()) {
-            //TODO remove: elExamples.FinalizeAdditions();
-            examples.finalizeAdditions();
-            rootNode = new LemmaTreeNode(settings, examples);
+            rear = new LemmaTreeNode(settings, examples, monitor);
         } else {
-            rootNode = new LemmaTreeNode(settings, examples.getFrontRearExampleList(false));
-            rootNodeFront = new LemmaTreeNode(settings, examples.getFrontRearExampleList(true));
+            monitor.begin(FRONT_REAR);
+            deriveFrontRear(monitor);
+            monitor.finish(FRONT_REAR);
+            rear = new LemmaTreeNode(settings, examplesRear, monitor);
+            front = new LemmaTreeNode(settings, examplesFront, monitor);
+        }
+        rootNode = rear;
+        rootNodeFront = front;
+        LemmatizerMetrics m = metrics;
+        if (m != null) m.recordBuild(System.nanoTime() - start);
+    }
+
+
+    private void deriveFrontRear(TrainingMonitor monitor) {
+        if (examplesRear != null) return;
+        ExampleList rear = examples.getFrontRearExampleList(false);
+        monitor.worked(rear.getSize());
+        ExampleList front = examples.getFrontRearExampleList(true);
+        monitor.worked(front.getSize());
+        examplesRear = rear;
+        examplesFront = front;
+    }
+
+
+    /**
+     * Writes training checkpoint: settings with thresholds, rule table and sorted examples and, if front lemmatizer is built,
+     * derived rear and front examples. Lemmatizer read from checkpoint by {@link #readCheckpoint(ObjectInput)}
+     * starts training at tree building, added examples are merged into the sorted examples.
+     *
+     * @param out output
+     * @throws IOException if writing fails
+     */
+    public void writeCheckpoint(ObjectOutput out) throws IOException {
+        out.writeInt(CHECKPOINT_MAGIC);
+        out.writeInt(CHECKPOINT_VERSION);
+        settings.writeObject(out);
+        settings.writeThresholds(out);
+        examples.writeCheckpoint(out);
+        if (settings.isBuildFrontLemmatizer()) {
+            deriveFrontRear(new TrainingMonitor());
+            examplesRear.writeCheckpoint(out);
+            examplesFront.writeCheckpoint(out);
         }
     }
 
 
+    /**
+     * Reads lemmatizer from training checkpoint. Model isn't built.
+     *
+     * @param in input
+     * @return lemmatizer
+     * @throws IOException if checkpoint cannot be read
+     */
+    public static DefaultLemmatizer readCheckpoint(ObjectInput in) throws IOException {
+        if (in.readInt() != CHECKPOINT_MAGIC) throw new IOException("Not a training checkpoint");
+        int version = in.readInt();
+        if (version != CHECKPOINT_VERSION) throw new IOException("Unsupported checkpoint version " + version);
+        DefaultLemmatizer lemmatizer;
+        try {
+            lemmatizer = new DefaultLemmatizer(new LemmatizerSettings(in));
+            lemmatizer.settings.readThresholds(in);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Can't read settings", e);
+        }
+        lemmatizer.examples = ExampleList.readCheckpoint(in, lemmatizer.settings);
+        if (lemmatizer.settings.isBuildFrontLemmatizer()) {
+            lemmatizer.examplesRear = ExampleList.readCheckpoint(in, lemmatizer.settings);
+            lemmatizer.examplesFront = ExampleList.readCheckpoint(in, lemmatizer.settings);
+        }
+        return lemmatizer;
+    }
+
+
     @Override
     public CharSequence lemmatize(CharSequence word) {
+        LemmatizerMetrics m = metrics;
+        if (m != null) return lemmatizeMeasured(word, m);
+
         if (!settings.isBuildFrontLemmatizer()) {
-            return getRootNodeSafe().lemmatize(word);
+            return lemmatizeRear(word);
         } else {
-            String wordFront = new StringBuilder(word).reverse().toString();
-            CharSequence lemmaFront = getRootNodeFrontSafe().lemmatize(wordFront);
-            String wordRear = new StringBuilder(lemmaFront).reverse().toString();
-            return getRootNodeSafe().lemmatize(wordRear);
+            return lemmatizeRear(frontLemmatize(word));
         }
     }
 
 
-    public void writeObject(ObjectOutput out, boolean serializeExamples) throws IOException {
+    private CharSequence lemmatizeRear(CharSequence word) {
+        LemmaPool pool = lemmaPool;
+        LemmaRule rule = findNode(word).getBestRule();
+        return pool == null ? rule.lemmatize(word) : rule.lemmatize(word, pool);
+    }
 
-        settings.writeObject(out);
 
-        out.writeBoolean(serializeExamples);
-        examples.writeObject(out, serializeExamples, false);
+    /**
+     * Finds candidate lemmas of the word using rules kept in the deepest matching tree node. The first
+     * candidate is the lemma returned by {@link #lemmatize(CharSequence)}, number of candidates is limited by
+     * capacity of the holder and by maxRulesPerNode setting used to build the model. Holder is reused, so
+     * the call doesn't allocate once holder buffers are big enough.
+     *
+     * @param word word to lemmatize
+     * @param candidates holder of results, it's cleared first
+     * @return number of candidates
+     */
+    public int lemmatize(CharSequence word, LemmaCandidates candidates) {
+        candidates.clear();
+        CharSequence wordRear = word;
+        if (settings.isBuildFrontLemmatizer()) {
+            StringBuilder wordFront = candidates.wordBuffer;
+            wordFront.setLength(0);
+            wordFront.append(word).reverse();
+            StringBuilder lemmaFront = candidates.lemmaBuffer;
+            getRootNodeFrontSafe().findNode(wordFront).getBestRule().lemmatize(wordFront, lemmaFront);
+            wordRear = lemmaFront.reverse();
+        }
+        findNode(wordRear).addCandidates(wordRear, candidates);
+        return candidates.size();
+    }
 
-        if (!serializeExamples) {
-            examples.getFrontRearExampleList(false).writeObject(out, serializeExamples, false);
-            examples.getFrontRearExampleList(true).writeObject(out, serializeExamples, false);
+
+    @Override
+    public void lemmatize(CharSequence[] words, CharSequence[] lemmas, int offset, int length) {
+        if (metrics != null || settings.isBuildFrontLemmatizer()) {
+            TrainableLemmatizer.super.lemmatize(words, lemmas, offset, length);
+            return;
+        }
+        LemmaPool pool = lemmaPool;
+        for (int idx = offset; idx < offset + length; idx++) {
+            CharSequence word = words[idx];
+            LemmaRule rule = findNode(word).getBestRule();
+            lemmas[idx] = pool == null ? rule.lemmatize(word) : rule.lemmatize(word, pool);
         }
+    }
+
+
+    private CharSequence frontLemmatize(CharSequence word) {
+        String wordFront = new StringBuilder(word).reverse().toString();
+        CharSequence lemmaFront = getRootNodeFrontSafe().lemmatize(wordFront);
+        return new StringBuilder(lemmaFront).reverse().toString();
+    }
+
+
+    private CharSequence lemmatizeMeasured(CharSequence word, LemmatizerMetrics m) {
+        long start = System.nanoTime();
+        CharSequence wordRear = settings.isBuildFrontLemmatizer() ? frontLemmatize(word) : word;
+        LemmaTreeNode node = findNode(wordRear);
+        LemmaRule rule = node.getBestRule();
+        LemmaPool pool = lemmaPool;
+        CharSequence lemma = pool == null ? rule.lemmatize(wordRear) : rule.lemmatize(wordRear, pool);
+        long time = System.nanoTime() - start;
+        m.recordLemmatize(time, node.getDepth(), rule.isIdentity());
+        return lemma;
+    }
+
+
+    /**
+     * Returns format in which the model is saved. Training thresholds are kept only in formats with header,
+     * legacy models are written without them.
+     *
+     * @param format requested format
+     * @return format with {@link ModelFormat#THRESHOLDS_FLAG} if thresholds are set and format has header
+     */
+    public ModelFormat modelFormat(ModelFormat format) {
+        if (format.isLegacy() || !settings.hasThresholds()) return format;
+        return format.withFlags(format.getFlags() | ModelFormat.THRESHOLDS_FLAG);
+    }
+
+
+    public void writeObject(ObjectOutput out, boolean serializeExamples) throws IOException {
+        writeObject(out, serializeExamples, ModelFormat.legacy());
+    }
+
+
+    /**
+     * Writes model. Training thresholds are written only if format has {@link ModelFormat#THRESHOLDS_FLAG},
+     * see {@link #modelFormat(ModelFormat)}.
+     *
+     * @param out output
+     * @param serializeExamples true if examples are written too
+     * @param format format of model
+     * @throws IOException if writing fails
+     */
+    public void writeObject(ObjectOutput out, boolean serializeExamples, ModelFormat format) throws IOException {
+        writeHead(out, serializeExamples, format);
 
         rootNode.writeObject(out);
         if (settings.isBuildFrontLemmatizer()) {
@@ -161,8 +499,14 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
 
 
     public DefaultLemmatizer(ObjectInput in) throws IOException {
+        this(in, ModelFormat.legacy());
+    }
+
+
+    public DefaultLemmatizer(ObjectInput in, ModelFormat format) throws IOException {
+        this.metrics = MetricsRegistry.get(null);
         try {
-            readObject(in);
+            readObject(in, format);
             buildModel();
         } catch (ClassNotFoundException e) {
             log.error("Can't load instance from input stream", e);
@@ -170,8 +514,47 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
     }
 
 
-    private void readObject(ObjectInput in) throws IOException, ClassNotFoundException {
+    private void readObject(ObjectInput in, ModelFormat format) throws IOException, ClassNotFoundException {
+        ExampleList[] treeExamples = readHead(in, format);
+        rootNode = new LemmaTreeNode(in, settings, treeExamples[0], null);
+        if (treeExamples.length > 1) {
+            rootNodeFront = new LemmaTreeNode(in, settings, treeExamples[1], null);
+        }
+    }
+
+
+    /**
+     * Writes settings and rule tables, i.e. everything except of trees.
+     *
+     * @param out output
+     * @param serializeExamples true if examples are written too
+     * @param format format of model
+     * @throws IOException if writing fails
+     */
+    void writeHead(ObjectOutput out, boolean serializeExamples, ModelFormat format) throws IOException {
+        settings.writeObject(out);
+        if (format.hasFlag(ModelFormat.THRESHOLDS_FLAG)) settings.writeThresholds(out);
+
+        out.writeBoolean(serializeExamples);
+        examples.writeObject(out, serializeExamples, false);
+
+        if (!serializeExamples) {
+            examples.getFrontRearExampleList(false).writeObject(out, serializeExamples, false);
+            examples.getFrontRearExampleList(true).writeObject(out, serializeExamples, false);
+        }
+    }
+
+
+    /**
+     * Reads data written by {@link #writeHead(ObjectOutput, boolean, ModelFormat)}.
+     *
+     * @param in input
+     * @param format format of model
+     * @return example lists of rear tree and, if front lemmatizer is built, of front tree
+     */
+    ExampleList[] readHead(ObjectInput in, ModelFormat format) throws IOException, ClassNotFoundException {
         settings = new LemmatizerSettings(in);
+        if (format.hasFlag(ModelFormat.THRESHOLDS_FLAG)) settings.readThresholds(in);
 
         boolean serializeExamples = in.readBoolean();
         examples = new ExampleList(in, settings);
@@ -187,12 +570,17 @@ public class DefaultLemmatizer implements TrainableLemmatizer {
             examplesFront = new ExampleList(in, settings);
         }
 
-        if (!settings.isBuildFrontLemmatizer()) {
-            rootNode = new LemmaTreeNode(in, settings, examples, null);
-        } else {
-            rootNode = new LemmaTreeNode(in, settings, examplesRear, null);
-            rootNodeFront = new LemmaTreeNode(in, settings, examplesFront, null);
-        }
+        if (!settings.isBuildFrontLemmatizer()) return new ExampleList[]{examples};
+        return new ExampleList[]{examplesRear, examplesFront};
+    }
+
+
+    /**
+     * Sets model read by {@link SectionedModel}.
+     */
+    void setModel(LemmaTreeNode rootNode, LemmaTreeNode rootNodeFront) {
+        this.rootNode = rootNode;
+        this.rootNodeFront = rootNodeFront;
     }
 
 }
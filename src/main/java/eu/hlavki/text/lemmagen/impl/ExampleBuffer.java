@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import static eu.hlavki.text.lemmagen.impl.LemmatizerSettings.MsdConsideration.IGNORE;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffer of examples filled by one producer thread. Buffers are obtained from
+ * {@link ExampleList#newBuffer()}, every producer uses its own buffer, so producers don't share any state
+ * and can add examples concurrently. Examples are created in producer thread with rules of buffer local
+ * rule list. Buffers are merged by {@link ExampleList#finalizeAdditions()} in order in which they were
+ * created, rules are replaced by rules of the example list and examples are joined in the order they were
+ * added, so the result and rule ids are the same as if all examples were added sequentially.
+ * <p>
+ * Buffer is not thread safe. Producers must finish before examples are finalized, buffer can't be used after
+ * merge.
+ *
+ * @author Michal Hlavac
+ */
+public final class ExampleBuffer {
+
+    private final LemmatizerSettings settings;
+    private final RuleList rules;
+    private List<LemmaExample> examples;
+
+
+    ExampleBuffer(LemmatizerSettings settings) {
+        this.settings = settings;
+        this.rules = new RuleList(settings);
+        this.examples = new ArrayList<>();
+    }
+
+
+    public void addExample(String word, String lemma, double weight, String msd) {
+        if (examples == null) throw new IllegalStateException("Buffer was already merged");
+        String newMsd = settings.getMsdConsider() != IGNORE ? msd : null;
+        examples.add(new LemmaExample(word, lemma, weight, newMsd, rules, settings));
+    }
+
+
+    /**
+     * @return number of examples added to the buffer, duplicates are counted too
+     */
+    public int size() {
+        return examples == null ? 0 : examples.size();
+    }
+
+
+    /**
+     * Moves examples to the list. Local rule is replaced by the rule of the first example which uses it, so
+     * new rules get ids in the same order as in sequential ingestion.
+     *
+     * @param list target list
+     */
+    void mergeInto(ExampleList list) {
+        if (examples == null) return;
+        LemmaRule[] mapping = new LemmaRule[rules.size()];
+        RuleList target = list.getRules();
+        for (LemmaExample le : examples) {
+            int id = le.getRule().getId();
+            LemmaRule rule = mapping[id];
+            if (rule == null) {
+                rule = target.addRule(le);
+                mapping[id] = rule;
+            }
+            le.setRule(rule);
+            list.add(le);
+        }
+        examples = null;
+    }
+}
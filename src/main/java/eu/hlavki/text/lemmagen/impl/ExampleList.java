@@ -17,16 +17,22 @@ package eu.hlavki.text.lemmagen.impl;
 
 import static eu.hlavki.text.lemmagen.impl.LemmatizerSettings.MsdConsideration.IGNORE;
 import static eu.hlavki.text.lemmagen.impl.Serializer.*;
+import static eu.hlavki.text.lemmagen.training.TrainingPhase.*;
+import eu.hlavki.text.lemmagen.training.TrainingMonitor;
+import eu.hlavki.text.lemmagen.training.TrainingPhase;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,16 +43,21 @@ import org.slf4j.LoggerFactory;
 public class ExampleList {
 
     private static final Logger log = LoggerFactory.getLogger(ExampleList.class);
+    private static final int PARSE_BATCH = 4096;
     private LemmatizerSettings settings;
     private RuleList rules;
-    private Map<String, LemmaExample> examples;
+    private Map<LemmaExample, LemmaExample> examples;
     private transient List<LemmaExample> examplesList;
+    //examples sorted by the last finalization and examples added since then
+    private transient List<LemmaExample> sorted;
+    private final transient List<LemmaExample> added = new ArrayList<>();
+    private final List<ExampleBuffer> buffers = new ArrayList<>();
 
 
     public ExampleList(LemmatizerSettings settings) {
         this.settings = settings;
 
-        this.examples = new TreeMap<>();
+        this.examples = new HashMap<>();
         this.examplesList = null;
         this.rules = new RuleList(settings);
     }
@@ -87,51 +98,140 @@ public class ExampleList {
     }
 
 
+    /**
+     * Releases reversed chars of words used to sort examples and build the tree, so they don't stay in memory
+     * with examples. Chars are created again if examples are compared later.
+     */
+    void releaseWordChars() {
+        if (examplesList == null) return;
+        for (LemmaExample le : examplesList) {
+            le.releaseWordCharsReversed();
+        }
+    }
+
+
     public RuleList getRules() {
         return rules;
     }
 
 
     public final void addMultextFile(BufferedReader reader, String format) throws IOException {
+        addMultextFile(reader, format, new TrainingMonitor());
+    }
+
+
+    /**
+     * Reads examples from lexicon. Lines are read and split in batches ({@link TrainingPhase#PARSING}),
+     * then examples of the batch are created and joined ({@link TrainingPhase#JOINING}). If training is
+     * cancelled, examples read so far remain in the list.
+     *
+     * @param reader lexicon reader
+     * @param format format of lexicon lines, e.g. WLM
+     * @param monitor training monitor
+     * @throws IOException if lexicon cannot be read
+     * @throws java.util.concurrent.CancellationException if training is cancelled
+     */
+    public final void addMultextFile(BufferedReader reader, String format, TrainingMonitor monitor)
+        throws IOException {
+        readMultextFile(reader, format, monitor, null);
+    }
+
+
+    /**
+     * Reads lexicons in parallel. Every reader fills its own {@link ExampleBuffer}, buffers are merged in
+     * order of readers, so examples and rule ids are the same as if lexicons were read sequentially.
+     *
+     * @param readers lexicon readers
+     * @param format format of lexicon lines, e.g. WLM
+     * @param threads number of threads
+     * @throws IOException if any lexicon cannot be read, examples of other lexicons are kept
+     */
+    public final void addMultextFiles(List<BufferedReader> readers, final String format, int threads)
+        throws IOException {
+        List<Future<?>> tasks = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, readers.size())));
+        try {
+            for (final BufferedReader reader : readers) {
+                final ExampleBuffer buffer = newBuffer();
+                tasks.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        readMultextFile(reader, format, new TrainingMonitor(), buffer);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reading of lexicons interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Reading of lexicons failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private void readMultextFile(BufferedReader reader, String format, TrainingMonitor monitor,
+        ExampleBuffer buffer) throws IOException {
         int err = 0;
         int lineIdx = 0;
 
-        int wIdx = format.indexOf('W');
-        int lIdx = format.indexOf('L');
-        int mIdx = format.indexOf('M');
-        int fIdx = format.indexOf('F');
-        int iLen = Math.max(Math.max(wIdx, lIdx), Math.max(mIdx, fIdx)) + 1;
-
-        if (wIdx < 0 || lIdx < 0) {
+        MultextFormat columns;
+        try {
+            columns = new MultextFormat(format);
+        } catch (IllegalArgumentException e) {
             log.error("Can not find word and lemma location in the format specification");
             return;
         }
 
-        String line;
-        while ((line = reader.readLine()) != null && err < 50) {
-            lineIdx++;
-
-            String[] words = line.split("\t");
-            if (words.length < iLen) {
-                log.warn("Line doesn't confirm to the given format \"" + format + "\"! Line " + lineIdx + ".");
-                err++;
-                continue;
+        String[][] batch = new String[PARSE_BATCH][];
+        boolean more = true;
+        while (more) {
+            monitor.begin(PARSING);
+            int size = 0;
+            while (size < batch.length) {
+                String line = reader.readLine();
+                if (line == null || err >= 50) {
+                    more = false;
+                    break;
+                }
+                lineIdx++;
+                monitor.worked(1);
+
+                String[] words = columns.split(line);
+                if (words == null) {
+                    log.warn("Line doesn't confirm to the given format \"" + format + "\"! Line " + lineIdx + ".");
+                    err++;
+                    continue;
+                }
+                batch[size++] = words;
             }
 
-            String word = words[wIdx];
-            String lemma = words[lIdx];
-            if (lemma.equals("=")) {
-                lemma = word;
-            }
-            String msd = null;
-            if (mIdx > -1) msd = words[mIdx];
-            double weight = 1;
-            if (fIdx > -1) {
-                weight = Double.parseDouble(words[mIdx]);
-            }
+            monitor.begin(JOINING);
+            for (int idx = 0; idx < size; idx++) {
+                String[] words = batch[idx];
+                batch[idx] = null;
 
-            addExample(word, lemma, weight, msd);
+                String word = columns.getWord(words);
+                String lemma = columns.getLemma(words);
+                String msd = columns.getMsd(words);
+                double weight = columns.getWeight(words);
+
+                if (buffer == null) {
+                    addExample(word, lemma, weight, msd);
+                } else {
+                    buffer.addExample(word, lemma, weight, msd);
+                }
+                monitor.worked(1);
+            }
         }
+        monitor.finish(PARSING);
+        monitor.finish(JOINING);
         if (err == 50) {
             log.error("Parsing stopped because of too many (50) errors. Check format specification");
         }
@@ -145,10 +245,27 @@ public class ExampleList {
     }
 
 
-    private LemmaExample add(LemmaExample newLe) {
-        LemmaExample result = examples.get(newLe.getSignature());
+    /**
+     * Creates buffer for concurrent producer of examples. Buffer is merged to this list when examples are
+     * finalized.
+     *
+     * @return new buffer
+     */
+    public ExampleBuffer newBuffer() {
+        ExampleBuffer buffer = new ExampleBuffer(settings);
+        synchronized (buffers) {
+            buffers.add(buffer);
+        }
+        examplesList = null;
+        return buffer;
+    }
+
+
+    LemmaExample add(LemmaExample newLe) {
+        LemmaExample result = examples.get(newLe);
         if (result == null) {
-            examples.put(newLe.getSignature(), newLe);
+            examples.put(newLe, newLe);
+            if (sorted != null) added.add(newLe);
         } else {
             result.join(newLe);
         }
@@ -158,15 +275,61 @@ public class ExampleList {
 
 
     public final void clear() {
+        synchronized (buffers) {
+            buffers.clear();
+        }
         examples.clear();
         examplesList = null;
+        sorted = null;
+        added.clear();
     }
 
 
+    /**
+     * Sorts examples. If examples were sorted before, only examples added since then are sorted and merged
+     * into previous order. Joining doesn't change order of examples, so previously sorted examples stay sorted.
+     */
     public final void finalizeAdditions() {
+        mergeBuffers();
         if (examplesList != null) return;
-        examplesList = new ArrayList<>(examples.values());
-        Collections.sort(examplesList);
+        if (sorted == null) {
+            examplesList = ExampleSorter.sort(examples.values());
+        } else {
+            examplesList = merge(sorted, ExampleSorter.sort(added));
+        }
+        sorted = examplesList;
+        added.clear();
+    }
+
+
+    private static List<LemmaExample> merge(List<LemmaExample> list1, List<LemmaExample> list2) {
+        if (list2.isEmpty()) return list1;
+        List<LemmaExample> result = new ArrayList<>(list1.size() + list2.size());
+        int idx1 = 0;
+        int idx2 = 0;
+        while (idx1 < list1.size() && idx2 < list2.size()) {
+            if (list1.get(idx1).compareTo(list2.get(idx2)) <= 0) {
+                result.add(list1.get(idx1++));
+            } else {
+                result.add(list2.get(idx2++));
+            }
+        }
+        result.addAll(list1.subList(idx1, list1.size()));
+        result.addAll(list2.subList(idx2, list2.size()));
+        return result;
+    }
+
+
+    private void mergeBuffers() {
+        List<ExampleBuffer> merged;
+        synchronized (buffers) {
+            if (buffers.isEmpty()) return;
+            merged = new ArrayList<>(buffers);
+            buffers.clear();
+        }
+        for (ExampleBuffer buffer : merged) {
+            buffer.mergeInto(this);
+        }
     }
 
 
@@ -185,6 +348,8 @@ public class ExampleList {
 
 
     public void writeObject(ObjectOutput out, boolean serializeExamples, boolean topObject) throws IOException {
+        mergeBuffers();
+
         //save metadata
         out.writeBoolean(topObject);
 
@@ -226,6 +391,61 @@ public class ExampleList {
     }
 
 
+    /**
+     * Writes rules and sorted examples to training checkpoint. Examples reference rules by id.
+     *
+     * @param out output
+     * @throws IOException if writing fails
+     */
+    void writeCheckpoint(ObjectOutput out) throws IOException {
+        finalizeAdditions();
+        rules.writeObject(out, false);
+        out.writeInt(examplesList.size());
+        for (LemmaExample le : examplesList) {
+            out.writeUTF(le.getWord());
+            out.writeUTF(le.getLemma());
+            writeString(out, le.getMsd());
+            out.writeDouble(le.getWeight());
+            out.writeInt(le.getRule().getId());
+        }
+    }
+
+
+    /**
+     * Reads list written by {@link #writeCheckpoint(ObjectOutput)}. Examples are already sorted, so the list
+     * is finalized without sorting.
+     *
+     * @param in input
+     * @param settings settings of the lemmatizer
+     * @return example list
+     * @throws IOException if reading fails
+     */
+    static ExampleList readCheckpoint(ObjectInput in, LemmatizerSettings settings) throws IOException {
+        ExampleList list = new ExampleList(settings);
+        try {
+            list.rules = new RuleList(in, settings);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Can't read rules", e);
+        }
+        int count = in.readInt();
+        List<LemmaExample> examplesList = new ArrayList<>(count);
+        list.examples = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+        for (int idx = 0; idx < count; idx++) {
+            String word = in.readUTF();
+            String lemma = in.readUTF();
+            String msd = readString(in);
+            double weight = in.readDouble();
+            LemmaRule rule = list.rules.getById(in.readInt());
+            LemmaExample le = new LemmaExample(word, lemma, weight, msd, rule, settings);
+            list.examples.put(le, le);
+            examplesList.add(le);
+        }
+        list.examplesList = examplesList;
+        list.sorted = examplesList;
+        return list;
+    }
+
+
     public ExampleList(ObjectInput in, LemmatizerSettings settings) throws IOException,
         ClassNotFoundException {
         readObject(in, settings);
@@ -257,7 +477,7 @@ public class ExampleList {
             LemmaRule rule = rules.get(readString(in));
             LemmaExample le = new LemmaExample(in, this.settings, rule);
 
-            examples.put(le.getSignature(), le);
+            examples.put(le, le);
             if (createLstExamples) examplesList.add(le);
         }
     }
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts examples to the order of {@link LemmaExample#compareTo(LemmaExample)} by multikey quicksort of
+ * reversed words. Reversed words are packed into single char array and partitions are split by one
+ * character at a time, so common suffixes are not compared repeatedly. Examples with equal words are
+ * ordered by {@link LemmaExample#compareTo(LemmaExample)}. Big inputs are sorted in parallel.
+ *
+ * @author Michal Hlavac
+ */
+final class ExampleSorter {
+
+    private static final int INSERTION_THRESHOLD = 12;
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+    private static final int FORK_THRESHOLD = 1 << 12;
+
+    private final LemmaExample[] examples;
+    private final char[] chars;
+    private final int[] starts;
+    private final int[] lengths;
+    private final int[] order;
+
+
+    private ExampleSorter(Collection<LemmaExample> values) {
+        this.examples = values.toArray(new LemmaExample[values.size()]);
+        int n = examples.length;
+        this.starts = new int[n];
+        this.lengths = new int[n];
+        this.order = new int[n];
+        int total = 0;
+        for (int idx = 0; idx < n; idx++) {
+            starts[idx] = total;
+            lengths[idx] = examples[idx].getWord().length();
+            total += lengths[idx];
+            order[idx] = idx;
+        }
+        this.chars = new char[total];
+        for (int idx = 0; idx < n; idx++) {
+            String word = examples[idx].getWord();
+            int end = starts[idx] + lengths[idx] - 1;
+            for (int pos = 0; pos < lengths[idx]; pos++) {
+                chars[end - pos] = word.charAt(pos);
+            }
+        }
+    }
+
+
+    /**
+     * Returns new list of sorted examples.
+     *
+     * @param values examples, no two of them are equal
+     * @return sorted examples
+     */
+    static List<LemmaExample> sort(Collection<LemmaExample> values) {
+        return sort(values, values.size() >= PARALLEL_THRESHOLD);
+    }
+
+
+    static List<LemmaExample> sort(Collection<LemmaExample> values, boolean parallel) {
+        ExampleSorter sorter = new ExampleSorter(values);
+        int n = sorter.examples.length;
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(sorter.new SortTask(0, n, 0));
+        } else {
+            sorter.sort(0, n, 0, null);
+        }
+        List<LemmaExample> result = new ArrayList<>(n);
+        for (int idx : sorter.order) {
+            result.add(sorter.examples[idx]);
+        }
+        return result;
+    }
+
+
+    /**
+     * Sorts <code>order[lo, hi)</code> whose words share first <code>depth</code> reversed characters.
+     * Partitions bigger than fork threshold are forked if tasks list is given.
+     */
+    private void sort(int lo, int hi, int depth, List<SortTask> tasks) {
+        while (hi - lo > INSERTION_THRESHOLD) {
+            int pivot = median(key(lo, depth), key((lo + hi) >>> 1, depth), key(hi - 1, depth));
+            int lt = lo;
+            int gt = hi;
+            int idx = lo;
+            while (idx < gt) {
+                int key = key(idx, depth);
+                if (key < pivot) {
+                    swap(lt++, idx++);
+                } else if (key > pivot) {
+                    swap(idx, --gt);
+                } else {
+                    idx++;
+                }
+            }
+            sortPart(lo, lt, depth, tasks);
+            sortPart(gt, hi, depth, tasks);
+            if (pivot == 0) {
+                // words are equal
+                insertionSort(lt, gt, depth);
+                return;
+            }
+            lo = lt;
+            hi = gt;
+            depth++;
+        }
+        insertionSort(lo, hi, depth);
+    }
+
+
+    private void sortPart(int lo, int hi, int depth, List<SortTask> tasks) {
+        if (tasks != null && hi - lo >= FORK_THRESHOLD) {
+            SortTask task = new SortTask(lo, hi, depth);
+            task.fork();
+            tasks.add(task);
+        } else {
+            sort(lo, hi, depth, tasks);
+        }
+    }
+
+
+    private void insertionSort(int lo, int hi, int depth) {
+        for (int idx = lo + 1; idx < hi; idx++) {
+            int value = order[idx];
+            int pos = idx;
+            while (pos > lo && compare(order[pos - 1], value, depth) > 0) {
+                order[pos] = order[pos - 1];
+                pos--;
+            }
+            order[pos] = value;
+        }
+    }
+
+
+    private int compare(int e1, int e2, int depth) {
+        int len1 = lengths[e1];
+        int len2 = lengths[e2];
+        int len = Math.min(len1, len2);
+        int start1 = starts[e1];
+        int start2 = starts[e2];
+        for (int pos = depth; pos < len; pos++) {
+            char ch1 = chars[start1 + pos];
+            char ch2 = chars[start2 + pos];
+            if (ch1 != ch2) return ch1 < ch2 ? -1 : 1;
+        }
+        if (len1 != len2) return len1 < len2 ? -1 : 1;
+        return examples[e1].compareTo(examples[e2]);
+    }
+
+
+    /**
+     * Character of reversed word at given depth shifted by one, zero if word is shorter, so shorter words
+     * are ordered first as in {@link LemmaExample#compareTo(LemmaExample)}.
+     */
+    private int key(int idx, int depth) {
+        int example = order[idx];
+        return depth < lengths[example] ? chars[starts[example] + depth] + 1 : 0;
+    }
+
+
+    private void swap(int i, int j) {
+        int tmp = order[i];
+        order[i] = order[j];
+        order[j] = tmp;
+    }
+
+
+    private static int median(int a, int b, int c) {
+        if (a < b) {
+            if (b < c) return b;
+            return a < c ? c : a;
+        }
+        if (a < c) return a;
+        return b < c ? c : b;
+    }
+
+    private final class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int lo;
+        private final int hi;
+        private final int depth;
+
+
+        SortTask(int lo, int hi, int depth) {
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+        }
+
+
+        @Override
+        protected void compute() {
+            List<SortTask> tasks = new ArrayList<>();
+            sort(lo, hi, depth, tasks);
+            for (SortTask task : tasks) {
+                task.join();
+            }
+        }
+    }
+}
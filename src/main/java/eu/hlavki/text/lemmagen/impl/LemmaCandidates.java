@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+/**
+ * Reusable holder of candidate lemmas filled by {@link DefaultLemmatizer#lemmatize(CharSequence,
+ * LemmaCandidates)}. Holder keeps its buffers between calls, so after warm up lemmatization doesn't allocate.
+ * Instances are not thread safe, use one holder per thread.
+ *
+ * @author Michal Hlavac
+ */
+public final class LemmaCandidates {
+
+    private final StringBuilder[] lemmas;
+    private final double[] weights;
+    private int size;
+
+    //buffers used by front lemmatizer
+    final StringBuilder wordBuffer;
+    final StringBuilder lemmaBuffer;
+
+
+    /**
+     * @param capacity maximal number of candidates
+     */
+    public LemmaCandidates(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        this.lemmas = new StringBuilder[capacity];
+        for (int idx = 0; idx < capacity; idx++) {
+            lemmas[idx] = new StringBuilder(32);
+        }
+        this.weights = new double[capacity];
+        this.wordBuffer = new StringBuilder(32);
+        this.lemmaBuffer = new StringBuilder(32);
+        this.size = 0;
+    }
+
+
+    public int capacity() {
+        return lemmas.length;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns candidate lemma. Returned sequence is valid until next lemmatization into this holder.
+     *
+     * @param idx index of candidate, the first one is the same as lemma returned by
+     * {@link DefaultLemmatizer#lemmatize(CharSequence)}
+     * @return lemma
+     */
+    public CharSequence getLemma(int idx) {
+        checkIndex(idx);
+        return lemmas[idx];
+    }
+
+
+    /**
+     * Returns weight of candidate, i.e. relative weight of training examples covered by the rule in tree node.
+     *
+     * @param idx index of candidate
+     * @return weight
+     */
+    public double getWeight(int idx) {
+        checkIndex(idx);
+        return weights[idx];
+    }
+
+
+    public void clear() {
+        size = 0;
+    }
+
+
+    /**
+     * Adds candidate produced by rule. Candidate with the same lemma is merged and weights are summed.
+     *
+     * @return false if holder is full
+     */
+    boolean add(LemmaRule rule, CharSequence word, double weight) {
+        if (size == lemmas.length) return false;
+        StringBuilder lemma = lemmas[size];
+        rule.lemmatize(word, lemma);
+        for (int idx = 0; idx < size; idx++) {
+            if (contentEquals(lemmas[idx], lemma)) {
+                weights[idx] += weight;
+                return true;
+            }
+        }
+        weights[size++] = weight;
+        return true;
+    }
+
+
+    private static boolean contentEquals(StringBuilder sb1, StringBuilder sb2) {
+        int len = sb1.length();
+        if (len != sb2.length()) return false;
+        for (int idx = 0; idx < len; idx++) {
+            if (sb1.charAt(idx) != sb2.charAt(idx)) return false;
+        }
+        return true;
+    }
+
+
+    private void checkIndex(int idx) {
+        if (idx < 0 || idx >= size) throw new IndexOutOfBoundsException("Index: " + idx + ", size: " + size);
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int idx = 0; idx < size; idx++) {
+            if (idx > 0) sb.append(", ");
+            sb.append(lemmas[idx]).append('(').append(String.format("%.2f", weights[idx] * 100)).append("%)");
+        }
+        return sb.append(']').toString();
+    }
+}
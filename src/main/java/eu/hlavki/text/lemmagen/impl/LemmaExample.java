@@ -35,10 +35,12 @@ public class LemmaExample implements Comparable<LemmaExample> {
     private double weight;
     private LemmaRule rule;
     private LemmatizerSettings settings;
+    private int hash;
 
     private String wordRearCache;
     private String wordFrontCache;
     private String lemmaFrontCache;
+    private char[] wordCharsReversed;
 
 
     @SuppressWarnings("LeakingThisInConstructor")
@@ -50,19 +52,7 @@ public class LemmaExample implements Comparable<LemmaExample> {
         this.weight = weight;
         this.settings = settings;
         this.rule = rules.addRule(this);
-
-        switch (settings.getMsdConsider()) {
-        case IGNORE:
-        case JOIN_ALL:
-        case JOIN_DISTINCT:
-        case JOIN_SAME_SUBSTRING:
-            signature = "[" + word + "]==>[" + lemma + "]";
-            break;
-        case DISTINCT:
-        default:
-            signature = "[" + word + "]==>[" + lemma + "](" + (msd != null ? msd : "") + ")";
-            break;
-        }
+        this.hash = computeHash();
 
         this.wordRearCache = null;
         this.wordFrontCache = null;
@@ -70,6 +60,20 @@ public class LemmaExample implements Comparable<LemmaExample> {
     }
 
 
+    /**
+     * Creates example with known rule, used when examples are restored from checkpoint.
+     */
+    LemmaExample(String word, String lemma, double weight, String msd, LemmaRule rule, LemmatizerSettings settings) {
+        this.word = word;
+        this.lemma = lemma;
+        this.msd = msd;
+        this.weight = weight;
+        this.settings = settings;
+        this.rule = rule;
+        this.hash = computeHash();
+    }
+
+
     public String getWord() {
         return word;
     }
@@ -80,11 +84,74 @@ public class LemmaExample implements Comparable<LemmaExample> {
     }
 
 
+    /**
+     * Returns readable identifier of example, e.g. <code>[dogs]==>[dog](Ncnp)</code>. Signature is created on
+     * demand, examples are identified by {@link #equals(Object)}.
+     *
+     * @return signature
+     */
     public String getSignature() {
+        if (signature == null) {
+            signature = isMsdDistinct() ? "[" + word + "]==>[" + lemma + "](" + (msd != null ? msd : "") + ")"
+                : "[" + word + "]==>[" + lemma + "]";
+        }
         return signature;
     }
 
 
+    private boolean isMsdDistinct() {
+        switch (settings.getMsdConsider()) {
+        case IGNORE:
+        case JOIN_ALL:
+        case JOIN_DISTINCT:
+        case JOIN_SAME_SUBSTRING:
+            return false;
+        case DISTINCT:
+        default:
+            return true;
+        }
+    }
+
+
+    /**
+     * Hash of word, lemma and msd if msd makes examples distinct. Msd of joined examples may change, but then
+     * it's not part of identity.
+     */
+    private int computeHash() {
+        int result = 31 * word.hashCode() + lemma.hashCode();
+        if (isMsdDistinct()) result = 31 * result + msdKey(msd).hashCode();
+        return result;
+    }
+
+
+    /**
+     * Examples are equal if they have the same word, lemma and msd, if msd is considered. This is the same
+     * as equality of signatures.
+     *
+     * @param obj other object
+     * @return true if examples are equal
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof LemmaExample)) return false;
+        LemmaExample o = (LemmaExample) obj;
+        if (hash != o.hash || !word.equals(o.word) || !lemma.equals(o.lemma)) return false;
+        return !isMsdDistinct() || msdKey(msd).equals(msdKey(o.msd));
+    }
+
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+
+    private static String msdKey(String msd) {
+        return msd == null ? "" : msd;
+    }
+
+
     public String getMsd() {
         return msd;
     }
@@ -100,6 +167,37 @@ public class LemmaExample implements Comparable<LemmaExample> {
     }
 
 
+    void setRule(LemmaRule rule) {
+        this.rule = rule;
+    }
+
+
+    /**
+     * Chars of the word in reversed order, used to compare suffixes of words.
+     *
+     * @return reversed chars
+     */
+    char[] getWordCharsReversed() {
+        if (wordCharsReversed == null) {
+            int len = word.length();
+            char[] chars = new char[len];
+            for (int idx = 0; idx < len; idx++) {
+                chars[idx] = word.charAt(len - 1 - idx);
+            }
+            wordCharsReversed = chars;
+        }
+        return wordCharsReversed;
+    }
+
+
+    /**
+     * Releases chars returned by {@link #getWordCharsReversed()}, they are created again when needed.
+     */
+    void releaseWordCharsReversed() {
+        wordCharsReversed = null;
+    }
+
+
     public String getWordFront() {
         if (wordFrontCache == null) {
             wordFrontCache = new StringBuilder(word).reverse().toString();
@@ -191,22 +289,42 @@ public class LemmaExample implements Comparable<LemmaExample> {
     public int compareTo(LemmaExample o) {
         int result;
 
-        result = compareStrings(this.word, o.word, false);
+        result = compareReversed(this.getWordCharsReversed(), o.getWordCharsReversed());
         if (result != 0) return result;
 
         result = compareStrings(this.lemma, o.lemma, true);
         if (result != 0) return result;
 
-        if (settings.getMsdConsider() == LemmatizerSettings.MsdConsideration.DISTINCT
-            && this.msd != null && o.msd != null) {
-            result = compareStrings(this.msd, o.msd, true);
-            if (result != 0) return result;
+        if (settings.getMsdConsider() == LemmatizerSettings.MsdConsideration.DISTINCT) {
+            if (this.msd != null && o.msd != null) {
+                result = compareStrings(this.msd, o.msd, true);
+                if (result != 0) return result;
+            } else {
+                //distinct examples are ordered as their signatures, i.e. missing msd as "()"
+                result = compareSignatureMsd(msdKey(this.msd), msdKey(o.msd));
+                if (result != 0) return result;
+            }
         }
 
         return 0;
     }
 
 
+    /**
+     * Compares msd parts of signatures <code>(msd)</code>.
+     */
+    private static int compareSignatureMsd(String msd1, String msd2) {
+        int len = Math.max(msd1.length(), msd2.length()) + 1;
+        for (int pos = 0; pos < len; pos++) {
+            char ch1 = pos < msd1.length() ? msd1.charAt(pos) : ')';
+            char ch2 = pos < msd2.length() ? msd2.charAt(pos) : ')';
+            if (ch1 != ch2) return ch1 > ch2 ? 1 : -1;
+            if (pos >= msd1.length() || pos >= msd2.length()) return msd1.length() - msd2.length();
+        }
+        return 0;
+    }
+
+
     public void join(LemmaExample joinLe) {
         weight += joinLe.weight;
         if (msd != null)
@@ -244,21 +362,27 @@ public class LemmaExample implements Comparable<LemmaExample> {
 
 
     public static int similar(LemmaExample le1, LemmaExample le2) {
-        String word1 = le1.word;
-        String word2 = le2.word;
-        int len1 = word1.length();
-        int len2 = word2.length();
-        int maxLen = Math.min(len1, len2);
-
-        for (int pos = 1; pos <= maxLen; pos++) {
-            if (word1.charAt(len1 - pos) != word2.charAt(len2 - pos)) return pos - 1;
-        }
+        char[] word1 = le1.getWordCharsReversed();
+        char[] word2 = le2.getWordCharsReversed();
+        int pos = SuffixMatcher.mismatch(word1, word2);
 
         //TODO similarTo should be bigger if two words are totaly equal
         //if (word1 == word2)
         //    return maxLen + 1;
         //else
-        return maxLen;
+        return pos < 0 ? word1.length : pos;
+    }
+
+
+    /**
+     * Compares reversed words, result is the same as {@link #compareStrings(String, String, boolean)} called
+     * with not reversed words and <code>forward == false</code>.
+     */
+    private static int compareReversed(char[] word1, char[] word2) {
+        int pos = SuffixMatcher.mismatch(word1, word2);
+        if (pos < 0) return 0;
+        if (pos < word1.length && pos < word2.length) return word1[pos] > word2[pos] ? 1 : -1;
+        return word1.length > word2.length ? 1 : -1;
     }
 
 
@@ -328,7 +452,7 @@ public class LemmaExample implements Comparable<LemmaExample> {
         //save value types --------------------------------------
         writeString(out, word);
         writeString(out, lemma);
-        writeString(out, signature);
+        writeString(out, getSignature());
         if (msd == null) {
             out.writeBoolean(false);
         } else {
@@ -359,7 +483,7 @@ public class LemmaExample implements Comparable<LemmaExample> {
         //load value types --------------------------------------
         word = readString(in);
         lemma = readString(in);
-        signature = readString(in);
+        readString(in); // signature is created on demand
         if (in.readBoolean()) {
             msd = readString(in);
         } else {
@@ -375,6 +499,7 @@ public class LemmaExample implements Comparable<LemmaExample> {
             this.settings = settings;
             this.rule = rule;
         }
+        this.hash = computeHash();
 
         this.wordRearCache = null;
         this.wordFrontCache = null;
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of canonical lemma instances. Lemmatizer with pool returns the same {@link String} instance for
+ * equal lemmas, so collections of lemmas don't keep duplicates. Lookup is done on characters of the word prefix
+ * and rule suffix, new string is created only if lemma isn't pooled yet.
+ * <p>
+ * Pool is lock-free open addressing table with short probe sequence. Entries are never removed, once the pool
+ * is full or probe sequence is occupied by other lemmas, new lemmas are returned as new strings without pooling.
+ *
+ * @author Michal Hlavac
+ */
+public final class LemmaPool {
+
+    private static final int MAX_PROBES = 16;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final int shift;
+    private final int capacity;
+    private final AtomicInteger size;
+
+
+    /**
+     * @param capacity maximal number of pooled lemmas
+     */
+    public LemmaPool(int capacity) {
+        if (capacity < 1 || capacity > 1 << 28) throw new IllegalArgumentException("Invalid capacity " + capacity);
+        int length = Integer.highestOneBit(capacity) << 2;
+        this.table = new AtomicReferenceArray<>(length);
+        this.mask = length - 1;
+        this.shift = Integer.numberOfLeadingZeros(length) + 1;
+        this.capacity = capacity;
+        this.size = new AtomicInteger();
+    }
+
+
+    public int capacity() {
+        return capacity;
+    }
+
+
+    /**
+     * @return number of pooled lemmas
+     */
+    public int size() {
+        return Math.min(size.get(), capacity);
+    }
+
+
+    /**
+     * Returns canonical instance of the sequence.
+     *
+     * @param str characters of lemma
+     * @return pooled string equal to the sequence or new string if it can't be pooled
+     */
+    public String intern(CharSequence str) {
+        return intern(str, str.length(), "");
+    }
+
+
+    /**
+     * Returns canonical instance of lemma made of word prefix and suffix.
+     *
+     * @param word word
+     * @param prefixLength number of characters taken from the beginning of the word
+     * @param suffix suffix appended to the prefix
+     * @return pooled string equal to the lemma or new string if it can't be pooled
+     */
+    public String intern(CharSequence word, int prefixLength, String suffix) {
+        if (prefixLength < 0 || prefixLength > word.length()) {
+            throw new StringIndexOutOfBoundsException(prefixLength);
+        }
+        int hash = 0;
+        for (int idx = 0; idx < prefixLength; idx++) {
+            hash = 31 * hash + word.charAt(idx);
+        }
+        for (int idx = 0; idx < suffix.length(); idx++) {
+            hash = 31 * hash + suffix.charAt(idx);
+        }
+        int length = prefixLength + suffix.length();
+        //hashes of similar words are close to each other, multiplicative hashing spreads them over the table
+        int slot = (hash * 0x9E3779B9) >>> shift;
+        String created = null;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int idx = (slot + probe) & mask;
+            String pooled = table.get(idx);
+            if (pooled == null) {
+                if (created == null) created = create(word, prefixLength, suffix);
+                if (size.get() >= capacity) return created;
+                if (table.compareAndSet(idx, null, created)) {
+                    size.incrementAndGet();
+                    return created;
+                }
+                pooled = table.get(idx);
+            }
+            if (pooled.length() == length && pooled.hashCode() == hash
+                && equals(pooled, word, prefixLength, suffix)) {
+                return pooled;
+            }
+        }
+        return created == null ? create(word, prefixLength, suffix) : created;
+    }
+
+
+    private static boolean equals(String pooled, CharSequence word, int prefixLength, String suffix) {
+        for (int idx = 0; idx < prefixLength; idx++) {
+            if (pooled.charAt(idx) != word.charAt(idx)) return false;
+        }
+        return pooled.regionMatches(prefixLength, suffix, 0, suffix.length());
+    }
+
+
+    private static String create(CharSequence word, int prefixLength, String suffix) {
+        return new StringBuilder(prefixLength + suffix.length()).append(word, 0, prefixLength).append(suffix)
+            .toString();
+    }
+}
@@ -38,17 +38,11 @@ public class LemmaRule {
         this.settings = settings;
         this.id = id;
 
-        int sameStem = sameStem(word, lemma);
+        int sameStem = RuleList.sameStem(word, lemma);
         toStr = lemma.substring(sameStem);
         from = word.length() - sameStem;
 
-        if (settings.isUseFromInRules()) {
-            fromStr = word.substring(sameStem);
-            signature = "[" + fromStr + "]==>[" + toStr + "]";
-        } else {
-            fromStr = null;
-            signature = "[#" + from + "]==>[" + toStr + "]";
-        }
+        fromStr = settings.isUseFromInRules() ? word.substring(sameStem) : null;
     }
 
 
@@ -57,7 +51,17 @@ public class LemmaRule {
     }
 
 
+    /**
+     * Returns readable identifier of rule, e.g. <code>[ies]==>[y]</code> or <code>[#3]==>[y]</code> if rules
+     * are not using from strings. Signature is created on demand, it's used only by serialization.
+     *
+     * @return signature
+     */
     public String getSignature() {
+        if (signature == null) {
+            signature = fromStr != null ? "[" + fromStr + "]==>[" + toStr + "]"
+                : "[#" + from + "]==>[" + toStr + "]";
+        }
         return signature;
     }
 
@@ -67,6 +71,17 @@ public class LemmaRule {
     }
 
 
+    /**
+     * Returns suffix of the word replaced by this rule or <code>null</code> if rules are not using from
+     * strings.
+     *
+     * @return from suffix or null
+     */
+    public String getFromStr() {
+        return fromStr;
+    }
+
+
     public String getToStr() {
         return toStr;
     }
@@ -74,7 +89,17 @@ public class LemmaRule {
 
     @Override
     public String toString() {
-        return id + ":" + signature;
+        return id + ":" + getSignature();
+    }
+
+
+    /**
+     * Returns true if rule doesn't change the word. This is also default rule of every rule list.
+     *
+     * @return true for identity rule
+     */
+    public boolean isIdentity() {
+        return from == 0 && toStr.isEmpty();
     }
 
 
@@ -83,19 +108,49 @@ public class LemmaRule {
     }
 
 
+    /**
+     * Returns true if word is long enough and ends with from string (if rules are using from strings).
+     *
+     * @param word word
+     * @return true if rule can be applied to word
+     */
+    public boolean isApplicableTo(CharSequence word) {
+        int len = word.length();
+        if (len < from) return false;
+        if (fromStr == null) return true;
+        for (int idx = 1; idx <= from; idx++) {
+            if (fromStr.charAt(from - idx) != word.charAt(len - idx)) return false;
+        }
+        return true;
+    }
+
+
     public CharSequence lemmatize(CharSequence word) {
         return word.subSequence(0, word.length() - from) + toStr;
     }
 
 
-    private static int sameStem(String str1, String str2) {
-        int maxLength = Math.min(str1.length(), str2.length());
+    /**
+     * Returns canonical instance of lemma from given pool.
+     *
+     * @param word word to lemmatize
+     * @param pool pool of lemmas
+     * @return pooled lemma
+     */
+    public String lemmatize(CharSequence word, LemmaPool pool) {
+        return pool.intern(word, word.length() - from, toStr);
+    }
 
-        for (int pos = 0; pos < maxLength; pos++) {
-            if (str1.charAt(pos) != str2.charAt(pos)) return pos;
-        }
 
-        return maxLength;
+    /**
+     * Writes lemma into given buffer. Buffer is cleared first.
+     *
+     * @param word word to lemmatize
+     * @param lemma buffer for lemma
+     */
+    public void lemmatize(CharSequence word, StringBuilder lemma) {
+        lemma.setLength(0);
+        lemma.append(word, 0, word.length() - from).append(toStr);
     }
 
 
@@ -107,7 +162,7 @@ public class LemmaRule {
         out.writeInt(from);
         writeString(out, fromStr);
         writeString(out, toStr);
-        writeString(out, signature);
+        writeString(out, getSignature());
 
         if (topObject) {
             settings.writeObject(out);
@@ -130,7 +185,7 @@ public class LemmaRule {
         from = in.readInt();
         fromStr = readString(in);
         toStr = readString(in);
-        signature = readString(in);
+        readString(in); // signature is created on demand
 
         //load refernce types if needed -------------------------
         if (topObject) {
@@ -18,14 +18,23 @@ package eu.hlavki.text.lemmagen.impl;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.training.TrainingMonitor;
+import eu.hlavki.text.lemmagen.training.TrainingPhase;
 import static eu.hlavki.text.lemmagen.impl.Serializer.*;
+import static eu.hlavki.text.lemmagen.training.TrainingPhase.*;
 
 /**
  *
@@ -41,6 +50,9 @@ public final class LemmaTreeNode implements Lemmatizer {
     //tree structure references
     private Map<Character, LemmaTreeNode> subNodes;
     private LemmaTreeNode parentNode;
+    //sorted keys of subNodes and their nodes, looked up without boxing of characters
+    private char[] subKeys;
+    private LemmaTreeNode[] subValues;
 
     //essential node properties
     private int similarity; //similarity among all words in this node
@@ -64,7 +76,33 @@ public final class LemmaTreeNode implements Lemmatizer {
 
 
     public LemmaTreeNode(LemmatizerSettings settings, ExampleList examples) {
-        this(settings, examples, 0, examples.getSize() - 1, null);
+        this(settings, examples, new TrainingMonitor());
+    }
+
+
+    /**
+     * Builds the tree ({@link TrainingPhase#TREE_BUILDING}) and then collapses nodes with single child
+     * ({@link TrainingPhase#COLLAPSING}).
+     *
+     * @param settings lemmatizer settings
+     * @param examples sorted examples
+     * @param monitor training monitor
+     * @throws java.util.concurrent.CancellationException if training is cancelled
+     */
+    public LemmaTreeNode(LemmatizerSettings settings, ExampleList examples, TrainingMonitor monitor) {
+        this(settings, examples, 0, examples.getSize() - 1, null, beginBuilding(monitor),
+            new RuleScores(examples.getRules().size()), new double[1]);
+        monitor.finish(TREE_BUILDING);
+        examples.releaseWordChars();
+        monitor.begin(COLLAPSING);
+        collapseAll(monitor);
+        monitor.finish(COLLAPSING);
+    }
+
+
+    private static TrainingMonitor beginBuilding(TrainingMonitor monitor) {
+        monitor.begin(TREE_BUILDING);
+        return monitor;
     }
 
 
@@ -75,11 +113,15 @@ public final class LemmaTreeNode implements Lemmatizer {
      * @param start Index of the first word of the current group
      * @param end Index of the last word of the current group
      * @param parentNode
+     * @param monitor
+     * @param scores accumulators of rule weights shared by nodes of the tree
+     * @param covered output for weight of examples lemmatized correctly by this subtree
      */
     @SuppressWarnings("LeakingThisInConstructor")
     private LemmaTreeNode(LemmatizerSettings settings, ExampleList examples, int start, int end,
-        LemmaTreeNode parentNode) {
+        LemmaTreeNode parentNode, TrainingMonitor monitor, RuleScores scores, double[] covered) {
         this(settings);
+        monitor.worked(1);
         this.parentNode = parentNode;
         this.subNodes = null;
 
@@ -101,26 +143,48 @@ public final class LemmaTreeNode implements Lemmatizer {
         this.wholeWord = parentNode == null ? false
             : examples.get(end).getWord().length() == parentNode.similarity;
 
-        findBestRules();
-        addSubAll();
+        findBestRules(scores);
+        covered[0] = addSubAll(monitor, scores);
+    }
 
-        //TODO check this heuristics, can be problematic when there are more applicable rules
-        if (subNodes != null) {
-            Map<Character, LemmaTreeNode> replaceNodes = new HashMap<>();
-            for (Map.Entry<Character, LemmaTreeNode> child : subNodes.entrySet()) {
-                if (child.getValue().subNodes != null && child.getValue().subNodes.size() == 1) {
-                    Iterator<LemmaTreeNode> childChildIter = child.getValue().subNodes.values().iterator();
-                    LemmaTreeNode childChild = childChildIter.next();
-                    if (child.getValue().bestRule.equals(bestRule)) {
-                        replaceNodes.put(child.getKey(), childChild);
-                    }
-                }
-                for (Character kvpChild : replaceNodes.keySet()) {
-                    subNodes.put(kvpChild, replaceNodes.get(kvpChild));
-                    replaceNodes.get(kvpChild).parentNode = this;
+
+    /**
+     * Replaces child by its only grandchild when rule of the child is the same as rule of this node. Nodes
+     * are visited in post-order, so subtree of every child is collapsed before its parent.
+     */
+    private void collapseAll(TrainingMonitor monitor) {
+        List<LemmaTreeNode> nodes = new ArrayList<>();
+        Deque<LemmaTreeNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            LemmaTreeNode node = stack.pop();
+            nodes.add(node);
+            if (node.subNodes != null) {
+                for (LemmaTreeNode child : node.subNodes.values()) {
+                    stack.push(child);
                 }
             }
         }
+        for (int idx = nodes.size() - 1; idx >= 0; idx--) {
+            nodes.get(idx).collapse();
+            nodes.get(idx).indexSubNodes();
+            monitor.worked(1);
+        }
+    }
+
+
+    //TODO check this heuristics, can be problematic when there are more applicable rules
+    private void collapse() {
+        if (subNodes == null) return;
+        for (Map.Entry<Character, LemmaTreeNode> child : subNodes.entrySet()) {
+            LemmaTreeNode childNode = child.getValue();
+            if (childNode.subNodes != null && childNode.subNodes.size() == 1
+                && childNode.bestRule.equals(bestRule)) {
+                LemmaTreeNode childChild = childNode.subNodes.values().iterator().next();
+                child.setValue(childChild);
+                childChild.parentNode = this;
+            }
+        }
     }
 
 
@@ -145,52 +209,193 @@ public final class LemmaTreeNode implements Lemmatizer {
     }
 
 
-    private void findBestRules() {
+    public LemmaRule getBestRule() {
+        return bestRule;
+    }
+
+
+    /**
+     * Returns rules of this node ordered by weight. Returned array must not be modified.
+     *
+     * @return best rules
+     */
+    public WeightedRule[] getBestRules() {
+        return bestRules;
+    }
+
+
+    public int getSimilarity() {
+        return similarity;
+    }
+
+
+    public boolean isWholeWord() {
+        return wholeWord;
+    }
+
+
+    public LemmaTreeNode getParentNode() {
+        return parentNode;
+    }
+
+
+    /**
+     * Returns child nodes indexed by character preceding the suffix shared by all words of this node.
+     *
+     * @return unmodifiable map of child nodes, empty for leaf
+     */
+    public Map<Character, LemmaTreeNode> getSubNodes() {
+        return subNodes == null ? Collections.<Character, LemmaTreeNode>emptyMap()
+            : Collections.unmodifiableMap(subNodes);
+    }
+
+
+    public ExampleList getExamples() {
+        return examples;
+    }
+
+
+    /**
+     * Removes child nodes which are not retained. Words which would be lemmatized by removed subtrees are
+     * lemmatized by the best rule of this node.
+     *
+     * @param retained retained nodes
+     * @see DefaultLemmatizer#retainNodes(Set)
+     */
+    void retainSubNodes(Set<LemmaTreeNode> retained) {
+        if (subNodes == null) return;
+        Iterator<LemmaTreeNode> iter = subNodes.values().iterator();
+        while (iter.hasNext()) {
+            if (!retained.contains(iter.next())) iter.remove();
+        }
+        if (subNodes.isEmpty()) subNodes = null;
+        indexSubNodes();
+    }
+
+
+    /**
+     * Rebuilds sorted keys of child nodes after {@link #subNodes} is changed.
+     */
+    private void indexSubNodes() {
+        if (subNodes == null) {
+            subKeys = null;
+            subValues = null;
+            return;
+        }
+        char[] keys = new char[subNodes.size()];
+        int pos = 0;
+        for (Character key : subNodes.keySet()) {
+            keys[pos++] = key;
+        }
+        Arrays.sort(keys);
+        LemmaTreeNode[] values = new LemmaTreeNode[keys.length];
+        for (int idx = 0; idx < keys.length; idx++) {
+            values[idx] = subNodes.get(keys[idx]);
+        }
+        subKeys = keys;
+        subValues = values;
+    }
+
+
+    /**
+     * Returns child node for given character. Unlike {@link #getSubNodes()} the character isn't boxed, so
+     * lookup doesn't allocate for characters outside of the {@link Character} cache.
+     *
+     * @param ch character preceding the suffix shared by all words of this node
+     * @return child node or <code>null</code>
+     */
+    LemmaTreeNode getSubNode(char ch) {
+        char[] keys = subKeys;
+        if (keys == null) return null;
+        int idx = Arrays.binarySearch(keys, ch);
+        return idx < 0 ? null : subValues[idx];
+    }
+
+
+    /**
+     * Orders child nodes. Order doesn't change lookup, but children are serialized in this order, so it's
+     * also the order in which nodes are allocated when model is read.
+     *
+     * @param order order of child nodes
+     */
+    public void orderSubNodes(Comparator<? super Map.Entry<Character, LemmaTreeNode>> order) {
+        if (subNodes == null) return;
+        List<Map.Entry<Character, LemmaTreeNode>> entries = new ArrayList<>(subNodes.entrySet());
+        Collections.sort(entries, order);
+        Map<Character, LemmaTreeNode> ordered = new LinkedHashMap<>();
+        for (Map.Entry<Character, LemmaTreeNode> entry : entries) {
+            ordered.put(entry.getKey(), entry.getValue());
+        }
+        subNodes = ordered;
+    }
+
+
+    /**
+     * Returns depth of this node in the tree, root node has depth 0.
+     *
+     * @return depth
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (LemmaTreeNode node = parentNode; node != null; node = node.parentNode) {
+            depth++;
+        }
+        return depth;
+    }
+
+
+    /**
+     * Selects the best rules of node. Weights of rules are accumulated by rule id in one pass over examples,
+     * then condition grows until some rule is applicable and only top rules are ordered.
+     */
+    private void findBestRules(RuleScores scores) {
         weight = 0;
+        scores.clear();
+        for (int exm = start; exm <= end; exm++) {
+            LemmaExample example = examples.get(exm);
+            weight += example.getWeight();
+            scores.add(example.getRule(), example.getWeight());
+        }
 
-        //calculate dWeight of whole node and calculates qualities for all rules
-        Map<LemmaRule, Double> applicableRules = new HashMap<>();
-        //dictApplicableRules.Add(elExamples.Rules.DefaultRule, 0);
-        while (applicableRules.isEmpty()) {
+        //if none is applicable then increase condition length or use rule of parent
+        RuleList rules = examples.getRules();
+        int minFrom = Integer.MAX_VALUE;
+        for (int idx = 0; idx < scores.size(); idx++) {
+            minFrom = Math.min(minFrom, rules.getById(scores.id(idx)).getFrom());
+        }
+        while (minFrom > condition.length() && this.condition.length() < similarity) {
+            this.condition = examples.get(start).getWord().substring(examples.get(start).getWord().length() - (condition.length() + 1));
+            //weight of node used to be summed again for every condition length
             for (int exm = start; exm <= end; exm++) {
-                LemmaRule lr = examples.get(exm).getRule();
-                double exmWeight = examples.get(exm).getWeight();
-                weight += exmWeight;
-
-                if (lr.isApplicableToGroup(condition.length())) {
-                    if (applicableRules.containsKey(lr)) {
-                        applicableRules.put(lr, applicableRules.get(lr) + exmWeight);
-                    } else {
-                        applicableRules.put(lr, exmWeight);
-                    }
-                }
-            }
-            //if none found then increase condition length or add some default appliable rule
-            if (applicableRules.isEmpty()) {
-                if (this.condition.length() < similarity) {
-                    this.condition = examples.get(start).getWord().substring(examples.get(start).getWord().length() - (condition.length() + 1));
-                } else {
-                    //TODO preveri hevristiko, mogoce je bolje ce se doda default rule namesto rulea od starsa
-                    applicableRules.put(parentNode.bestRule, 0d);
-                }
+                weight += examples.get(exm).getWeight();
             }
         }
-
-        //TODO can optimize this step using sorted list (dont add if it's worse than the worst)
-        List<WeightedRule> sortedRules = new ArrayList<>();
-        for (Map.Entry<LemmaRule, Double> entry : applicableRules.entrySet()) {
-            sortedRules.add(new WeightedRule(entry.getKey(), entry.getValue() / weight));
+        if (minFrom > condition.length()) {
+            //TODO preveri hevristiko, mogoce je bolje ce se doda default rule namesto rulea od starsa
+            bestRules = new WeightedRule[]{new WeightedRule(parentNode.bestRule, 0d / weight)};
+            bestRule = parentNode.bestRule;
+            return;
         }
-        Collections.sort(sortedRules);
-
-        //keep just best iMaxRulesPerNode rules
-        int rulesCount = sortedRules.size();
-        if (settings.getMaxRulesPerNode() > 0)
-            rulesCount = Math.min(sortedRules.size(), settings.getMaxRulesPerNode());
 
-        bestRules = new WeightedRule[rulesCount];
-        for (int rule = 0; rule < rulesCount; rule++) {
-            bestRules[rule] = sortedRules.get(rule);
+        //keep just best iMaxRulesPerNode rules ordered as by WeightedRule.compareTo
+        int applicable = 0;
+        for (int idx = 0; idx < scores.size(); idx++) {
+            if (rules.getById(scores.id(idx)).isApplicableToGroup(condition.length())) applicable++;
+        }
+        int rulesCount = applicable;
+        if (settings.getMaxRulesPerNode() > 0) rulesCount = Math.min(applicable, settings.getMaxRulesPerNode());
+        if (rulesCount == applicable) {
+            bestRules = new WeightedRule[rulesCount];
+            int pos = 0;
+            for (int idx = 0; idx < scores.size(); idx++) {
+                LemmaRule rule = rules.getById(scores.id(idx));
+                if (rule.isApplicableToGroup(condition.length())) {
+                    bestRules[pos++] = new WeightedRule(rule, scores.weight(rule.getId()) / weight);
+                }
+            }
+            Arrays.sort(bestRules);
+        } else {
+            bestRules = selectBest(scores, rulesCount);
         }
 
         //set best rule
@@ -198,55 +403,139 @@ public final class LemmaTreeNode implements Lemmatizer {
 
         //TODO must check if this heuristics is OK (to privilige parent rule)
         if (parentNode != null) {
-            for (int rule = 0; rule < sortedRules.size() && sortedRules.get(rule).getWeight() == sortedRules.get(0).getWeight(); rule++) {
-                if (sortedRules.get(rule).getRule().equals(parentNode.bestRule)) {
-                    bestRule = sortedRules.get(rule).getRule();
-                    break;
-                }
+            int parentId = parentNode.bestRule.getId();
+            if (scores.contains(parentId) && parentNode.bestRule.isApplicableToGroup(condition.length())
+                && scores.weight(parentId) / weight == bestRules[0].getWeight()) {
+                bestRule = parentNode.bestRule;
+            }
+        }
+    }
+
+
+    /**
+     * Selects given number of the best applicable rules without sorting all of them.
+     */
+    private WeightedRule[] selectBest(RuleScores scores, int rulesCount) {
+        RuleList rules = examples.getRules();
+        int[] topIds = new int[rulesCount];
+        double[] topWeights = new double[rulesCount];
+        int topSize = 0;
+        for (int idx = 0; idx < scores.size(); idx++) {
+            int id = scores.id(idx);
+            if (!rules.getById(id).isApplicableToGroup(condition.length())) continue;
+            double ruleWeight = scores.weight(id) / weight;
+            int pos = topSize;
+            while (pos > 0 && better(ruleWeight, id, topWeights[pos - 1], topIds[pos - 1])) {
+                pos--;
             }
+            if (pos >= rulesCount) continue;
+            int last = Math.min(topSize, rulesCount - 1);
+            System.arraycopy(topIds, pos, topIds, pos + 1, last - pos);
+            System.arraycopy(topWeights, pos, topWeights, pos + 1, last - pos);
+            topIds[pos] = id;
+            topWeights[pos] = ruleWeight;
+            if (topSize < rulesCount) topSize++;
         }
+
+        WeightedRule[] result = new WeightedRule[rulesCount];
+        for (int rule = 0; rule < rulesCount; rule++) {
+            result[rule] = new WeightedRule(rules.getById(topIds[rule]), topWeights[rule]);
+        }
+        return result;
     }
 
 
-    private void addSubAll() {
+    /**
+     * @return true if the first rule precedes the second one in order of {@link WeightedRule#compareTo}
+     */
+    private static boolean better(double weight1, int id1, double weight2, int id2) {
+        if (weight1 > weight2) return true;
+        if (weight1 < weight2) return false;
+        return id1 > id2;
+    }
+
+
+    /**
+     * Splits examples of this node to subtrees.
+     *
+     * @return weight of examples lemmatized correctly by this node and its subtrees
+     */
+    private double addSubAll(TrainingMonitor monitor, RuleScores scores) {
+        if (settings.getMaxDepth() > 0 && getDepth() >= settings.getMaxDepth()) {
+            double matched = 0;
+            for (int wrd = start; wrd <= end; wrd++) {
+                if (examples.get(wrd).getRule().equals(bestRule)) matched += examples.get(wrd).getWeight();
+            }
+            return matched;
+        }
+
         int startGroup = start;
         char prevChar = '\0';
         boolean subGroupNeeded = false;
+        double groupWeight = 0;
+        double groupMatched = 0;
+        double covered = 0;
 
         for (int wrd = start; wrd <= end; wrd++) {
-            String word = examples.get(wrd).getWord();
+            LemmaExample example = examples.get(wrd);
+            String word = example.getWord();
 
             char thisChar = word.length() > similarity ? word.charAt(word.length() - 1 - similarity) : '\0';
 
             if (wrd != start && prevChar != thisChar) {
                 if (subGroupNeeded) {
-                    addSub(startGroup, wrd - 1, prevChar);
+                    covered += addSub(startGroup, wrd - 1, prevChar, groupWeight, groupMatched, monitor, scores);
                     subGroupNeeded = false;
+                } else {
+                    covered += groupMatched;
                 }
                 startGroup = wrd;
+                groupWeight = 0;
+                groupMatched = 0;
             }
 
             //TODO check out bSubGroupNeeded when there are multiple posible rules (not just lrBestRule)
-            if (!examples.get(wrd).getRule().equals(bestRule)) {
+            if (!example.getRule().equals(bestRule)) {
                 subGroupNeeded = true;
+            } else {
+                groupMatched += example.getWeight();
             }
+            groupWeight += example.getWeight();
 
             prevChar = thisChar;
         }
-        if (subGroupNeeded && startGroup != start) addSub(startGroup, end, prevChar);
+        if (subGroupNeeded && startGroup != start) {
+            covered += addSub(startGroup, end, prevChar, groupWeight, groupMatched, monitor, scores);
+        } else {
+            covered += groupMatched;
+        }
+        return covered;
     }
 
 
-    private void addSub(int start, int end, char ch) {
-        LemmaTreeNode sub = new LemmaTreeNode(settings, examples, start, end, this);
+    /**
+     * Adds subtree of the group of examples unless it's below thresholds of settings.
+     *
+     * @return weight of examples of the group lemmatized correctly
+     */
+    private double addSub(int start, int end, char ch, double groupWeight, double groupMatched,
+        TrainingMonitor monitor, RuleScores scores) {
+        if (settings.getMinSubtreeWeight() > 0 && groupWeight < settings.getMinSubtreeWeight()) return groupMatched;
+
+        double[] covered = new double[1];
+        LemmaTreeNode sub = new LemmaTreeNode(settings, examples, start, end, this, monitor, scores, covered);
 
         //TODO - maybe not realy appropriate because loosing statisitcs from multiple possible rules
-        if (sub.bestRule.equals(bestRule) && sub.subNodes == null) return;
+        if (sub.bestRule.equals(bestRule) && sub.subNodes == null) return groupMatched;
+        if (settings.getMinSplitGain() > 0 && covered[0] - groupMatched < settings.getMinSplitGain()) {
+            return groupMatched;
+        }
 
         if (subNodes == null) {
             subNodes = new HashMap<>();
         }
         subNodes.put(ch, sub);
+        return covered[0];
     }
 
 
@@ -269,15 +558,51 @@ public final class LemmaTreeNode implements Lemmatizer {
     }
 
 
+    /**
+     * Finds the deepest node which condition is satisfied by given word. Rule of this node is used to
+     * lemmatize the word.
+     *
+     * @param word word to lemmatize
+     * @return deepest matching node
+     */
+    public LemmaTreeNode findNode(CharSequence word) {
+        LemmaTreeNode node = this;
+        while (word.length() >= node.similarity && node.subKeys != null) {
+            char ch = word.length() > node.similarity ? word.charAt(word.length() - 1 - node.similarity) : '\0';
+            LemmaTreeNode sub = node.getSubNode(ch);
+            if (sub == null || !sub.conditionSatisfied(word)) break;
+            node = sub;
+        }
+        return node;
+    }
+
+
     @Override
     public CharSequence lemmatize(CharSequence word) {
-        if (word.length() >= similarity && subNodes != null) {
-            char ch = word.length() > similarity ? word.charAt(word.length() - 1 - similarity) : '\0';
-            if (subNodes.containsKey(ch) && subNodes.get(ch).conditionSatisfied(word)) {
-                return subNodes.get(ch).lemmatize(word);
+        return findNode(word).bestRule.lemmatize(word);
+    }
+
+
+    /**
+     * Adds lemmas produced by rules of this node. The best rule is always added first, remaining rules are
+     * added in order of their weights if they are applicable to the word.
+     *
+     * @param word word to lemmatize
+     * @param candidates holder of candidates
+     */
+    void addCandidates(CharSequence word, LemmaCandidates candidates) {
+        double bestWeight = bestRules[0].getWeight();
+        for (WeightedRule rule : bestRules) {
+            if (rule.getRule() == bestRule) {
+                bestWeight = rule.getWeight();
+                break;
             }
         }
-        return bestRule.lemmatize(word);
+        candidates.add(bestRule, word, bestWeight);
+        for (WeightedRule rule : bestRules) {
+            if (rule.getRule() == bestRule || !rule.getRule().isApplicableTo(word)) continue;
+            if (!candidates.add(rule.getRule(), word, rule.getWeight())) break;
+        }
     }
 
 
@@ -323,7 +648,24 @@ public final class LemmaTreeNode implements Lemmatizer {
                 kvp.getValue().writeObject(out);
             }
         }
+        writeFields(out);
+    }
+
+
+    /**
+     * Writes node without subtrees. Subtrees are written separately by {@link #writeObject(ObjectOutput)}
+     * and attached to node read by {@link #readNode(ObjectInput, LemmatizerSettings, ExampleList)}.
+     *
+     * @param out output
+     * @throws IOException if writing fails
+     */
+    void writeNode(ObjectOutput out) throws IOException {
+        out.writeBoolean(subNodes != null);
+        writeFields(out);
+    }
+
 
+    private void writeFields(ObjectOutput out) throws IOException {
         out.writeInt(similarity);
         writeString(out, condition);
         out.writeBoolean(wholeWord);
@@ -361,7 +703,31 @@ public final class LemmaTreeNode implements Lemmatizer {
         } else {
             subNodes = null;
         }
+        indexSubNodes();
+        readFields(in, examples, parentNode);
+    }
+
+
+    /**
+     * Reads node written by {@link #writeNode(ObjectOutput)}. Subtrees must be read with this node as parent
+     * and attached by {@link #attach(char, LemmaTreeNode)}.
+     */
+    static LemmaTreeNode readNode(ObjectInput in, LemmatizerSettings settings, ExampleList examples)
+        throws IOException {
+        LemmaTreeNode node = new LemmaTreeNode(settings);
+        if (in.readBoolean()) node.subNodes = new HashMap<>();
+        node.readFields(in, examples, null);
+        return node;
+    }
+
+
+    void attach(char ch, LemmaTreeNode subNode) {
+        subNodes.put(ch, subNode);
+        indexSubNodes();
+    }
+
 
+    private void readFields(ObjectInput in, ExampleList examples, LemmaTreeNode parentNode) throws IOException {
         this.parentNode = parentNode;
 
         similarity = in.readInt();
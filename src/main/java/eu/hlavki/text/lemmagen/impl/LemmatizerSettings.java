@@ -71,6 +71,20 @@ public class LemmatizerSettings implements Cloneable {
      * (lemmatizes front of the word)
      */
     private boolean buildFrontLemmatizer;
+    /**
+     * Minimal weight of examples of a subtree. Lighter groups of examples are lemmatized by the parent node.
+     * Zero means unlimited.
+     */
+    private double minSubtreeWeight;
+    /**
+     * Minimal weight of examples which must be lemmatized better by a subtree than by the parent rule.
+     * Zero means unlimited.
+     */
+    private double minSplitGain;
+    /**
+     * Maximal depth of nodes which are split while the tree is built. Zero means unlimited.
+     */
+    private int maxDepth;
 
 
     public LemmatizerSettings() {
@@ -127,6 +141,70 @@ public class LemmatizerSettings implements Cloneable {
     }
 
 
+    public double getMinSubtreeWeight() {
+        return minSubtreeWeight;
+    }
+
+
+    /**
+     * Sets minimal weight of examples of a subtree. Groups of examples with smaller weight don't create
+     * subtree, so they are lemmatized by the rule of the parent node.
+     *
+     * @param minSubtreeWeight minimal weight, zero means unlimited
+     */
+    public void setMinSubtreeWeight(double minSubtreeWeight) {
+        this.minSubtreeWeight = minSubtreeWeight;
+    }
+
+
+    public double getMinSplitGain() {
+        return minSplitGain;
+    }
+
+
+    /**
+     * Sets minimal gain of a split. Gain is the weight of examples lemmatized correctly by the subtree minus
+     * the weight of examples of the subtree lemmatized correctly by the rule of the parent node. Subtrees
+     * with smaller gain are dropped.
+     *
+     * @param minSplitGain minimal gain, zero means unlimited
+     */
+    public void setMinSplitGain(double minSplitGain) {
+        this.minSplitGain = minSplitGain;
+    }
+
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+
+    /**
+     * Sets maximal depth of nodes which are split while the tree is built. Depth is measured before nodes
+     * with single child are collapsed.
+     *
+     * @param maxDepth maximal depth, zero means unlimited
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+
+    /**
+     * @return true if any of training thresholds is set
+     */
+    public boolean hasThresholds() {
+        return minSubtreeWeight > 0 || minSplitGain > 0 || maxDepth > 0;
+    }
+
+
+    /**
+     * Writes settings in the original format. Thresholds aren't part of it, they are written by
+     * {@link #writeThresholds(ObjectOutput)} where the model format allows it.
+     *
+     * @param out output
+     * @throws IOException if output fails
+     */
     public void writeObject(ObjectOutput out) throws IOException {
         out.writeBoolean(useFromInRules);
         out.writeInt(msdConsider.ordinal());
@@ -135,6 +213,26 @@ public class LemmatizerSettings implements Cloneable {
     }
 
 
+    /**
+     * Writes training thresholds, they are read by {@link #readThresholds(ObjectInput)}.
+     *
+     * @param out output
+     * @throws IOException if output fails
+     */
+    public void writeThresholds(ObjectOutput out) throws IOException {
+        out.writeDouble(minSubtreeWeight);
+        out.writeDouble(minSplitGain);
+        out.writeInt(maxDepth);
+    }
+
+
+    public void readThresholds(ObjectInput in) throws IOException {
+        minSubtreeWeight = in.readDouble();
+        minSplitGain = in.readDouble();
+        maxDepth = in.readInt();
+    }
+
+
     public LemmatizerSettings(ObjectInput in) throws IOException, ClassNotFoundException {
         readObject(in);
     }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+/**
+ * Column layout of multext lexicon, e.g. <code>WLMF</code> (word, lemma, msd, frequency). Lemma <code>=</code>
+ * means the same as word, missing frequency column means weight 1.
+ *
+ * @author Michal Hlavac
+ */
+public final class MultextFormat {
+
+    private final String format;
+    private final int wIdx;
+    private final int lIdx;
+    private final int mIdx;
+    private final int fIdx;
+    private final int columns;
+
+
+    /**
+     * @param format order of columns
+     * @throws IllegalArgumentException if format has no word or lemma column
+     */
+    public MultextFormat(String format) {
+        this.format = format;
+        this.wIdx = format.indexOf('W');
+        this.lIdx = format.indexOf('L');
+        this.mIdx = format.indexOf('M');
+        this.fIdx = format.indexOf('F');
+        this.columns = Math.max(Math.max(wIdx, lIdx), Math.max(mIdx, fIdx)) + 1;
+        if (wIdx < 0 || lIdx < 0) {
+            throw new IllegalArgumentException("Can not find word and lemma location in format " + format);
+        }
+    }
+
+
+    /**
+     * Splits line into columns.
+     *
+     * @param line line of lexicon
+     * @return columns or <code>null</code> if line doesn't have all columns of the format
+     */
+    public String[] split(String line) {
+        String[] words = line.split("\t");
+        return words.length < columns ? null : words;
+    }
+
+
+    public String getWord(String[] words) {
+        return words[wIdx];
+    }
+
+
+    public String getLemma(String[] words) {
+        return words[lIdx].equals("=") ? words[wIdx] : words[lIdx];
+    }
+
+
+    public String getMsd(String[] words) {
+        return mIdx > -1 ? words[mIdx] : null;
+    }
+
+
+    public double getWeight(String[] words) {
+        return fIdx > -1 ? Double.parseDouble(words[fIdx]) : 1;
+    }
+
+
+    @Override
+    public String toString() {
+        return format;
+    }
+}
@@ -19,25 +19,38 @@ import static eu.hlavki.text.lemmagen.impl.Serializer.*;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
+ * Rules of training examples. Rules are identified by the replaced suffix (or just its length if from
+ * strings are not used in rules) and the new suffix. Rule of example is looked up in open addressing table
+ * by comparing suffixes of word and lemma directly, so no strings are created for existing rules.
+ * Signatures are used only to reference rules in serialized models.
  *
  * @author Michal Hlavac
  */
-public class RuleList extends HashMap<String, LemmaRule> {
-
-    private static final long serialVersionUID = -4961187394392918555L;
+public class RuleList {
 
     private LemmatizerSettings settings;
     private LemmaRule defaultRule;
+    private List<LemmaRule> rules;
+    private int[] hashes;
+    private int[] table;
+    private transient Map<String, LemmaRule> signatures;
 
 
     public RuleList(LemmatizerSettings settings) {
-        super();
         this.settings = settings;
-        defaultRule = addRule(new LemmaRule("", "", 0, settings));
+        this.rules = new ArrayList<>();
+        this.hashes = new int[16];
+        this.table = new int[32];
+        defaultRule = addRule("", "");
     }
 
 
@@ -46,18 +59,132 @@ public class RuleList extends HashMap<String, LemmaRule> {
     }
 
 
+    public int size() {
+        return rules.size();
+    }
+
+
+    /**
+     * @return rules ordered by id
+     */
+    public List<LemmaRule> values() {
+        return Collections.unmodifiableList(rules);
+    }
+
+
+    /**
+     * @param id id of rule
+     * @return rule with given id
+     */
+    public LemmaRule getById(int id) {
+        return rules.get(id);
+    }
+
+
+    /**
+     * Finds rule by its signature, e.g. <code>[ies]==>[y]</code>.
+     *
+     * @param signature signature of rule
+     * @return rule or null
+     */
+    public LemmaRule get(String signature) {
+        if (signatures == null) {
+            Map<String, LemmaRule> map = new HashMap<>();
+            for (LemmaRule rule : rules) {
+                map.put(rule.getSignature(), rule);
+            }
+            signatures = map;
+        }
+        return signatures.get(signature);
+    }
+
+
     public LemmaRule addRule(LemmaExample le) {
-        return addRule(new LemmaRule(le.getWord(), le.getLemma(), this.size(), settings));
+        return addRule(le.getWord(), le.getLemma());
+    }
+
+
+    private LemmaRule addRule(String word, String lemma) {
+        int stem = sameStem(word, lemma);
+        boolean useFrom = settings.isUseFromInRules();
+        int from = word.length() - stem;
+        int hash = hash(from, useFrom ? word : null, stem, lemma, stem);
+        int mask = table.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) break;
+            LemmaRule rule = rules.get(id);
+            if (hashes[id] == hash && rule.getFrom() == from && matches(rule, word, lemma, stem, useFrom)) {
+                return rule;
+            }
+        }
+        LemmaRule rule = new LemmaRule(word, lemma, rules.size(), settings);
+        add(rule, hash);
+        signatures = null;
+        return rule;
+    }
+
+
+    private void add(LemmaRule rule, int hash) {
+        int id = rules.size();
+        rules.add(rule);
+        if (id == hashes.length) hashes = Arrays.copyOf(hashes, 2 * id);
+        hashes[id] = hash;
+        if (2 * rules.size() > table.length) {
+            table = new int[2 * table.length];
+            for (int idx = 0; idx < rules.size(); idx++) {
+                insert(idx);
+            }
+        } else {
+            insert(id);
+        }
     }
 
 
-    private LemmaRule addRule(LemmaRule lemmaRule) {
-        LemmaRule result = get(lemmaRule.getSignature());
-        if (result == null) {
-            this.put(lemmaRule.getSignature(), lemmaRule);
-            result = lemmaRule;
+    private void insert(int id) {
+        int mask = table.length - 1;
+        int slot = hashes[id] & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
         }
-        return result;
+        table[slot] = id + 1;
+    }
+
+
+    private static boolean matches(LemmaRule rule, String word, String lemma, int stem, boolean useFrom) {
+        String to = rule.getToStr();
+        if (to.length() != lemma.length() - stem || !to.regionMatches(0, lemma, stem, to.length())) return false;
+        return !useFrom || rule.getFromStr().regionMatches(0, word, stem, rule.getFrom());
+    }
+
+
+    private static int hash(int from, String fromSrc, int fromStart, String to, int toStart) {
+        int hash = from;
+        if (fromSrc != null) {
+            for (int idx = fromStart; idx < fromSrc.length(); idx++) {
+                hash = 31 * hash + fromSrc.charAt(idx);
+            }
+        }
+        for (int idx = toStart; idx < to.length(); idx++) {
+            hash = 31 * hash + to.charAt(idx);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+
+    private static int hash(LemmaRule rule) {
+        return hash(rule.getFrom(), rule.getFromStr(), 0, rule.getToStr(), 0);
+    }
+
+
+    static int sameStem(String str1, String str2) {
+        int maxLength = Math.min(str1.length(), str2.length());
+
+        for (int pos = 0; pos < maxLength; pos++) {
+            if (str1.charAt(pos) != str2.charAt(pos)) return pos;
+        }
+
+        return maxLength;
     }
 
 
@@ -72,10 +199,10 @@ public class RuleList extends HashMap<String, LemmaRule> {
         }
 
         //save list items ---------------------------------------
-        out.writeInt(this.size());
-        for (Map.Entry<String, LemmaRule> kvp : entrySet()) {
-            writeString(out, kvp.getKey());
-            kvp.getValue().writeObject(out, false);
+        out.writeInt(rules.size());
+        for (LemmaRule rule : rules) {
+            writeString(out, rule.getSignature());
+            rule.writeObject(out, false);
         }
 
         //default rule is already saved in the list. Here just save its id.
@@ -84,7 +211,6 @@ public class RuleList extends HashMap<String, LemmaRule> {
 
 
     public RuleList(ObjectInput in, LemmatizerSettings settings) throws IOException, ClassNotFoundException {
-        super();
         readObject(in, settings);
     }
 
@@ -103,12 +229,27 @@ public class RuleList extends HashMap<String, LemmaRule> {
         }
 
         //load list items ---------------------------------------
-        this.clear();
         int count = in.readInt();
+        List<LemmaRule> read = new ArrayList<>(count);
+        signatures = new HashMap<>();
         for (int idx = 0; idx < count; idx++) {
             String key = readString(in);
             LemmaRule value = new LemmaRule(in, this.settings);
-            this.put(key, value);
+            signatures.put(key, value);
+            read.add(value);
+        }
+        Collections.sort(read, new Comparator<LemmaRule>() {
+            @Override
+            public int compare(LemmaRule r1, LemmaRule r2) {
+                return Integer.compare(r1.getId(), r2.getId());
+            }
+        });
+
+        rules = new ArrayList<>(count);
+        hashes = new int[Math.max(16, count)];
+        table = new int[Integer.highestOneBit(Math.max(16, count)) * 4];
+        for (LemmaRule rule : read) {
+            add(rule, hash(rule));
         }
 
         //link the default rule just Id was saved.
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+/**
+ * Reusable accumulators of rule weights indexed by rule id. One instance is shared by all nodes of tree being
+ * built, only rules touched by the current node are cleared.
+ *
+ * @author Michal Hlavac
+ */
+final class RuleScores {
+
+    private final double[] weights;
+    private final boolean[] present;
+    private final int[] touched;
+    private int size;
+
+
+    RuleScores(int rules) {
+        this.weights = new double[rules];
+        this.present = new boolean[rules];
+        this.touched = new int[rules];
+    }
+
+
+    void clear() {
+        for (int idx = 0; idx < size; idx++) {
+            int id = touched[idx];
+            weights[id] = 0;
+            present[id] = false;
+        }
+        size = 0;
+    }
+
+
+    void add(LemmaRule rule, double weight) {
+        int id = rule.getId();
+        if (!present[id]) {
+            present[id] = true;
+            touched[size++] = id;
+        }
+        weights[id] += weight;
+    }
+
+
+    /**
+     * @return number of touched rules
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * @param idx index of touched rule in order of the first occurrence
+     * @return id of the rule
+     */
+    int id(int idx) {
+        return touched[idx];
+    }
+
+
+    boolean contains(int id) {
+        return present[id];
+    }
+
+
+    double weight(int id) {
+        return weights[id];
+    }
+}
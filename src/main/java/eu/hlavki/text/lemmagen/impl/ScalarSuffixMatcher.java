@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+/**
+ * Scalar comparison of reversed words. It's implementation of {@link SuffixMatcher} on Java 8 and baseline of
+ * the vectorized one; this class has no Java 9 version in multi-release jar.
+ *
+ * @author Michal Hlavac
+ */
+final class ScalarSuffixMatcher {
+
+    private ScalarSuffixMatcher() {
+    }
+
+
+    static int mismatch(char[] a, char[] b) {
+        int len = Math.min(a.length, b.length);
+        for (int idx = 0; idx < len; idx++) {
+            if (a[idx] != b[idx]) return idx;
+        }
+        return a.length == b.length ? -1 : len;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.codec.ModelCodec;
+import eu.hlavki.text.lemmagen.codec.ModelFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Model file with independently decodable sections, so large models are decoded by many threads. Header
+ * of {@link ModelFormat#SECTIONED_VERSION} is followed by section index (number of sections and compressed
+ * length of every section) and by sections compressed by codec of the header:
+ * <ol>
+ * <li>settings and rule tables, see {@link DefaultLemmatizer#writeHead(java.io.ObjectOutput, boolean, ModelFormat)}</li>
+ * <li>for rear tree and front tree (if built): root node with number of its subtrees, followed by one
+ * section per top-level subtree</li>
+ * </ol>
+ * Settings and root nodes are read first, top-level subtrees are decoded in parallel and attached to
+ * their roots.
+ *
+ * @author Michal Hlavac
+ */
+public final class SectionedModel {
+
+    private SectionedModel() {
+    }
+
+
+    /**
+     * Writes model of lemmatizer, model is built if needed.
+     *
+     * @param lemmatizer lemmatizer
+     * @param out output stream, it's not closed
+     * @param codec compression codec of sections
+     * @param level compression level of deflate based codecs or
+     * {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}
+     * @throws IOException if model cannot be written
+     */
+    public static void write(DefaultLemmatizer lemmatizer, OutputStream out, ModelCodec codec, int level)
+        throws IOException {
+        lemmatizer.buildModel();
+        ModelFormat format = lemmatizer.modelFormat(new ModelFormat(codec, true));
+        List<byte[]> sections = new ArrayList<>();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream section = new ObjectOutputStream(format.encodeSection(bytes, level))) {
+            lemmatizer.writeHead(section, false, format);
+        }
+        sections.add(bytes.toByteArray());
+
+        writeTree(lemmatizer.getRootNode(), format, level, sections);
+        if (lemmatizer.getSettings().isBuildFrontLemmatizer()) {
+            writeTree(lemmatizer.getRootNodeFront(), format, level, sections);
+        }
+
+        format.writeHeader(out);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(sections.size());
+        for (byte[] section : sections) {
+            data.writeInt(section.length);
+        }
+        for (byte[] section : sections) {
+            data.write(section);
+        }
+        data.flush();
+    }
+
+
+    private static void writeTree(LemmaTreeNode root, ModelFormat format, int level, List<byte[]> sections)
+        throws IOException {
+        Map<Character, LemmaTreeNode> subNodes = root.getSubNodes();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream section = new ObjectOutputStream(format.encodeSection(bytes, level))) {
+            section.writeInt(subNodes.size());
+            root.writeNode(section);
+        }
+        sections.add(bytes.toByteArray());
+
+        for (Map.Entry<Character, LemmaTreeNode> kvp : subNodes.entrySet()) {
+            bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream section = new ObjectOutputStream(format.encodeSection(bytes, level))) {
+                section.writeChar(kvp.getKey());
+                kvp.getValue().writeObject(section);
+            }
+            sections.add(bytes.toByteArray());
+        }
+    }
+
+
+    /**
+     * Reads sectioned model. Top-level subtrees are decoded by tasks of given executor, e.g.
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+     *
+     * @param in stream positioned after header read by {@link ModelFormat#read(InputStream)}
+     * @param format format of model
+     * @param executor executor decoding subtrees
+     * @return lemmatizer
+     * @throws IOException if model cannot be read
+     */
+    public static DefaultLemmatizer read(InputStream in, ModelFormat format, ExecutorService executor)
+        throws IOException {
+        if (!format.isSectioned()) throw new IOException("Not a sectioned model");
+        DataInputStream data = new DataInputStream(in);
+        int count = data.readInt();
+        if (count < 2) throw new IOException("Invalid section index");
+        byte[][] sections = new byte[count][];
+        for (int idx = 0; idx < count; idx++) {
+            int length = data.readInt();
+            if (length < 0) throw new IOException("Invalid section index");
+            sections[idx] = new byte[length];
+        }
+        for (byte[] section : sections) {
+            data.readFully(section);
+        }
+
+        DefaultLemmatizer lemmatizer = new DefaultLemmatizer();
+        ExampleList[] treeExamples;
+        try (ObjectInput section = open(format, sections[0])) {
+            treeExamples = lemmatizer.readHead(section, format);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Can't read model settings", e);
+        }
+        LemmatizerSettings settings = lemmatizer.getSettings();
+
+        // roots are read by this thread, rule lookup tables are built before subtrees are submitted
+        LemmaTreeNode[] roots = new LemmaTreeNode[treeExamples.length];
+        List<Subtree> subtrees = new ArrayList<>();
+        int next = 1;
+        for (int tree = 0; tree < roots.length; tree++) {
+            if (next >= count) throw new IOException("Missing section of tree " + tree);
+            int subNodes;
+            try (ObjectInput section = open(format, sections[next++])) {
+                subNodes = section.readInt();
+                roots[tree] = LemmaTreeNode.readNode(section, settings, treeExamples[tree]);
+            }
+            if (subNodes < 0 || next + subNodes > count) throw new IOException("Invalid section index");
+            for (int idx = 0; idx < subNodes; idx++) {
+                subtrees.add(new Subtree(format, sections[next++], settings, treeExamples[tree], roots[tree]));
+            }
+        }
+        if (next != count) throw new IOException("Unexpected sections in model");
+
+        List<Future<LemmaTreeNode>> results;
+        try {
+            results = executor.invokeAll(subtrees);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        for (int idx = 0; idx < subtrees.size(); idx++) {
+            Subtree subtree = subtrees.get(idx);
+            LemmaTreeNode node;
+            try {
+                node = results.get(idx).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException("Can't read subtree", cause);
+            }
+            subtree.parent.attach(subtree.ch, node);
+        }
+        lemmatizer.setModel(roots[0], roots.length > 1 ? roots[1] : null);
+        return lemmatizer;
+    }
+
+
+    private static ObjectInput open(ModelFormat format, byte[] section) throws IOException {
+        return new ObjectInputStream(format.decode(new ByteArrayInputStream(section)));
+    }
+
+    private static final class Subtree implements Callable<LemmaTreeNode> {
+
+        private final ModelFormat format;
+        private final byte[] section;
+        private final LemmatizerSettings settings;
+        private final ExampleList examples;
+        private final LemmaTreeNode parent;
+        private char ch;
+
+
+        Subtree(ModelFormat format, byte[] section, LemmatizerSettings settings, ExampleList examples,
+            LemmaTreeNode parent) {
+            this.format = format;
+            this.section = section;
+            this.settings = settings;
+            this.examples = examples;
+            this.parent = parent;
+        }
+
+
+        @Override
+        public LemmaTreeNode call() throws IOException, ClassNotFoundException {
+            try (ObjectInput in = open(format, section)) {
+                ch = in.readChar();
+                return new LemmaTreeNode(in, settings, examples, parent);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Multi-level jump table of the tree keyed by the last <code>1..k</code> characters of the word. Entry of the
+ * suffix is the deepest node which {@link LemmaTreeNode#findNode(CharSequence)} reaches for every word longer
+ * than the suffix ending with it, so the walk can resume from this node and skip low levels of the tree. The
+ * longest suffix with entry is used, words without any entry are looked up from the root. Results are always
+ * the same as results of the full walk.
+ * <p>
+ * Suffixes of length <code>j</code> are taken from conditions of the first nodes at least <code>j</code>
+ * characters long. Every level is open addressing table with suffixes packed to <code>long</code> keys, hence
+ * <code>k</code> is at most 4.
+ *
+ * @author Michal Hlavac
+ */
+public final class SuffixIndex {
+
+    public static final int MAX_SUFFIX_LENGTH = 4;
+
+    private final LemmaTreeNode root;
+    private final int suffixLength;
+    private final Level[] levels;
+    private final int size;
+
+
+    /**
+     * @param root root of the tree
+     * @param suffixLength number of indexed characters, from 1 to {@link #MAX_SUFFIX_LENGTH}
+     */
+    public SuffixIndex(LemmaTreeNode root, int suffixLength) {
+        if (suffixLength < 1 || suffixLength > MAX_SUFFIX_LENGTH) {
+            throw new IllegalArgumentException("Invalid suffix length " + suffixLength);
+        }
+        this.root = root;
+        this.suffixLength = suffixLength;
+        this.levels = new Level[suffixLength + 1];
+        int count = 0;
+        for (int length = 1; length <= suffixLength; length++) {
+            Set<String> suffixes = collectSuffixes(root, length);
+            Level level = new Level(suffixes.size());
+            for (String suffix : suffixes) {
+                LemmaTreeNode node = jump(suffix);
+                if (node == root || node == findStart(suffix, length - 1)) continue;
+                level.put(key(suffix, suffix.length()), node);
+            }
+            levels[length] = level;
+            count += level.size;
+        }
+        this.size = count;
+    }
+
+
+    public LemmaTreeNode getRoot() {
+        return root;
+    }
+
+
+    public int getSuffixLength() {
+        return suffixLength;
+    }
+
+
+    /**
+     * @return number of suffixes with entry
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Finds the deepest node which condition is satisfied by given word, result is the same as result of
+     * {@link LemmaTreeNode#findNode(CharSequence)} of the root.
+     *
+     * @param word word to lemmatize
+     * @return deepest matching node
+     */
+    public LemmaTreeNode findNode(CharSequence word) {
+        return findStart(word).findNode(word);
+    }
+
+
+    /**
+     * @param word word to lemmatize
+     * @return node where the walk of the word resumes
+     */
+    LemmaTreeNode findStart(CharSequence word) {
+        return findStart(word, Math.min(suffixLength, word.length() - 1));
+    }
+
+
+    /**
+     * @param word word
+     * @param maxLength length of the longest suffix to look up
+     */
+    private LemmaTreeNode findStart(CharSequence word, int maxLength) {
+        for (int length = maxLength; length > 0; length--) {
+            LemmaTreeNode node = levels[length].get(key(word, length));
+            if (node != null) return node;
+        }
+        return root;
+    }
+
+
+    /**
+     * Packs the last characters of the word.
+     */
+    private static long key(CharSequence word, int length) {
+        long key = 0;
+        for (int idx = word.length() - length; idx < word.length(); idx++) {
+            key = key << 16 | word.charAt(idx);
+        }
+        return key;
+    }
+
+
+    /**
+     * Follows {@link LemmaTreeNode#findNode(CharSequence)} as long as every step depends on the suffix only,
+     * i.e. for every word longer than the suffix. Branching character must be within the suffix and condition
+     * of the child must not be longer than the suffix.
+     */
+    private LemmaTreeNode jump(String suffix) {
+        int length = suffix.length();
+        LemmaTreeNode node = root;
+        while (node.getSimilarity() < length) {
+            LemmaTreeNode sub = node.getSubNode(suffix.charAt(length - 1 - node.getSimilarity()));
+            if (sub == null || sub.isWholeWord() || sub.getCondition().length() > length) break;
+            if (!sub.conditionSatisfied(suffix)) break;
+            node = sub;
+        }
+        return node;
+    }
+
+
+    /**
+     * Collects the last characters of conditions of the first nodes on every path which conditions are at
+     * least suffix length long. Words reaching deeper levels of the tree end with one of them.
+     */
+    private static Set<String> collectSuffixes(LemmaTreeNode root, int suffixLength) {
+        Set<String> suffixes = new HashSet<>();
+        Deque<LemmaTreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            LemmaTreeNode node = stack.pop();
+            String condition = node.getCondition();
+            if (condition != null && condition.length() >= suffixLength) {
+                suffixes.add(condition.substring(condition.length() - suffixLength));
+                continue;
+            }
+            for (LemmaTreeNode child : node.getSubNodes().values()) {
+                stack.push(child);
+            }
+        }
+        return suffixes;
+    }
+
+    private static final class Level {
+
+        private final long[] keys;
+        private final LemmaTreeNode[] nodes;
+        private final int mask;
+        private final int shift;
+        private int size;
+
+
+        Level(int capacity) {
+            int length = Integer.highestOneBit(Math.max(capacity, 1)) << 2;
+            this.keys = new long[length];
+            this.nodes = new LemmaTreeNode[length];
+            this.mask = length - 1;
+            this.shift = Long.numberOfLeadingZeros(length) + 1;
+        }
+
+
+        private int slot(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        }
+
+
+        void put(long key, LemmaTreeNode node) {
+            int slot = slot(key);
+            while (nodes[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            nodes[slot] = node;
+            size++;
+        }
+
+
+        LemmaTreeNode get(long key) {
+            for (int slot = slot(key);; slot = (slot + 1) & mask) {
+                LemmaTreeNode node = nodes[slot];
+                if (node == null || keys[slot] == key) return node;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+/**
+ * Compares reversed words, i.e. suffixes of words. This is scalar implementation for Java 8, multi-release
+ * jar contains vectorized implementation for Java 9 and newer (see <code>src/main/java9</code>).
+ *
+ * @author Michal Hlavac
+ */
+final class SuffixMatcher {
+
+    private SuffixMatcher() {
+    }
+
+
+    /**
+     * Finds index of the first mismatching char of two arrays. Contract is the same as
+     * <code>java.util.Arrays.mismatch(char[], char[])</code>.
+     *
+     * @param a first array
+     * @param b second array
+     * @return index of the first mismatch, length of shorter array if it's prefix of longer one or -1 if
+     * arrays are equal
+     */
+    static int mismatch(char[] a, char[] b) {
+        return ScalarSuffixMatcher.mismatch(a, b);
+    }
+}
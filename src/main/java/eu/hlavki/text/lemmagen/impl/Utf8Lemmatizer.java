@@ -0,0 +1,472 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lemmatizer of UTF-8 encoded words. Model is compiled from trained {@link DefaultLemmatizer} into arrays,
+ * conditions and rule suffixes are stored as UTF-8 bytes, so words are lemmatized without decoding them into
+ * strings. Suffix walk decodes code points from the end of the word only as far as the tree needs, lemma is
+ * the unchanged prefix of input bytes followed by encoded suffix of the rule.
+ * <p>
+ * Result is the same as decoding the word, lemmatizing it by source lemmatizer and encoding the lemma.
+ * Malformed input is decoded byte by byte as replacement characters, for such input the lemma may differ
+ * from decoding through {@link String}. Only models without front lemmatizer are supported. Instances are
+ * immutable and thread safe.
+ *
+ * @author Michal Hlavac
+ */
+public final class Utf8Lemmatizer {
+
+    private static final int ROOT = 0;
+    private static final byte[] REPLACEMENT = {'?'};
+
+    //nodes
+    private final int[] similarity;
+    private final int[] conditionLength;
+    private final int[] parentConditionLength;
+    private final boolean[] wholeWord;
+    private final int[] checkStart;
+    private final int[] checkEnd;
+    private final int[] rule;
+    private final int[] childStart;
+    private final int[] childEnd;
+    private final char[] childKeys;
+    private final int[] children;
+    //bytes of condition suffixes checked by nodes
+    private final byte[] checks;
+    //rules
+    private final int[] ruleFrom;
+    private final byte[][] ruleTo;
+    private final int maxToLength;
+
+    private final ThreadLocal<Cursor> cursors = new ThreadLocal<Cursor>() {
+        @Override
+        protected Cursor initialValue() {
+            return new Cursor();
+        }
+    };
+
+
+    /**
+     * Compiles model of given lemmatizer. Model is built first if needed.
+     *
+     * @param lemmatizer source lemmatizer
+     * @throws IllegalArgumentException if lemmatizer uses front lemmatizer or model contains conditions or
+     * rules with supplementary characters
+     */
+    public Utf8Lemmatizer(DefaultLemmatizer lemmatizer) {
+        if (lemmatizer.getSettings().isBuildFrontLemmatizer()) {
+            throw new IllegalArgumentException("Front lemmatizer is not supported");
+        }
+        List<LemmaTreeNode> nodes = new ArrayList<>();
+        Map<LemmaTreeNode, Integer> index = new IdentityHashMap<>();
+        Deque<LemmaTreeNode> queue = new ArrayDeque<>();
+        LemmaTreeNode root = lemmatizer.getRootNode();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            LemmaTreeNode node = queue.poll();
+            index.put(node, nodes.size());
+            nodes.add(node);
+            queue.addAll(node.getSubNodes().values());
+        }
+
+        int count = nodes.size();
+        similarity = new int[count];
+        conditionLength = new int[count];
+        parentConditionLength = new int[count];
+        wholeWord = new boolean[count];
+        checkStart = new int[count];
+        checkEnd = new int[count];
+        rule = new int[count];
+        childStart = new int[count];
+        childEnd = new int[count];
+        childKeys = new char[count - 1];
+        children = new int[count - 1];
+
+        Map<LemmaRule, Integer> rules = new IdentityHashMap<>();
+        List<LemmaRule> ruleList = new ArrayList<>();
+        ByteBuffer checkBytes = ByteBuffer.allocate(64);
+        int childPos = 0;
+        for (int idx = 0; idx < count; idx++) {
+            LemmaTreeNode node = nodes.get(idx);
+            String condition = condition(node);
+            similarity[idx] = node.getSimilarity();
+            conditionLength[idx] = condition.length();
+            wholeWord[idx] = node.isWholeWord();
+            if (node.getParentNode() != null) {
+                int parentLength = condition(node.getParentNode()).length();
+                parentConditionLength[idx] = parentLength;
+                byte[] check = encode(condition.substring(0, Math.max(0, condition.length() - parentLength - 1)));
+                if (checkBytes.remaining() < check.length) {
+                    checkBytes = grow(checkBytes, check.length);
+                }
+                checkStart[idx] = checkBytes.position();
+                checkBytes.put(check);
+                checkEnd[idx] = checkBytes.position();
+            }
+
+            LemmaRule bestRule = node.getBestRule();
+            Integer ruleIdx = rules.get(bestRule);
+            if (ruleIdx == null) {
+                ruleIdx = ruleList.size();
+                rules.put(bestRule, ruleIdx);
+                ruleList.add(bestRule);
+            }
+            rule[idx] = ruleIdx;
+
+            char[] keys = new char[node.getSubNodes().size()];
+            int pos = 0;
+            for (Character key : node.getSubNodes().keySet()) {
+                keys[pos++] = key;
+            }
+            Arrays.sort(keys);
+            childStart[idx] = childPos;
+            for (char key : keys) {
+                childKeys[childPos] = key;
+                children[childPos] = index.get(node.getSubNodes().get(key));
+                childPos++;
+            }
+            childEnd[idx] = childPos;
+        }
+        checks = Arrays.copyOf(checkBytes.array(), checkBytes.position());
+
+        ruleFrom = new int[ruleList.size()];
+        ruleTo = new byte[ruleList.size()][];
+        int maxTo = 0;
+        for (int idx = 0; idx < ruleFrom.length; idx++) {
+            ruleFrom[idx] = ruleList.get(idx).getFrom();
+            ruleTo[idx] = encode(ruleList.get(idx).getToStr());
+            maxTo = Math.max(maxTo, ruleTo[idx].length);
+        }
+        maxToLength = maxTo;
+    }
+
+
+    private static String condition(LemmaTreeNode node) {
+        return node.getCondition() == null ? "" : node.getCondition();
+    }
+
+
+    private static byte[] encode(String str) {
+        for (int idx = 0; idx < str.length(); idx++) {
+            if (Character.isSurrogate(str.charAt(idx))) {
+                throw new IllegalArgumentException("Supplementary characters are not supported: " + str);
+            }
+        }
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer result = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        result.put(buffer);
+        return result;
+    }
+
+
+    /**
+     * @return number of tree nodes
+     */
+    public int getNodeCount() {
+        return similarity.length;
+    }
+
+
+    /**
+     * Returns upper bound of lemma length, useful to size output buffers.
+     *
+     * @param wordLength length of the word in bytes
+     * @return maximal length of lemma in bytes
+     */
+    public int getMaxLemmaLength(int wordLength) {
+        return wordLength + 1 + maxToLength;
+    }
+
+
+    /**
+     * Lemmatizes UTF-8 encoded word into output array.
+     *
+     * @param word array with the word
+     * @param offset offset of the word
+     * @param length length of the word in bytes
+     * @param lemma array for the lemma
+     * @param lemmaOffset offset where the lemma is written
+     * @return length of the lemma in bytes
+     * @throws IndexOutOfBoundsException if output array is too small or the rule removes more characters
+     * than the word has
+     */
+    public int lemmatize(byte[] word, int offset, int length, byte[] lemma, int lemmaOffset) {
+        Cursor cursor = cursors.get();
+        int r = apply(cursor, word, offset, length);
+        byte[] to = ruleTo[r];
+        int prefix = cursor.cut - offset;
+        int lemmaLength = prefix + (cursor.replaced ? 1 : 0) + to.length;
+        if (lemmaOffset < 0 || lemmaOffset + lemmaLength > lemma.length) {
+            throw new IndexOutOfBoundsException("Lemma doesn't fit into output array");
+        }
+        System.arraycopy(word, offset, lemma, lemmaOffset, prefix);
+        int pos = lemmaOffset + prefix;
+        if (cursor.replaced) lemma[pos++] = REPLACEMENT[0];
+        System.arraycopy(to, 0, lemma, pos, to.length);
+        return lemmaLength;
+    }
+
+
+    /**
+     * Lemmatizes UTF-8 encoded word between position and limit of input buffer. Input buffer is consumed
+     * and lemma is written at position of output buffer.
+     *
+     * @param word buffer with the word
+     * @param lemma buffer for the lemma
+     * @return length of the lemma in bytes
+     * @throws BufferOverflowException if there's not enough space in output buffer, input buffer isn't
+     * consumed in this case
+     */
+    public int lemmatize(ByteBuffer word, ByteBuffer lemma) {
+        Cursor cursor = cursors.get();
+        int length = word.remaining();
+        byte[] in;
+        int offset;
+        if (word.hasArray()) {
+            in = word.array();
+            offset = word.arrayOffset() + word.position();
+        } else {
+            in = cursor.input(length);
+            offset = 0;
+            int pos = word.position();
+            word.get(in, 0, length);
+            word.position(pos);
+        }
+        int r = apply(cursor, in, offset, length);
+        byte[] to = ruleTo[r];
+        int prefix = cursor.cut - offset;
+        int lemmaLength = prefix + (cursor.replaced ? 1 : 0) + to.length;
+        if (lemma.remaining() < lemmaLength) throw new BufferOverflowException();
+        lemma.put(in, offset, prefix);
+        if (cursor.replaced) lemma.put(REPLACEMENT);
+        lemma.put(to);
+        word.position(word.limit());
+        return lemmaLength;
+    }
+
+
+    /**
+     * Finds the deepest matching node like {@link LemmaTreeNode#findNode(CharSequence)} and computes where
+     * the prefix kept by its rule ends.
+     *
+     * @return index of the rule
+     */
+    private int apply(Cursor cursor, byte[] word, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > word.length) throw new IndexOutOfBoundsException();
+        cursor.reset(word, offset, length);
+        int node = ROOT;
+        while (childStart[node] < childEnd[node] && cursor.hasUnits(similarity[node])) {
+            int sim = similarity[node];
+            char ch = cursor.hasUnits(sim + 1) ? cursor.unit(sim) : '\0';
+            int sub = child(node, ch);
+            if (sub < 0 || !conditionSatisfied(cursor, sub)) break;
+            node = sub;
+        }
+
+        int r = rule[node];
+        int from = ruleFrom[r];
+        cursor.replaced = false;
+        if (from == 0) {
+            cursor.cut = offset + length;
+        } else {
+            if (!cursor.hasUnits(from)) throw new IndexOutOfBoundsException("Rule can't be applied to word");
+            int cut = cursor.start(from - 1);
+            if (cut < 0) {
+                //the rule splits surrogate pair, high surrogate left alone is encoded as '?'
+                cut = cursor.start(from);
+                cursor.replaced = true;
+            }
+            cursor.cut = cut;
+        }
+        return r;
+    }
+
+
+    private int child(int node, char ch) {
+        int low = childStart[node];
+        int high = childEnd[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char key = childKeys[mid];
+            if (key < ch) {
+                low = mid + 1;
+            } else if (key > ch) {
+                high = mid - 1;
+            } else {
+                return children[mid];
+            }
+        }
+        return -1;
+    }
+
+
+    private boolean conditionSatisfied(Cursor cursor, int node) {
+        int length = conditionLength[node];
+        if (!cursor.hasUnits(length)) return false;
+        if (wholeWord[node] && cursor.hasUnits(length + 1)) return false;
+
+        int checkLength = checkEnd[node] - checkStart[node];
+        if (checkLength == 0) return true;
+        //condition characters before the parent's condition and the character of the edge
+        int begin = cursor.start(length - 1);
+        int end = cursor.start(parentConditionLength[node]);
+        if (begin < 0 || end < 0 || end - begin != checkLength) return false;
+        byte[] word = cursor.word;
+        int pos = checkStart[node];
+        for (int idx = begin; idx < end; idx++) {
+            if (word[idx] != checks[pos++]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Per thread state of backward decoding. Characters are UTF-16 units indexed from the end of the word.
+     */
+    private static final class Cursor {
+
+        private byte[] word;
+        private int offset;
+        private int pos;
+        private int count;
+        private char[] units = new char[32];
+        //byte offset where code point of the unit starts, -1 for low surrogate
+        private int[] starts = new int[32];
+        private byte[] input = new byte[32];
+        private int cut;
+        private boolean replaced;
+
+
+        void reset(byte[] word, int offset, int length) {
+            this.word = word;
+            this.offset = offset;
+            this.pos = offset + length;
+            this.count = 0;
+        }
+
+
+        byte[] input(int length) {
+            if (input.length < length) input = new byte[Math.max(length, input.length * 2)];
+            return input;
+        }
+
+
+        /**
+         * @return true if the word has at least given number of UTF-16 units
+         */
+        boolean hasUnits(int number) {
+            while (count < number && pos > offset) {
+                decodePrevious();
+            }
+            return count >= number;
+        }
+
+
+        char unit(int idx) {
+            return units[idx];
+        }
+
+
+        int start(int idx) {
+            return starts[idx];
+        }
+
+
+        private void decodePrevious() {
+            if (count + 2 > units.length) {
+                units = Arrays.copyOf(units, units.length * 2);
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            int end = pos;
+            int lead = end - 1;
+            while (lead > offset && end - lead < 4 && (word[lead] & 0xC0) == 0x80) {
+                lead--;
+            }
+            int cp = decode(lead, end);
+            if (cp < 0) {
+                //malformed sequence, the last byte is decoded as replacement character
+                add('\uFFFD', end - 1);
+                pos = end - 1;
+            } else if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                add(Character.lowSurrogate(cp), -1);
+                add(Character.highSurrogate(cp), lead);
+                pos = lead;
+            } else {
+                add((char) cp, lead);
+                pos = lead;
+            }
+        }
+
+
+        private void add(char unit, int start) {
+            units[count] = unit;
+            starts[count] = start;
+            count++;
+        }
+
+
+        /**
+         * @return code point of sequence or -1 if it's malformed
+         */
+        private int decode(int start, int end) {
+            int b = word[start] & 0xFF;
+            int length = end - start;
+            int cp;
+            int min;
+            if (b < 0x80) {
+                return length == 1 ? b : -1;
+            } else if ((b & 0xE0) == 0xC0) {
+                if (length != 2) return -1;
+                cp = b & 0x1F;
+                min = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                if (length != 3) return -1;
+                cp = b & 0x0F;
+                min = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                if (length != 4) return -1;
+                cp = b & 0x07;
+                min = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+            } else {
+                return -1;
+            }
+            for (int idx = start + 1; idx < end; idx++) {
+                cp = (cp << 6) | (word[idx] & 0x3F);
+            }
+            if (cp < min || cp > Character.MAX_CODE_POINT
+                || cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+                return -1;
+            }
+            return cp;
+        }
+    }
+}
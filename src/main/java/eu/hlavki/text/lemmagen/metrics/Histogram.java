@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with fixed buckets. Buckets are either linear (bucket <code>i</code> holds value
+ * <code>i</code>) or exponential (bucket <code>i</code> holds values in <code>[2^(i-1), 2^i)</code>). Values
+ * out of range are counted in the last bucket.
+ *
+ * @author Michal Hlavac
+ */
+public final class Histogram {
+
+    private final LongAdder[] buckets;
+    private final boolean exponential;
+    private final LongAdder sum;
+
+
+    public Histogram(int bucketCount, boolean exponential) {
+        if (bucketCount < 1) throw new IllegalArgumentException("Histogram needs at least one bucket");
+        this.buckets = new LongAdder[bucketCount];
+        for (int idx = 0; idx < bucketCount; idx++) {
+            buckets[idx] = new LongAdder();
+        }
+        this.exponential = exponential;
+        this.sum = new LongAdder();
+    }
+
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        int idx = exponential ? 64 - Long.numberOfLeadingZeros(value) : (int) Math.min(value, Integer.MAX_VALUE);
+        buckets[Math.min(idx, buckets.length - 1)].increment();
+        sum.add(value);
+    }
+
+
+    public boolean isExponential() {
+        return exponential;
+    }
+
+
+    public int getBucketCount() {
+        return buckets.length;
+    }
+
+
+    /**
+     * Returns inclusive lower bound of values counted in given bucket.
+     *
+     * @param bucket bucket index
+     * @return lower bound
+     */
+    public long getBucketLowerBound(int bucket) {
+        if (!exponential) return bucket;
+        return bucket == 0 ? 0 : 1L << (bucket - 1);
+    }
+
+
+    public long[] getCounts() {
+        long[] result = new long[buckets.length];
+        for (int idx = 0; idx < buckets.length; idx++) {
+            result[idx] = buckets[idx].sum();
+        }
+        return result;
+    }
+
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        sum.reset();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of one lemmatizer (lexicon). All recording methods are lock-free and can be
+ * called from any thread. Instances are obtained from {@link MetricsRegistry}.
+ *
+ * @author Michal Hlavac
+ */
+public final class LemmatizerMetrics {
+
+    static final int LATENCY_BUCKETS = 40;
+    static final int DEPTH_BUCKETS = 64;
+    static final int TIMING_BUCKETS = 48;
+
+    private final String name;
+    private final LongAdder lemmatizeCount;
+    private final LongAdder defaultRuleCount;
+    private final Histogram latency;
+    private final Histogram depth;
+    private final Histogram buildTime;
+    private final Histogram saveTime;
+    private final Histogram readTime;
+
+
+    LemmatizerMetrics(String name) {
+        this.name = name;
+        this.lemmatizeCount = new LongAdder();
+        this.defaultRuleCount = new LongAdder();
+        this.latency = new Histogram(LATENCY_BUCKETS, true);
+        this.depth = new Histogram(DEPTH_BUCKETS, false);
+        this.buildTime = new Histogram(TIMING_BUCKETS, true);
+        this.saveTime = new Histogram(TIMING_BUCKETS, true);
+        this.readTime = new Histogram(TIMING_BUCKETS, true);
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Records one lemmatization.
+     *
+     * @param nanos duration of the call
+     * @param treeDepth depth of the tree node which rule was applied (root is 0)
+     * @param defaultRule true if the default (identity) rule was applied
+     */
+    public void recordLemmatize(long nanos, int treeDepth, boolean defaultRule) {
+        lemmatizeCount.increment();
+        latency.record(nanos);
+        depth.record(treeDepth);
+        if (defaultRule) defaultRuleCount.increment();
+    }
+
+
+    public void recordBuild(long nanos) {
+        buildTime.record(nanos);
+    }
+
+
+    public void recordSave(long nanos) {
+        saveTime.record(nanos);
+    }
+
+
+    public void recordRead(long nanos) {
+        readTime.record(nanos);
+    }
+
+
+    public long getLemmatizeCount() {
+        return lemmatizeCount.sum();
+    }
+
+
+    public long getDefaultRuleCount() {
+        return defaultRuleCount.sum();
+    }
+
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+
+    public Histogram getDepth() {
+        return depth;
+    }
+
+
+    public Histogram getBuildTime() {
+        return buildTime;
+    }
+
+
+    public Histogram getSaveTime() {
+        return saveTime;
+    }
+
+
+    public Histogram getReadTime() {
+        return readTime;
+    }
+
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(this);
+    }
+
+
+    public void reset() {
+        lemmatizeCount.reset();
+        defaultRuleCount.reset();
+        latency.reset();
+        depth.reset();
+        buildTime.reset();
+        saveTime.reset();
+        readTime.reset();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.metrics;
+
+import java.util.Collection;
+
+/**
+ * Service provider interface of metrics exporters. Implementations are discovered by
+ * {@link java.util.ServiceLoader} (<code>META-INF/services/eu.hlavki.text.lemmagen.metrics.MetricsExporter</code>)
+ * or registered by {@link MetricsRegistry#addExporter(MetricsExporter)}.
+ *
+ * @author Michal Hlavac
+ */
+public interface MetricsExporter {
+
+    void export(Collection<MetricsSnapshot> snapshots);
+}
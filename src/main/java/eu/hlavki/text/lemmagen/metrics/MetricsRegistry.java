@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Global registry of lemmatizer metrics. Metrics are disabled by default, in that case {@link #get(String)}
+ * returns <code>null</code> and lemmatizers skip all measurements. Metrics can be enabled programmatically
+ * or by system property <code>lemmagen.metrics=true</code>.
+ *
+ * @author Michal Hlavac
+ */
+public final class MetricsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+    public static final String DEFAULT_NAME = "default";
+    public static final String ENABLED_PROPERTY = "lemmagen.metrics";
+
+    private static final ConcurrentMap<String, LemmatizerMetrics> metrics = new ConcurrentHashMap<>();
+    private static final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+    private static volatile boolean serviceExportersLoaded = false;
+
+
+    private MetricsRegistry() {
+    }
+
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+
+    /**
+     * Enables or disables metrics. Lemmatizers created or loaded while metrics are disabled stay
+     * uninstrumented.
+     *
+     * @param value true to enable metrics
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+
+    /**
+     * Returns metrics of given name or <code>null</code> if metrics are disabled.
+     *
+     * @param name lexicon name
+     * @return metrics or null
+     */
+    public static LemmatizerMetrics get(String name) {
+        if (!enabled) return null;
+        return metrics.computeIfAbsent(name == null ? DEFAULT_NAME : name, LemmatizerMetrics::new);
+    }
+
+
+    public static List<MetricsSnapshot> snapshots() {
+        List<MetricsSnapshot> result = new ArrayList<>();
+        for (LemmatizerMetrics m : metrics.values()) {
+            result.add(m.snapshot());
+        }
+        return result;
+    }
+
+
+    public static void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+
+    public static void removeExporter(MetricsExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+
+    /**
+     * Takes snapshot of all metrics and passes them to all registered exporters.
+     */
+    public static void export() {
+        loadServiceExporters();
+        List<MetricsSnapshot> snapshots = snapshots();
+        for (MetricsExporter exporter : exporters) {
+            try {
+                exporter.export(snapshots);
+            } catch (RuntimeException e) {
+                log.warn("Metrics exporter " + exporter.getClass().getName() + " failed", e);
+            }
+        }
+    }
+
+
+    public static void reset() {
+        for (LemmatizerMetrics m : metrics.values()) {
+            m.reset();
+        }
+    }
+
+
+    private static void loadServiceExporters() {
+        if (serviceExportersLoaded) return;
+        synchronized (MetricsRegistry.class) {
+            if (serviceExportersLoaded) return;
+            for (MetricsExporter exporter : ServiceLoader.load(MetricsExporter.class)) {
+                exporters.add(exporter);
+            }
+            serviceExportersLoaded = true;
+        }
+    }
+}
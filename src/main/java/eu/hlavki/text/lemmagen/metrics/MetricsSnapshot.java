@@ -0,0 +1,159 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.metrics;
+
+/**
+ * Point in time copy of {@link LemmatizerMetrics} values. Histograms are exported as bucket counts,
+ * latency and timing buckets are exponential (nanoseconds), depth buckets are linear.
+ *
+ * @author Michal Hlavac
+ */
+public final class MetricsSnapshot {
+
+    private final String name;
+    private final long timestamp;
+    private final long lemmatizeCount;
+    private final long defaultRuleCount;
+    private final long[] latencyBuckets;
+    private final long latencySum;
+    private final long[] depthBuckets;
+    private final long buildCount;
+    private final long buildNanos;
+    private final long saveCount;
+    private final long saveNanos;
+    private final long readCount;
+    private final long readNanos;
+
+
+    MetricsSnapshot(LemmatizerMetrics metrics) {
+        this.name = metrics.getName();
+        this.timestamp = System.currentTimeMillis();
+        this.lemmatizeCount = metrics.getLemmatizeCount();
+        this.defaultRuleCount = metrics.getDefaultRuleCount();
+        this.latencyBuckets = metrics.getLatency().getCounts();
+        this.latencySum = metrics.getLatency().getSum();
+        this.depthBuckets = metrics.getDepth().getCounts();
+        this.buildCount = metrics.getBuildTime().getCount();
+        this.buildNanos = metrics.getBuildTime().getSum();
+        this.saveCount = metrics.getSaveTime().getCount();
+        this.saveNanos = metrics.getSaveTime().getSum();
+        this.readCount = metrics.getReadTime().getCount();
+        this.readNanos = metrics.getReadTime().getSum();
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+
+    public long getLemmatizeCount() {
+        return lemmatizeCount;
+    }
+
+
+    public long getDefaultRuleCount() {
+        return defaultRuleCount;
+    }
+
+
+    public long[] getLatencyBuckets() {
+        return latencyBuckets.clone();
+    }
+
+
+    public long getLatencySum() {
+        return latencySum;
+    }
+
+
+    public long[] getDepthBuckets() {
+        return depthBuckets.clone();
+    }
+
+
+    public long getBuildCount() {
+        return buildCount;
+    }
+
+
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+
+    public long getSaveCount() {
+        return saveCount;
+    }
+
+
+    public long getSaveNanos() {
+        return saveNanos;
+    }
+
+
+    public long getReadCount() {
+        return readCount;
+    }
+
+
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+
+    /**
+     * Returns approximate latency percentile computed from exponential buckets (upper bound of the bucket).
+     *
+     * @param percentile percentile between 0 and 1
+     * @return latency in nanoseconds
+     */
+    public long getLatencyPercentile(double percentile) {
+        long total = 0;
+        for (long count : latencyBuckets) {
+            total += count;
+        }
+        if (total == 0) return 0;
+        long threshold = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int idx = 0; idx < latencyBuckets.length; idx++) {
+            seen += latencyBuckets[idx];
+            if (seen >= threshold) return idx == 0 ? 0 : (1L << idx) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append(": lemmatize=").append(lemmatizeCount);
+        sb.append(", default=").append(defaultRuleCount);
+        if (lemmatizeCount > 0) {
+            sb.append(", avg=").append(latencySum / lemmatizeCount).append("ns");
+            sb.append(", p99<=").append(getLatencyPercentile(0.99)).append("ns");
+        }
+        sb.append(", build=").append(buildCount).append("/").append(buildNanos / 1000000).append("ms");
+        sb.append(", save=").append(saveCount).append("/").append(saveNanos / 1000000).append("ms");
+        sb.append(", read=").append(readCount).append("/").append(readNanos / 1000000).append("ms");
+        return sb.toString();
+    }
+}
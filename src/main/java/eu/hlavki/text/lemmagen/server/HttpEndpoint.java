@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * HTTP endpoint of {@link LemmatizerServer} based on JDK built-in HTTP server.
+ *
+ * @author Michal Hlavac
+ */
+final class HttpEndpoint {
+
+    private static final String LEMMATIZE_PATH = "/lemmatize/";
+    private static final String MODELS_PATH = "/models";
+    private static final String CONTENT_TYPE = "text/plain; charset=UTF-8";
+
+    private final LemmatizerServer server;
+    private final int maxRequestBytes;
+    private final HttpServer httpServer;
+
+
+    HttpEndpoint(LemmatizerServer server, int port, Executor executor, int maxRequestBytes) throws IOException {
+        this.server = server;
+        this.maxRequestBytes = maxRequestBytes;
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.httpServer.setExecutor(executor);
+        this.httpServer.createContext(LEMMATIZE_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleLemmatize(exchange);
+            }
+        });
+        this.httpServer.createContext(MODELS_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleModels(exchange);
+            }
+        });
+        this.httpServer.start();
+    }
+
+
+    int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+
+    void close() {
+        httpServer.stop(0);
+    }
+
+
+    private void handleLemmatize(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Method not allowed");
+                return;
+            }
+            String model = exchange.getRequestURI().getPath().substring(LEMMATIZE_PATH.length());
+            byte[] body = readBody(exchange);
+            if (body == null) {
+                send(exchange, 413, "Request larger than " + maxRequestBytes + " bytes");
+                return;
+            }
+            List<String> words = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                words.add(line);
+            }
+            CharSequence[] lemmas;
+            try {
+                lemmas = server.lemmatize(model, words.toArray(new CharSequence[words.size()]));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 404, e.getMessage());
+                return;
+            } catch (IOException e) {
+                send(exchange, 500, e.getMessage());
+                return;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (CharSequence lemma : lemmas) {
+                sb.append(lemma).append('\n');
+            }
+            send(exchange, 200, sb.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    /**
+     * Reads request body of at most {@link #maxRequestBytes} bytes.
+     *
+     * @return body or <code>null</code> if it's too large
+     */
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length.trim()) > maxRequestBytes) return null;
+            } catch (NumberFormatException e) {
+                // size is checked while body is read
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = exchange.getRequestBody();
+        byte[] buf = new byte[8192];
+        int read;
+        while ((read = in.read(buf)) >= 0) {
+            if (body.size() + read > maxRequestBytes) return null;
+            body.write(buf, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+
+    private void handleModels(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (String name : server.getModelNames()) {
+                sb.append(name).append('\n');
+            }
+            send(exchange, 200, sb.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.server;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Small lemmatization server for clients outside of JVM. Server listens on loopback interface only and
+ * provides two endpoints:
+ * <ul>
+ * <li>HTTP: <code>POST /lemmatize/{model}</code> with UTF-8 body containing one word per line, response
+ * contains one lemma per line. <code>GET /models</code> lists loaded models.</li>
+ * <li>Line protocol over plain socket: every request is one UTF-8 line <code>model\tword\tword...</code>,
+ * response is line <code>lemma\tlemma...</code> or line starting with <code>!</code> followed by error
+ * message.</li>
+ * </ul>
+ * Concurrent requests of the same model are grouped into batches and lemmatized by worker threads. HTTP
+ * requests are handled by pool of io threads. Every line protocol connection occupies one thread of separate
+ * bounded connection pool, so idle socket clients never delay HTTP requests. Connections over the limit are
+ * refused with error line and idle connections are closed after read timeout.
+ *
+ * @author Michal Hlavac
+ */
+public class LemmatizerServer {
+
+    private static final Logger log = LoggerFactory.getLogger(LemmatizerServer.class);
+
+    private final ServerSettings settings;
+    private final Map<String, Lemmatizer> models;
+    private final Map<String, MicroBatcher> batchers;
+    private ExecutorService workers;
+    private ExecutorService io;
+    private ExecutorService connections;
+    private HttpEndpoint httpEndpoint;
+    private SocketEndpoint socketEndpoint;
+    private boolean running;
+
+
+    public LemmatizerServer() {
+        this(new ServerSettings());
+    }
+
+
+    public LemmatizerServer(ServerSettings settings) {
+        this.settings = settings;
+        this.models = new LinkedHashMap<>();
+        this.batchers = new LinkedHashMap<>();
+    }
+
+
+    public synchronized void addModel(String name, Lemmatizer lemmatizer) {
+        if (running) throw new IllegalStateException("Models must be added before server is started");
+        models.put(name, lemmatizer);
+    }
+
+
+    public void addPrebuilt(String name) throws IOException {
+        addModel(name, LemmatizerFactory.getPrebuilt(name));
+    }
+
+
+    public void addModel(String name, File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            addModel(name, LemmatizerFactory.read(in));
+        }
+    }
+
+
+    public synchronized Set<String> getModelNames() {
+        return Collections.unmodifiableSet(models.keySet());
+    }
+
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        workers = Executors.newFixedThreadPool(settings.getWorkerThreads(), threadFactory("lemmagen-worker"));
+        io = Executors.newFixedThreadPool(settings.getIoThreads(), threadFactory("lemmagen-io"));
+        connections = new ThreadPoolExecutor(0, settings.getMaxConnections(), 60, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), threadFactory("lemmagen-connection"));
+        for (Map.Entry<String, Lemmatizer> model : models.entrySet()) {
+            MicroBatcher batcher = new MicroBatcher(model.getKey(), model.getValue(), workers, settings);
+            batcher.start();
+            batchers.put(model.getKey(), batcher);
+        }
+        running = true;
+        try {
+            if (settings.getHttpPort() != ServerSettings.DISABLED) {
+                httpEndpoint = new HttpEndpoint(this, settings.getHttpPort(), io, settings.getMaxRequestBytes());
+                log.info("HTTP endpoint listening on port " + httpEndpoint.getPort());
+            }
+            if (settings.getSocketPort() != ServerSettings.DISABLED) {
+                socketEndpoint = new SocketEndpoint(this, settings.getSocketPort(), connections,
+                    settings.getReadTimeoutMillis());
+                log.info("Line protocol endpoint listening on port " + socketEndpoint.getPort());
+            }
+        } catch (IOException e) {
+            stop();
+            throw e;
+        }
+    }
+
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        if (httpEndpoint != null) httpEndpoint.close();
+        if (socketEndpoint != null) socketEndpoint.close();
+        httpEndpoint = null;
+        socketEndpoint = null;
+        for (MicroBatcher batcher : batchers.values()) {
+            batcher.stop();
+        }
+        batchers.clear();
+        io.shutdownNow();
+        connections.shutdownNow();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+
+    /**
+     * @return port of HTTP endpoint or {@link ServerSettings#DISABLED}
+     */
+    public synchronized int getHttpPort() {
+        return httpEndpoint == null ? ServerSettings.DISABLED : httpEndpoint.getPort();
+    }
+
+
+    /**
+     * @return port of line protocol endpoint or {@link ServerSettings#DISABLED}
+     */
+    public synchronized int getSocketPort() {
+        return socketEndpoint == null ? ServerSettings.DISABLED : socketEndpoint.getPort();
+    }
+
+
+    /**
+     * Lemmatizes words by batching lemmatizer of given model. Calling thread is blocked until the batch
+     * with words is processed, at most for {@link ServerSettings#getRequestTimeoutMillis()}.
+     *
+     * @param model name of the model
+     * @param words words
+     * @return lemmas
+     * @throws IllegalArgumentException if model is unknown
+     * @throws IOException if lemmatization fails or times out
+     */
+    CharSequence[] lemmatize(String model, CharSequence[] words) throws IOException {
+        MicroBatcher batcher;
+        synchronized (this) {
+            batcher = batchers.get(model);
+        }
+        if (batcher == null) throw new IllegalArgumentException("Unknown model " + model);
+        if (words.length == 0) return words;
+        try {
+            Future<CharSequence[]> lemmas = batcher.submit(words);
+            int timeout = settings.getRequestTimeoutMillis();
+            return timeout > 0 ? lemmas.get(timeout, TimeUnit.MILLISECONDS) : lemmas.get();
+        } catch (TimeoutException e) {
+            throw new IOException("Lemmatization timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Lemmatization failed", e.getCause());
+        }
+    }
+
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+
+    /**
+     * Starts server from command line.
+     *
+     * @param args [-http port] [-socket port] [-workers n] [-io n] [-connections n] [-timeout millis]
+     * [-request bytes] [-batch words] [-delay micros] name[=file.lem]...
+     * @throws IOException if model cannot be loaded or server cannot be started
+     */
+    public static void main(String[] args) throws IOException {
+        ServerSettings settings = new ServerSettings();
+        settings.setHttpPort(8080);
+        settings.setSocketPort(8081);
+        LemmatizerServer server = new LemmatizerServer(settings);
+        for (int idx = 0; idx < args.length; idx++) {
+            String arg = args[idx];
+            if (arg.startsWith("-") && idx + 1 < args.length) {
+                long value = Long.parseLong(args[++idx]);
+                switch (arg) {
+                case "-http":
+                    settings.setHttpPort((int) value);
+                    break;
+                case "-socket":
+                    settings.setSocketPort((int) value);
+                    break;
+                case "-workers":
+                    settings.setWorkerThreads((int) value);
+                    break;
+                case "-io":
+                    settings.setIoThreads((int) value);
+                    break;
+                case "-connections":
+                    settings.setMaxConnections((int) value);
+                    break;
+                case "-timeout":
+                    settings.setReadTimeoutMillis((int) value);
+                    break;
+                case "-request":
+                    settings.setMaxRequestBytes((int) value);
+                    break;
+                case "-batch":
+                    settings.setMaxBatchWords((int) value);
+                    break;
+                case "-delay":
+                    settings.setMaxBatchDelayMicros(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } else {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    server.addPrebuilt(arg);
+                } else {
+                    server.addModel(arg.substring(0, eq), new File(arg.substring(eq + 1)));
+                }
+            }
+        }
+        if (server.getModelNames().isEmpty()) {
+            System.err.println("Usage: LemmatizerServer [-http port] [-socket port] [-workers n] [-io n] "
+                + "[-connections n] [-timeout millis] [-request bytes] [-batch words] [-delay micros] "
+                + "name[=file.lem]...");
+            System.exit(1);
+        }
+        server.start();
+
+        final LemmatizerServer running = server;
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                running.stop();
+            }
+        });
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
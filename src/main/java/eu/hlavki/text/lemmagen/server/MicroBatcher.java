@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.server;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups concurrent requests of one lemmatizer into batches processed by bulk lemmatization. Dispatcher
+ * thread takes the first waiting request and waits at most configured delay for other requests until batch
+ * reaches configured number of words.
+ *
+ * @author Michal Hlavac
+ */
+final class MicroBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(MicroBatcher.class);
+
+    private final Lemmatizer lemmatizer;
+    private final Executor workers;
+    private final BlockingQueue<Request> queue;
+    private final int maxBatchWords;
+    private final long maxDelayNanos;
+    private final Thread dispatcher;
+    private volatile boolean running;
+
+
+    MicroBatcher(String name, Lemmatizer lemmatizer, Executor workers, ServerSettings settings) {
+        this.lemmatizer = lemmatizer;
+        this.workers = workers;
+        this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        this.maxBatchWords = settings.getMaxBatchWords();
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(settings.getMaxBatchDelayMicros());
+        this.dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "lemmagen-batcher-" + name);
+        this.dispatcher.setDaemon(true);
+    }
+
+
+    void start() {
+        running = true;
+        dispatcher.start();
+    }
+
+
+    void stop() {
+        running = false;
+        dispatcher.interrupt();
+        failPending();
+    }
+
+
+    private void failPending() {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new IllegalStateException("Server stopped"));
+        }
+    }
+
+
+    private static void fail(List<Request> batch, Throwable error) {
+        for (Request request : batch) {
+            request.future.completeExceptionally(error);
+        }
+    }
+
+
+    /**
+     * Submits words to be lemmatized. Blocks if too many requests are waiting.
+     *
+     * @param words words
+     * @return lemmas in the same order as words
+     */
+    CompletableFuture<CharSequence[]> submit(CharSequence[] words) throws InterruptedException {
+        Request request = new Request(words);
+        if (!running) {
+            request.future.completeExceptionally(new IllegalStateException("Server stopped"));
+        } else {
+            queue.put(request);
+            if (!running) failPending();
+        }
+        return request.future;
+    }
+
+
+    /**
+     * Dispatches batches until batcher is stopped. Requests already taken from the queue are failed when
+     * dispatcher is interrupted, so no caller waits for a batch which is never submitted.
+     */
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>();
+        try {
+            while (running) {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                int words = first.words.length;
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (words < maxBatchWords) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                    words += next.words.length;
+                }
+                submitBatch(batch, words);
+                batch = new ArrayList<>();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            fail(batch, new IllegalStateException("Server stopped"));
+            failPending();
+        }
+    }
+
+
+    private void submitBatch(final List<Request> batch, final int words) {
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    process(batch, words);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(batch, e);
+        }
+    }
+
+
+    /**
+     * Lemmatizes batch. Batch mixes requests of unrelated clients, so if it fails, every request is
+     * lemmatized alone and only the failing ones get the error.
+     */
+    private void process(List<Request> batch, int words) {
+        try {
+            CharSequence[] allWords = new CharSequence[words];
+            CharSequence[] allLemmas = new CharSequence[words];
+            int pos = 0;
+            for (Request request : batch) {
+                System.arraycopy(request.words, 0, allWords, pos, request.words.length);
+                pos += request.words.length;
+            }
+            lemmatizer.lemmatize(allWords, allLemmas, 0, words);
+            pos = 0;
+            for (Request request : batch) {
+                CharSequence[] lemmas = new CharSequence[request.words.length];
+                System.arraycopy(allLemmas, pos, lemmas, 0, lemmas.length);
+                pos += lemmas.length;
+                request.future.complete(lemmas);
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                log.warn("Lemmatization of request failed", e);
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.debug("Lemmatization of batch failed, requests are lemmatized separately", e);
+            for (Request request : batch) {
+                process(Collections.singletonList(request), request.words.length);
+            }
+        }
+    }
+
+    private static final class Request {
+
+        private final CharSequence[] words;
+        private final CompletableFuture<CharSequence[]> future;
+
+
+        Request(CharSequence[] words) {
+            this.words = words;
+            this.future = new CompletableFuture<>();
+        }
+    }
+}
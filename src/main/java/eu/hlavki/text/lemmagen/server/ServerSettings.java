@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.server;
+
+/**
+ * Settings of {@link LemmatizerServer}.
+ *
+ * @author Michal Hlavac
+ */
+public class ServerSettings {
+
+    public static final int DISABLED = -1;
+
+    /**
+     * Port of HTTP endpoint. Zero means any free port, {@link #DISABLED} disables endpoint.
+     */
+    private int httpPort;
+    /**
+     * Port of line protocol endpoint. Zero means any free port, {@link #DISABLED} disables endpoint.
+     */
+    private int socketPort;
+    /**
+     * Number of threads lemmatizing batches.
+     */
+    private int workerThreads;
+    /**
+     * Number of threads handling HTTP requests.
+     */
+    private int ioThreads;
+    /**
+     * Maximal number of line protocol connections. Every connection is served by its own thread, further
+     * connections are refused.
+     */
+    private int maxConnections;
+    /**
+     * Line protocol connection idle for this number of milliseconds is closed. Zero means no timeout.
+     */
+    private int readTimeoutMillis;
+    /**
+     * Maximal size of HTTP request body in bytes. Larger requests are answered by status 413.
+     */
+    private int maxRequestBytes;
+    /**
+     * Maximal time in milliseconds a request waits for its lemmas. Zero means no timeout.
+     */
+    private int requestTimeoutMillis;
+    /**
+     * Batch is dispatched when it contains at least this number of words.
+     */
+    private int maxBatchWords;
+    /**
+     * Maximal time in microseconds the first request of the batch waits for other requests.
+     */
+    private long maxBatchDelayMicros;
+    /**
+     * Maximal number of requests waiting for batching. Producers are blocked when queue is full.
+     */
+    private int queueCapacity;
+
+
+    public ServerSettings() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        this.httpPort = 0;
+        this.socketPort = 0;
+        this.workerThreads = cpus;
+        this.ioThreads = 2 * cpus;
+        this.maxConnections = 64;
+        this.readTimeoutMillis = 60000;
+        this.maxRequestBytes = 1 << 20;
+        this.requestTimeoutMillis = 30000;
+        this.maxBatchWords = 1024;
+        this.maxBatchDelayMicros = 200;
+        this.queueCapacity = 10000;
+    }
+
+
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+
+    public void setHttpPort(int httpPort) {
+        this.httpPort = httpPort;
+    }
+
+
+    public int getSocketPort() {
+        return socketPort;
+    }
+
+
+    public void setSocketPort(int socketPort) {
+        this.socketPort = socketPort;
+    }
+
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+
+    public int getMaxRequestBytes() {
+        return maxRequestBytes;
+    }
+
+
+    public void setMaxRequestBytes(int maxRequestBytes) {
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+
+    public void setRequestTimeoutMillis(int requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+
+    public int getMaxBatchWords() {
+        return maxBatchWords;
+    }
+
+
+    public void setMaxBatchWords(int maxBatchWords) {
+        this.maxBatchWords = maxBatchWords;
+    }
+
+
+    public long getMaxBatchDelayMicros() {
+        return maxBatchDelayMicros;
+    }
+
+
+    public void setMaxBatchDelayMicros(long maxBatchDelayMicros) {
+        this.maxBatchDelayMicros = maxBatchDelayMicros;
+    }
+
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
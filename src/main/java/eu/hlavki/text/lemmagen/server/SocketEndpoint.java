@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Line protocol endpoint of {@link LemmatizerServer}. Every connection is served by one thread of bounded
+ * connection pool, which reads request lines <code>model\tword\tword...</code> and writes response lines.
+ * Connection is refused with error line when pool is exhausted and closed when it's idle longer than read
+ * timeout.
+ *
+ * @author Michal Hlavac
+ */
+final class SocketEndpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(SocketEndpoint.class);
+    static final char SEPARATOR = '\t';
+    static final char ERROR = '!';
+
+    private final LemmatizerServer server;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final int readTimeoutMillis;
+    private final Thread acceptor;
+    private final Set<Socket> connections;
+
+
+    SocketEndpoint(LemmatizerServer server, int port, ExecutorService executor, int readTimeoutMillis)
+        throws IOException {
+        this.server = server;
+        this.executor = executor;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "lemmagen-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+
+    void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.warn("Can't close server socket", e);
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Can't close connection", e);
+            }
+        }
+    }
+
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(readTimeoutMillis);
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    refuse(socket);
+                }
+            } catch (SocketException e) {
+                // server socket closed
+            } catch (IOException e) {
+                log.warn("Can't accept connection", e);
+            }
+        }
+    }
+
+
+    private static void refuse(Socket socket) {
+        try (Socket s = socket) {
+            s.getOutputStream().write((ERROR + "Too many connections\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.debug("Can't refuse connection", e);
+        }
+    }
+
+
+    private void serve(Socket socket) {
+        connections.add(socket);
+        try (Socket s = socket) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(),
+                StandardCharsets.UTF_8));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(),
+                StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writer.write(process(line));
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (SocketTimeoutException e) {
+            log.debug("Idle connection closed");
+        } catch (IOException e) {
+            log.debug("Connection closed", e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+
+    private String process(String line) {
+        int sep = line.indexOf(SEPARATOR);
+        String model = sep < 0 ? line : line.substring(0, sep);
+        CharSequence[] words = sep < 0 ? new CharSequence[0]
+            : line.substring(sep + 1).split(String.valueOf(SEPARATOR), -1);
+        try {
+            CharSequence[] lemmas = server.lemmatize(model, words);
+            StringBuilder sb = new StringBuilder();
+            for (int idx = 0; idx < lemmas.length; idx++) {
+                if (idx > 0) sb.append(SEPARATOR);
+                sb.append(lemmas[idx]);
+            }
+            return sb.toString();
+        } catch (IllegalArgumentException | IOException e) {
+            return ERROR + String.valueOf(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.Utf8Lemmatizer;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lemmatizes large UTF-8 files in parallel. Input file is memory mapped and split into chunks ending at line
+ * boundaries, chunks are lemmatized by worker threads and written to output in input order. Number of chunks
+ * waiting for output is bounded, so memory use doesn't depend on file size.
+ * <p>
+ * Two input modes are supported:
+ * <ul>
+ * <li>one token per line (column 0): every line is replaced by its lemma, empty lines are kept</li>
+ * <li>TSV: token is read from given column (counted from 1) and the lemma is appended as new last column</li>
+ * </ul>
+ * Line terminators are written as <code>\n</code>. Trained {@link DefaultLemmatizer} models without front
+ * lemmatizer are applied directly on bytes by {@link Utf8Lemmatizer}, other lemmatizers on decoded tokens.
+ *
+ * @author Michal Hlavac
+ */
+public class BulkLemmatizer {
+
+    public static final int TOKEN_PER_LINE = 0;
+    private static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final Lemmatizer lemmatizer;
+    private final Utf8Lemmatizer utf8;
+    private int threads;
+    private int chunkSize;
+    private int maxPendingChunks;
+    private int column;
+
+
+    public BulkLemmatizer(Lemmatizer lemmatizer) {
+        this.lemmatizer = lemmatizer;
+        this.utf8 = utf8(lemmatizer);
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.maxPendingChunks = -1;
+        this.column = TOKEN_PER_LINE;
+    }
+
+
+    private static Utf8Lemmatizer utf8(Lemmatizer lemmatizer) {
+        if (!(lemmatizer instanceof DefaultLemmatizer)) return null;
+        DefaultLemmatizer lm = (DefaultLemmatizer) lemmatizer;
+        if (lm.getSettings().isBuildFrontLemmatizer() || lm.getMetrics() != null) return null;
+        return new Utf8Lemmatizer(lm);
+    }
+
+
+    public int getThreads() {
+        return threads;
+    }
+
+
+    public void setThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Number of threads must be positive");
+        this.threads = threads;
+    }
+
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+
+    /**
+     * @param chunkSize nominal size of chunk in bytes, chunk is shortened to the last line terminator
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive");
+        this.chunkSize = chunkSize;
+    }
+
+
+    /**
+     * @return maximal number of chunks being lemmatized or waiting for output, twice the number of threads
+     * by default
+     */
+    public int getMaxPendingChunks() {
+        return maxPendingChunks < 0 ? 2 * threads : maxPendingChunks;
+    }
+
+
+    public void setMaxPendingChunks(int maxPendingChunks) {
+        if (maxPendingChunks < 1) throw new IllegalArgumentException("Number of chunks must be positive");
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+
+    public int getColumn() {
+        return column;
+    }
+
+
+    /**
+     * @param column column of TSV input with tokens counted from 1 or {@link #TOKEN_PER_LINE}
+     */
+    public void setColumn(int column) {
+        if (column < 0) throw new IllegalArgumentException("Column must not be negative");
+        this.column = column;
+    }
+
+
+    /**
+     * Lemmatizes all input files into one output stream.
+     *
+     * @param inputs input files
+     * @param out output stream, it's not closed
+     * @return number of lemmatized tokens
+     * @throws IOException if reading or writing fails
+     */
+    public long process(List<File> inputs, OutputStream out) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long tokens = 0;
+            for (File input : inputs) {
+                tokens += process(input, out, executor);
+            }
+            out.flush();
+            return tokens;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    private long process(File input, OutputStream out, ExecutorService executor) throws IOException {
+        Deque<Future<Chunk>> pending = new ArrayDeque<>();
+        long tokens = 0;
+        try (RandomAccessFile file = new RandomAccessFile(input, "r");
+            FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            long pos = 0;
+            while (pos < size) {
+                final ByteBuffer chunk = nextChunk(channel, pos, size);
+                pos += chunk.remaining();
+                if (pending.size() >= getMaxPendingChunks()) tokens += write(pending.poll(), out);
+                pending.add(executor.submit(new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() {
+                        return lemmatize(chunk);
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                tokens += write(pending.poll(), out);
+            }
+        } finally {
+            for (Future<Chunk> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return tokens;
+    }
+
+
+    /**
+     * Maps chunk starting at given position. Mapped window grows while it doesn't contain line terminator.
+     */
+    private ByteBuffer nextChunk(FileChannel channel, long pos, long size) throws IOException {
+        long window = chunkSize;
+        while (true) {
+            long length = Math.min(Math.min(window, size - pos), Integer.MAX_VALUE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+            if (pos + length == size) return buffer;
+            for (int idx = (int) length - 1; idx >= 0; idx--) {
+                if (buffer.get(idx) == '\n') {
+                    buffer.limit(idx + 1);
+                    return buffer;
+                }
+            }
+            if (length == Integer.MAX_VALUE) throw new IOException("Line is too long at position " + pos);
+            window *= 2;
+        }
+    }
+
+
+    private static long write(Future<Chunk> future, OutputStream out) throws IOException {
+        try {
+            Chunk chunk = future.get();
+            out.write(chunk.bytes, 0, chunk.length);
+            return chunk.tokens;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Lemmatization failed", e.getCause());
+        }
+    }
+
+
+    private Chunk lemmatize(ByteBuffer buffer) {
+        byte[] in = new byte[buffer.remaining()];
+        buffer.get(in);
+        Chunk chunk = new Chunk(in.length + in.length / 2 + 16);
+        int start = 0;
+        while (start < in.length) {
+            int end = start;
+            while (end < in.length && in[end] != '\n') {
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && in[end - 1] == '\r') end--;
+            lemmatizeLine(in, start, end, chunk);
+            chunk.append((byte) '\n');
+            start = next;
+        }
+        return chunk;
+    }
+
+
+    private void lemmatizeLine(byte[] in, int start, int end, Chunk chunk) {
+        if (column == TOKEN_PER_LINE) {
+            if (start < end) lemmatizeToken(in, start, end, chunk);
+            return;
+        }
+        chunk.append(in, start, end - start);
+        chunk.append((byte) '\t');
+        int tokenStart = start;
+        for (int col = 1; col < column; col++) {
+            while (tokenStart < end && in[tokenStart] != '\t') {
+                tokenStart++;
+            }
+            if (tokenStart == end) return;
+            tokenStart++;
+        }
+        int tokenEnd = tokenStart;
+        while (tokenEnd < end && in[tokenEnd] != '\t') {
+            tokenEnd++;
+        }
+        if (tokenStart < tokenEnd) lemmatizeToken(in, tokenStart, tokenEnd, chunk);
+    }
+
+
+    private void lemmatizeToken(byte[] in, int start, int end, Chunk chunk) {
+        chunk.tokens++;
+        if (utf8 != null) {
+            chunk.ensure(utf8.getMaxLemmaLength(end - start));
+            chunk.length += utf8.lemmatize(in, start, end - start, chunk.bytes, chunk.length);
+        } else {
+            String word = new String(in, start, end - start, StandardCharsets.UTF_8);
+            byte[] lemma = lemmatizer.lemmatize(word).toString().getBytes(StandardCharsets.UTF_8);
+            chunk.append(lemma, 0, lemma.length);
+        }
+    }
+
+    /**
+     * Lemmatized chunk waiting for output.
+     */
+    private static final class Chunk {
+
+        private byte[] bytes;
+        private int length;
+        private long tokens;
+
+
+        Chunk(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+
+        void ensure(int needed) {
+            if (length + needed > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + needed));
+            }
+        }
+
+
+        void append(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+        }
+
+
+        void append(byte[] src, int offset, int len) {
+            ensure(len);
+            System.arraycopy(src, offset, bytes, length, len);
+            length += len;
+        }
+    }
+
+
+    /**
+     * Lemmatizes files from command line and reports throughput to standard error.
+     *
+     * @param args [-threads N] [-chunk bytes] [-column N] [-out file] model input...
+     * @throws IOException if model or files cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunk = DEFAULT_CHUNK_SIZE;
+        int column = TOKEN_PER_LINE;
+        String output = null;
+        List<String> params = new ArrayList<>();
+        for (int idx = 0; idx < args.length; idx++) {
+            if ("-threads".equals(args[idx]) && idx + 1 < args.length) {
+                threads = Integer.parseInt(args[++idx]);
+            } else if ("-chunk".equals(args[idx]) && idx + 1 < args.length) {
+                chunk = Integer.parseInt(args[++idx]);
+            } else if ("-column".equals(args[idx]) && idx + 1 < args.length) {
+                column = Integer.parseInt(args[++idx]);
+            } else if ("-out".equals(args[idx]) && idx + 1 < args.length) {
+                output = args[++idx];
+            } else {
+                params.add(args[idx]);
+            }
+        }
+        if (params.size() < 2) {
+            System.err.println("Usage: BulkLemmatizer [-threads N] [-chunk bytes] [-column N] [-out file] "
+                + "<file.lem | prebuilt name> input...");
+            System.exit(1);
+        }
+
+        BulkLemmatizer bulk = new BulkLemmatizer(ModelAnalyzer.load(params.get(0)));
+        bulk.setThreads(threads);
+        bulk.setChunkSize(chunk);
+        bulk.setColumn(column);
+        List<File> inputs = new ArrayList<>();
+        for (String input : params.subList(1, params.size())) {
+            inputs.add(new File(input));
+        }
+
+        long start = System.nanoTime();
+        long tokens;
+        OutputStream out = output == null ? System.out : new FileOutputStream(output);
+        try (OutputStream buffered = new BufferedOutputStream(out, 1 << 16)) {
+            tokens = bulk.process(inputs, buffered);
+        }
+        long time = System.nanoTime() - start;
+        System.err.println(String.format("%d tokens in %d ms, %.0f tokens/s using %d threads", tokens,
+            time / 1000000, tokens * 1e9 / Math.max(1, time), threads));
+    }
+}
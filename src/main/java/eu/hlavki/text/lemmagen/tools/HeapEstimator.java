@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+/**
+ * Shallow sizes of objects used by lemmatizer models. Sizes assume 64-bit HotSpot JVM with compressed oops
+ * (12 bytes object header, 16 bytes array header, 4 bytes reference, 8 bytes alignment).
+ *
+ * @author Michal Hlavac
+ */
+final class HeapEstimator {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REF = 4;
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "1.8")
+        .startsWith("1.");
+
+    /** LemmaTreeNode: 9 references, 3 ints, 1 double, 1 boolean. */
+    static final long TREE_NODE = align(OBJECT_HEADER + 9 * REF + 3 * 4 + 8 + 1);
+    /** LemmaRule: 4 references, 2 ints. */
+    static final long RULE = align(OBJECT_HEADER + 4 * REF + 2 * 4);
+    /** WeightedRule: 1 reference, 1 double. */
+    static final long WEIGHTED_RULE = align(OBJECT_HEADER + REF + 8);
+    /** LemmaExample: 10 references, 1 double, 1 int. */
+    static final long EXAMPLE = align(OBJECT_HEADER + 10 * REF + 8 + 4);
+    /** java.util.HashMap without table. */
+    static final long HASH_MAP = align(OBJECT_HEADER + 4 * REF + 3 * 4 + 4);
+    /** java.util.HashMap.Node. */
+    static final long HASH_MAP_NODE = align(OBJECT_HEADER + 3 * REF + 4);
+    /** Sorted key of child of LemmaTreeNode: 1 char and 1 reference, arrays are not aligned per entry. */
+    static final long SUB_NODE_KEY = 2 + REF;
+    /** java.lang.Character which is not cached. */
+    static final long CHARACTER = align(OBJECT_HEADER + 2);
+    /** java.util.ArrayList without array. */
+    static final long ARRAY_LIST = align(OBJECT_HEADER + REF + 2 * 4);
+
+
+    private HeapEstimator() {
+    }
+
+
+    static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+
+    static long referenceArray(int length) {
+        return align(ARRAY_HEADER + (long) length * REF);
+    }
+
+
+    static long intArray(int length) {
+        return align(ARRAY_HEADER + (long) length * 4);
+    }
+
+
+    static long charArray(int length) {
+        return align(ARRAY_HEADER + (long) length * 2);
+    }
+
+
+    static long string(String str) {
+        if (str == null) return 0;
+        long header = align(OBJECT_HEADER + REF + 4 + (COMPACT_STRINGS ? 2 : 0));
+        int charSize = 2;
+        if (COMPACT_STRINGS) {
+            charSize = 1;
+            for (int idx = 0; idx < str.length(); idx++) {
+                if (str.charAt(idx) > 0xFF) {
+                    charSize = 2;
+                    break;
+                }
+            }
+        }
+        return header + align(ARRAY_HEADER + (long) str.length() * charSize);
+    }
+
+
+    /**
+     * Size of the {@link java.util.HashMap} with given number of entries without keys and values.
+     *
+     * @param size number of entries
+     * @return estimated size
+     */
+    static long hashMap(int size) {
+        int capacity = 16;
+        while (size > capacity * 3 / 4) {
+            capacity <<= 1;
+        }
+        return HASH_MAP + referenceArray(capacity) + (long) size * HASH_MAP_NODE;
+    }
+
+
+    static long character(char ch) {
+        return ch < 128 ? 0 : CHARACTER;
+    }
+}
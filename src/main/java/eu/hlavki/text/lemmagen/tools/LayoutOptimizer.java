@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmaTreeNode;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders tree nodes by frequency of their use. Children of every node are ordered by number of visits
+ * recorded in {@link WordProfile}, so when optimized model is saved, nodes are written depth first with the
+ * hottest child first. Nodes are allocated in the same order when model is read, hence the most visited
+ * paths occupy contiguous memory. Java gives no control over object placement, garbage collector may move
+ * nodes later, but copying collectors usually keep objects reachable from each other close together.
+ * <p>
+ * Layout doesn't change lemmatization results and model format.
+ *
+ * @author Michal Hlavac
+ */
+public final class LayoutOptimizer {
+
+    private LayoutOptimizer() {
+    }
+
+
+    /**
+     * Orders children of all nodes of the lemmatizer by number of visits, unvisited children are ordered by
+     * character.
+     *
+     * @param lemmatizer lemmatizer
+     * @param profile word frequencies
+     * @return number of visits of nodes
+     */
+    public static Map<LemmaTreeNode, Long> optimize(DefaultLemmatizer lemmatizer, WordProfile profile) {
+        final Map<LemmaTreeNode, Long> visits = profile.countVisits(lemmatizer);
+        Comparator<Map.Entry<Character, LemmaTreeNode>> order
+            = new Comparator<Map.Entry<Character, LemmaTreeNode>>() {
+            @Override
+            public int compare(Map.Entry<Character, LemmaTreeNode> e1, Map.Entry<Character, LemmaTreeNode> e2) {
+                int result = Long.compare(visits(e2.getValue()), visits(e1.getValue()));
+                return result != 0 ? result : e1.getKey().compareTo(e2.getKey());
+            }
+
+
+            private long visits(LemmaTreeNode node) {
+                Long count = visits.get(node);
+                return count == null ? 0 : count;
+            }
+        };
+        order(lemmatizer.getRootNode(), order);
+        if (lemmatizer.getSettings().isBuildFrontLemmatizer()) order(lemmatizer.getRootNodeFront(), order);
+        return visits;
+    }
+
+
+    private static void order(LemmaTreeNode root, Comparator<Map.Entry<Character, LemmaTreeNode>> order) {
+        Deque<LemmaTreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            LemmaTreeNode node = stack.pop();
+            node.orderSubNodes(order);
+            for (LemmaTreeNode child : node.getSubNodes().values()) {
+                stack.push(child);
+            }
+        }
+    }
+
+
+    /**
+     * Optimizes layout of model from command line.
+     *
+     * @param args [-corpus] profile model output, profile contains word and count separated by tab on every
+     * line or plain text if -corpus is used, model is file or name of prebuilt model
+     * @throws IOException if files cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        boolean corpus = false;
+        List<String> params = new ArrayList<>();
+        for (String arg : args) {
+            if ("-corpus".equals(arg)) {
+                corpus = true;
+            } else {
+                params.add(arg);
+            }
+        }
+        if (params.size() != 3) {
+            System.err.println("Usage: LayoutOptimizer [-corpus] <profile> <file.lem | prebuilt name> <output.lem>");
+            System.exit(1);
+        }
+
+        WordProfile profile;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(params.get(0)), StandardCharsets.UTF_8))) {
+            profile = corpus ? WordProfile.readCorpus(reader) : WordProfile.read(reader);
+        }
+        DefaultLemmatizer lemmatizer = ModelAnalyzer.load(params.get(1));
+        Map<LemmaTreeNode, Long> visits = optimize(lemmatizer, profile);
+        LemmatizerFactory.saveToFile(lemmatizer, new File(params.get(2)));
+        System.out.println("Profile of " + profile.size() + " words visited " + visits.size() + " nodes");
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmaRule;
+import eu.hlavki.text.lemmagen.impl.LemmaTreeNode;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Generates Java source of {@link Lemmatizer} from built model. Every inner tree node becomes static method
+ * with <code>switch</code> on the next character of the word, leaf nodes and rules become constant suffix
+ * operations. Methods are distributed to nested classes, so big models don't exceed class file limits.
+ * Generated lemmatizer returns the same lemmas as the model, but it has no load time and doesn't depend on
+ * model files.
+ *
+ * @author Michal Hlavac
+ */
+public final class LemmatizerCodeGenerator {
+
+    private static final String INDENT = "    ";
+
+    private final String packageName;
+    private final String simpleName;
+    /**
+     * Maximal number of node methods in one nested class.
+     */
+    private int methodsPerClass;
+
+
+    /**
+     * @param className fully qualified name of generated class
+     */
+    public LemmatizerCodeGenerator(String className) {
+        int dot = className.lastIndexOf('.');
+        this.packageName = dot < 0 ? null : className.substring(0, dot);
+        this.simpleName = className.substring(dot + 1);
+        this.methodsPerClass = 256;
+    }
+
+
+    public int getMethodsPerClass() {
+        return methodsPerClass;
+    }
+
+
+    public void setMethodsPerClass(int methodsPerClass) {
+        if (methodsPerClass < 1) throw new IllegalArgumentException("At least one method per class required");
+        this.methodsPerClass = methodsPerClass;
+    }
+
+
+    /**
+     * Writes source of generated class into the package directory under source root.
+     *
+     * @param lemmatizer lemmatizer, model is built if needed
+     * @param sourceRoot root directory of sources
+     * @return generated file
+     * @throws IOException if file cannot be written
+     */
+    public File generate(DefaultLemmatizer lemmatizer, File sourceRoot) throws IOException {
+        File dir = packageName == null ? sourceRoot
+            : new File(sourceRoot, packageName.replace('.', File.separatorChar));
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can't create directory " + dir);
+        File file = new File(dir, simpleName + ".java");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            generate(lemmatizer, out);
+        }
+        return file;
+    }
+
+
+    /**
+     * Writes source of generated class.
+     *
+     * @param lemmatizer lemmatizer, model is built if needed
+     * @param out output
+     * @throws IOException if output fails
+     */
+    public void generate(DefaultLemmatizer lemmatizer, Appendable out) throws IOException {
+        boolean front = lemmatizer.getSettings().isBuildFrontLemmatizer();
+        List<List<LemmaTreeNode>> rearParts = parts(lemmatizer.getRootNode());
+        List<List<LemmaTreeNode>> frontParts = front ? parts(lemmatizer.getRootNodeFront())
+            : new ArrayList<List<LemmaTreeNode>>();
+
+        if (packageName != null) out.append("package ").append(packageName).append(";\n\n");
+        out.append("/**\n");
+        out.append(" * Lemmatizer generated by ").append(getClass().getName()).append(".\n");
+        out.append(" */\n");
+        out.append("public final class ").append(simpleName).append(" implements ")
+            .append(Lemmatizer.class.getName()).append(" {\n\n");
+
+        out.append(INDENT).append("@Override\n");
+        out.append(INDENT).append("public CharSequence lemmatize(CharSequence word) {\n");
+        if (front) {
+            out.append(INDENT).append(INDENT)
+                .append("String lemmaFront = F0.n0(new StringBuilder(word).reverse(), word.length());\n");
+            out.append(INDENT).append(INDENT)
+                .append("String wordRear = new StringBuilder(lemmaFront).reverse().toString();\n");
+            out.append(INDENT).append(INDENT).append("return R0.n0(wordRear, wordRear.length());\n");
+        } else {
+            out.append(INDENT).append(INDENT).append("return R0.n0(word, word.length());\n");
+        }
+        out.append(INDENT).append("}\n\n\n");
+
+        out.append(INDENT).append("static String apply(CharSequence w, int len, int from, String to) {\n");
+        out.append(INDENT).append(INDENT)
+            .append("return new StringBuilder(len - from + to.length()).append(w, 0, len - from).append(to)")
+            .append(".toString();\n");
+        out.append(INDENT).append("}\n");
+
+        writeParts(rearParts, "R", out);
+        writeParts(frontParts, "F", out);
+        out.append("}\n");
+    }
+
+
+    /**
+     * Distributes inner nodes of the tree to nested classes in breadth first order.
+     */
+    private List<List<LemmaTreeNode>> parts(LemmaTreeNode root) {
+        List<LemmaTreeNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int idx = 0; idx < nodes.size(); idx++) {
+            for (LemmaTreeNode sub : new TreeMap<>(nodes.get(idx).getSubNodes()).values()) {
+                if (isInner(sub)) nodes.add(sub);
+            }
+        }
+        List<List<LemmaTreeNode>> parts = new ArrayList<>();
+        for (int idx = 0; idx < nodes.size(); idx += methodsPerClass) {
+            parts.add(nodes.subList(idx, Math.min(nodes.size(), idx + methodsPerClass)));
+        }
+        return parts;
+    }
+
+
+    private void writeParts(List<List<LemmaTreeNode>> parts, String prefix, Appendable out) throws IOException {
+        Map<LemmaTreeNode, String> methods = new IdentityHashMap<>();
+        int id = 0;
+        for (int part = 0; part < parts.size(); part++) {
+            for (LemmaTreeNode node : parts.get(part)) {
+                methods.put(node, prefix + part + ".n" + id++);
+            }
+        }
+        for (int part = 0; part < parts.size(); part++) {
+            out.append("\n\n").append(INDENT).append("static final class ").append(prefix)
+                .append(String.valueOf(part)).append(" {\n");
+            for (LemmaTreeNode node : parts.get(part)) {
+                String method = methods.get(node);
+                out.append('\n').append(INDENT).append(INDENT).append("static String ")
+                    .append(method.substring(method.indexOf('.') + 1))
+                    .append("(CharSequence w, int len) {\n");
+                writeNode(node, methods, out);
+                out.append(INDENT).append(INDENT).append("}\n");
+            }
+            out.append(INDENT).append("}\n");
+        }
+    }
+
+
+    /**
+     * Writes body of node method. It follows {@link LemmaTreeNode#findNode(CharSequence)}: character at
+     * position given by node similarity selects sub node, which is entered only if its condition is
+     * satisfied. Otherwise the best rule of the node is applied.
+     */
+    private void writeNode(LemmaTreeNode node, Map<LemmaTreeNode, String> methods, Appendable out)
+        throws IOException {
+        String indent = INDENT + INDENT + INDENT;
+        int similarity = node.getSimilarity();
+        out.append(indent).append("if (len >= ").append(String.valueOf(similarity)).append(") {\n");
+        out.append(indent).append(INDENT).append("char ch = len > ").append(String.valueOf(similarity))
+            .append(" ? w.charAt(len - ").append(String.valueOf(similarity + 1)).append(") : '\\0';\n");
+        out.append(indent).append(INDENT).append("switch (ch) {\n");
+        for (Map.Entry<Character, LemmaTreeNode> entry : new TreeMap<>(node.getSubNodes()).entrySet()) {
+            LemmaTreeNode sub = entry.getValue();
+            out.append(indent).append(INDENT).append("case ").append(charLiteral(entry.getKey())).append(":\n");
+            out.append(indent).append(INDENT).append(INDENT).append("if (").append(condition(node, sub))
+                .append(") return ");
+            if (isInner(sub)) {
+                out.append(methods.get(sub)).append("(w, len)");
+            } else {
+                out.append(rule(sub.getBestRule()));
+            }
+            out.append(";\n");
+            out.append(indent).append(INDENT).append(INDENT).append("break;\n");
+        }
+        out.append(indent).append(INDENT).append("}\n");
+        out.append(indent).append("}\n");
+        out.append(indent).append("return ").append(rule(node.getBestRule())).append(";\n");
+    }
+
+
+    /**
+     * Expression equivalent to {@link LemmaTreeNode#conditionSatisfied(CharSequence)}.
+     */
+    private static String condition(LemmaTreeNode parent, LemmaTreeNode node) {
+        String condition = node.getCondition();
+        int length = condition.length();
+        StringBuilder sb = new StringBuilder();
+        sb.append(node.isWholeWord() ? "len == " : "len >= ").append(length);
+        int wrdEnd = length - parent.getCondition().length() - 1;
+        for (int idx = 0; idx < wrdEnd; idx++) {
+            sb.append(" && w.charAt(len - ").append(length - idx).append(") == ")
+                .append(charLiteral(condition.charAt(idx)));
+        }
+        return sb.toString();
+    }
+
+
+    private static String rule(LemmaRule rule) {
+        if (rule.isIdentity()) return "w.toString()";
+        StringBuilder sb = new StringBuilder("apply(w, len, ");
+        sb.append(rule.getFrom()).append(", \"");
+        for (int idx = 0; idx < rule.getToStr().length(); idx++) {
+            escape(rule.getToStr().charAt(idx), '"', sb);
+        }
+        return sb.append("\")").toString();
+    }
+
+
+    private static boolean isInner(LemmaTreeNode node) {
+        return !node.getSubNodes().isEmpty();
+    }
+
+
+    private static String charLiteral(char ch) {
+        StringBuilder sb = new StringBuilder("'");
+        escape(ch, '\'', sb);
+        return sb.append('\'').toString();
+    }
+
+
+    /**
+     * Escapes character for Java literal. Unicode escapes of line terminators, quotes and backslash are
+     * translated before parsing, so these characters must use ordinary escapes. Other control characters use
+     * unicode escapes, octal escape <code>\0</code> would absorb following digits.
+     */
+    private static void escape(char ch, char quote, StringBuilder sb) {
+        switch (ch) {
+        case '\n':
+            sb.append("\\n");
+            break;
+        case '\r':
+            sb.append("\\r");
+            break;
+        case '\\':
+            sb.append("\\\\");
+            break;
+        default:
+            if (ch == quote) {
+                sb.append('\\').append(ch);
+            } else if (ch < 0x20 || ch > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+    }
+
+
+    /**
+     * Generates lemmatizer source from model file or prebuilt lexicon.
+     *
+     * @param args [-methods N] className sourceRoot (file.lem | prebuilt name)
+     * @throws IOException if model cannot be read or source cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int methods = 0;
+        List<String> params = new ArrayList<>();
+        for (int idx = 0; idx < args.length; idx++) {
+            if ("-methods".equals(args[idx]) && idx + 1 < args.length) {
+                methods = Integer.parseInt(args[++idx]);
+            } else {
+                params.add(args[idx]);
+            }
+        }
+        if (params.size() != 3) {
+            System.err.println("Usage: LemmatizerCodeGenerator [-methods N] <className> <sourceRoot> "
+                + "<file.lem | prebuilt name>");
+            System.exit(1);
+        }
+
+        LemmatizerCodeGenerator generator = new LemmatizerCodeGenerator(params.get(0));
+        if (methods > 0) generator.setMethodsPerClass(methods);
+        File file = new File(params.get(2));
+        Lemmatizer lemmatizer;
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                lemmatizer = LemmatizerFactory.read(in);
+            }
+        } else {
+            lemmatizer = LemmatizerFactory.getPrebuilt(params.get(2));
+        }
+        System.out.println(generator.generate((DefaultLemmatizer) lemmatizer, new File(params.get(1))));
+    }
+}
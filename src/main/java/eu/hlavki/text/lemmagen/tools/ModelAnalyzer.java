@@ -0,0 +1,267 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.ExampleList;
+import eu.hlavki.text.lemmagen.impl.LemmaExample;
+import eu.hlavki.text.lemmagen.impl.LemmaRule;
+import eu.hlavki.text.lemmagen.impl.LemmaTreeNode;
+import eu.hlavki.text.lemmagen.impl.RuleList;
+import eu.hlavki.text.lemmagen.impl.WeightedRule;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes structure and memory footprint statistics of lemmatizer models. Tree is traversed iteratively,
+ * so even very deep models are analyzed without building big strings or deep recursion.
+ *
+ * @author Michal Hlavac
+ */
+public final class ModelAnalyzer {
+
+    private ModelAnalyzer() {
+    }
+
+
+    /**
+     * Analyzes all trees, rules and examples retained by the lemmatizer. Model is built if needed.
+     *
+     * @param lemmatizer lemmatizer
+     * @return statistics
+     */
+    public static ModelStatistics analyze(DefaultLemmatizer lemmatizer) {
+        ModelStatistics stats = new ModelStatistics();
+        Set<ExampleList> exampleLists = Collections.newSetFromMap(new IdentityHashMap<ExampleList, Boolean>());
+        exampleLists.add(lemmatizer.getExamples());
+        analyzeTree(lemmatizer.getRootNode(), stats, exampleLists);
+        if (lemmatizer.getSettings().isBuildFrontLemmatizer()) {
+            analyzeTree(lemmatizer.getRootNodeFront(), stats, exampleLists);
+        }
+        for (ExampleList examples : exampleLists) {
+            analyzeExamples(examples, stats);
+        }
+        return stats;
+    }
+
+
+    /**
+     * Analyzes single tree including rules and examples referenced by its nodes.
+     *
+     * @param root root node
+     * @return statistics
+     */
+    public static ModelStatistics analyze(LemmaTreeNode root) {
+        ModelStatistics stats = new ModelStatistics();
+        Set<ExampleList> exampleLists = Collections.newSetFromMap(new IdentityHashMap<ExampleList, Boolean>());
+        analyzeTree(root, stats, exampleLists);
+        for (ExampleList examples : exampleLists) {
+            analyzeExamples(examples, stats);
+        }
+        return stats;
+    }
+
+
+    /**
+     * Writes one line per node, child nodes are indented by tab. Output is the same as
+     * {@link LemmaTreeNode#toString()} but it's streamed.
+     *
+     * @param root root node
+     * @param out output
+     * @throws IOException if output fails
+     */
+    public static void dump(LemmaTreeNode root, Appendable out) throws IOException {
+        Deque<LemmaTreeNode> nodes = new ArrayDeque<>();
+        Deque<Integer> levels = new ArrayDeque<>();
+        nodes.push(root);
+        levels.push(0);
+        while (!nodes.isEmpty()) {
+            LemmaTreeNode node = nodes.pop();
+            int level = levels.pop();
+            for (int idx = 0; idx < level; idx++) {
+                out.append('\t');
+            }
+            out.append("Suffix=\"").append(node.isWholeWord() ? "^" : "").append(node.getCondition()).append("\"; ");
+            out.append("Rule=\"").append(node.getBestRule().toString()).append("\"; ");
+            out.append("Weight=").append(String.valueOf(node.getWeight())).append("\"; ");
+            WeightedRule[] bestRules = node.getBestRules();
+            if (bestRules != null && bestRules.length > 0)
+                out.append("Cover=").append(String.valueOf(bestRules[0].getWeight())).append("; ");
+            out.append("Rulles=");
+            if (bestRules != null) {
+                for (WeightedRule wr : bestRules) {
+                    out.append(" ").append(wr.toString());
+                }
+                out.append("; ");
+            }
+            out.append("\n");
+
+            List<LemmaTreeNode> children = new ArrayList<>(node.getSubNodes().values());
+            for (int idx = children.size() - 1; idx >= 0; idx--) {
+                nodes.push(children.get(idx));
+                levels.push(level + 1);
+            }
+        }
+    }
+
+
+    private static void analyzeTree(LemmaTreeNode root, ModelStatistics stats, Set<ExampleList> exampleLists) {
+        Deque<LemmaTreeNode> nodes = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        nodes.push(root);
+        depths.push(0);
+        while (!nodes.isEmpty()) {
+            LemmaTreeNode node = nodes.pop();
+            int depth = depths.pop();
+            Map<Character, LemmaTreeNode> subNodes = node.getSubNodes();
+            String condition = node.getCondition();
+            int conditionLength = condition == null ? 0 : condition.length();
+            WeightedRule[] bestRules = node.getBestRules();
+
+            stats.nodeCount++;
+            if (subNodes.isEmpty()) stats.leafCount++;
+            if (node.isWholeWord()) stats.wholeWordCount++;
+            stats.conditionLengthSum += conditionLength;
+            stats.depthHistogram = ModelStatistics.increment(stats.depthHistogram, depth);
+            stats.fanoutHistogram = ModelStatistics.increment(stats.fanoutHistogram, subNodes.size());
+            stats.conditionLengthHistogram = ModelStatistics.increment(stats.conditionLengthHistogram,
+                conditionLength);
+            stats.bestRulesHistogram = ModelStatistics.increment(stats.bestRulesHistogram, bestRules.length);
+
+            usage(stats, node.getBestRule())[0]++;
+            for (WeightedRule rule : bestRules) {
+                usage(stats, rule.getRule())[1]++;
+            }
+
+            stats.nodesBytes += HeapEstimator.TREE_NODE;
+            stats.stringsBytes += HeapEstimator.string(condition);
+            stats.rulesBytes += HeapEstimator.referenceArray(bestRules.length)
+                + bestRules.length * HeapEstimator.WEIGHTED_RULE;
+            if (!subNodes.isEmpty()) {
+                stats.mapsBytes += HeapEstimator.hashMap(subNodes.size())
+                    + HeapEstimator.charArray(subNodes.size()) + HeapEstimator.referenceArray(subNodes.size());
+                for (Map.Entry<Character, LemmaTreeNode> child : subNodes.entrySet()) {
+                    stats.mapsBytes += HeapEstimator.character(child.getKey());
+                    nodes.push(child.getValue());
+                    depths.push(depth + 1);
+                }
+            }
+            if (node.getExamples() != null) exampleLists.add(node.getExamples());
+        }
+    }
+
+
+    private static long[] usage(ModelStatistics stats, LemmaRule rule) {
+        long[] usage = stats.ruleUsage.get(rule);
+        if (usage == null) {
+            usage = new long[2];
+            stats.ruleUsage.put(rule, usage);
+        }
+        return usage;
+    }
+
+
+    private static void analyzeExamples(ExampleList examples, ModelStatistics stats) {
+        RuleList rules = examples.getRules();
+        stats.ruleCount += rules.size();
+        stats.mapsBytes += HeapEstimator.ARRAY_LIST + HeapEstimator.referenceArray(rules.size())
+            + HeapEstimator.intArray(rules.size()) + HeapEstimator.intArray(4 * rules.size());
+        for (LemmaRule rule : rules.values()) {
+            stats.rulesBytes += HeapEstimator.RULE;
+            stats.stringsBytes += HeapEstimator.string(rule.getFromStr());
+            stats.stringsBytes += HeapEstimator.string(rule.getToStr());
+        }
+
+        List<LemmaExample> list = examples.getExamplesList();
+        stats.exampleCount += list.size();
+        stats.examplesBytes += HeapEstimator.ARRAY_LIST + HeapEstimator.referenceArray(list.size());
+        stats.examplesBytes += HeapEstimator.hashMap(list.size());
+        for (LemmaExample le : list) {
+            stats.examplesBytes += HeapEstimator.EXAMPLE;
+            stats.examplesBytes += HeapEstimator.string(le.getWord());
+            stats.examplesBytes += HeapEstimator.string(le.getLemma());
+            stats.examplesBytes += HeapEstimator.string(le.getMsd());
+        }
+    }
+
+
+    /**
+     * Prints statistics of models given as files or names of prebuilt lexicons.
+     *
+     * @param args [-dump] [-top N] model...
+     * @throws IOException if model cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        boolean dump = false;
+        int topRules = 20;
+        List<String> models = new ArrayList<>();
+        for (int idx = 0; idx < args.length; idx++) {
+            if ("-dump".equals(args[idx])) {
+                dump = true;
+            } else if ("-top".equals(args[idx]) && idx + 1 < args.length) {
+                topRules = Integer.parseInt(args[++idx]);
+            } else {
+                models.add(args[idx]);
+            }
+        }
+        if (models.isEmpty()) {
+            System.err.println("Usage: ModelAnalyzer [-dump] [-top N] <file.lem | prebuilt name>...");
+            System.exit(1);
+        }
+
+        Writer out = new OutputStreamWriter(System.out, "UTF-8");
+        for (String model : models) {
+            DefaultLemmatizer lemmatizer = load(model);
+            out.append("== ").append(model).append('\n');
+            analyze(lemmatizer).write(out, topRules);
+            if (dump) {
+                dump(lemmatizer.getRootNode(), out);
+                if (lemmatizer.getSettings().isBuildFrontLemmatizer()) {
+                    dump(lemmatizer.getRootNodeFront(), out);
+                }
+            }
+            out.flush();
+        }
+    }
+
+
+    static DefaultLemmatizer load(String model) throws IOException {
+        File file = new File(model);
+        Lemmatizer result;
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                result = LemmatizerFactory.read(in);
+            }
+        } else {
+            result = LemmatizerFactory.getPrebuilt(model);
+        }
+        return (DefaultLemmatizer) result;
+    }
+}
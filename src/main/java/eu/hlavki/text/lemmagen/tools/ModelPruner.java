@@ -0,0 +1,295 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmaTreeNode;
+import eu.hlavki.text.lemmagen.impl.WeightedRule;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prunes model to a budget of nodes or estimated heap bytes. Nodes are ranked by number of visits recorded
+ * in {@link WordProfile}, nodes which are never visited by the profile are ranked by weight of their
+ * training examples. The least valuable subtrees are removed, so their words are lemmatized by the best
+ * rule of the parent. Since parent is always visited at least as often as its child and has at least the same
+ * weight, every prefix of the ranking is a valid tree.
+ * <p>
+ * Pruned model is a normal model, it can be saved by {@link LemmatizerFactory#saveToFile} and loaded by
+ * {@link LemmatizerFactory#read}. Pruning can't be undone, use {@link #evaluate(int)} to compare budgets
+ * first.
+ *
+ * @author Michal Hlavac
+ */
+public class ModelPruner {
+
+    private final DefaultLemmatizer lemmatizer;
+    private final WordProfile profile;
+    private final List<LemmaTreeNode> roots;
+    private final List<LemmaTreeNode> ranked;
+    private final Map<LemmaTreeNode, Integer> ranks;
+    private final long rootBytes;
+    private final long[] cumulativeBytes;
+
+
+    public ModelPruner(DefaultLemmatizer lemmatizer, WordProfile profile) {
+        this.lemmatizer = lemmatizer;
+        this.profile = profile;
+        this.roots = new ArrayList<>();
+        roots.add(lemmatizer.getRootNode());
+        if (lemmatizer.getSettings().isBuildFrontLemmatizer()) roots.add(lemmatizer.getRootNodeFront());
+
+        final Map<LemmaTreeNode, Long> visits = profile.countVisits(lemmatizer);
+        final Map<LemmaTreeNode, Integer> depths = new IdentityHashMap<>();
+        final Map<LemmaTreeNode, Long> bytes = new IdentityHashMap<>();
+        long rootsSize = 0;
+        Deque<LemmaTreeNode> stack = new ArrayDeque<>();
+        for (LemmaTreeNode root : roots) {
+            depths.put(root, 0);
+            rootsSize += nodeBytes(root, '\0');
+            stack.push(root);
+        }
+        while (!stack.isEmpty()) {
+            LemmaTreeNode node = stack.pop();
+            for (Map.Entry<Character, LemmaTreeNode> child : node.getSubNodes().entrySet()) {
+                depths.put(child.getValue(), depths.get(node) + 1);
+                bytes.put(child.getValue(), nodeBytes(child.getValue(), child.getKey()));
+                stack.push(child.getValue());
+            }
+        }
+        this.rootBytes = rootsSize;
+
+        this.ranked = new ArrayList<>(bytes.keySet());
+        Collections.sort(ranked, new Comparator<LemmaTreeNode>() {
+            @Override
+            public int compare(LemmaTreeNode n1, LemmaTreeNode n2) {
+                int result = Long.compare(visits(n2), visits(n1));
+                if (result == 0) result = Double.compare(n2.getWeight(), n1.getWeight());
+                if (result == 0) result = Integer.compare(depths.get(n1), depths.get(n2));
+                return result;
+            }
+
+
+            private long visits(LemmaTreeNode node) {
+                Long count = visits.get(node);
+                return count == null ? 0 : count;
+            }
+        });
+        this.ranks = new IdentityHashMap<>();
+        this.cumulativeBytes = new long[ranked.size() + 1];
+        for (int idx = 0; idx < ranked.size(); idx++) {
+            ranks.put(ranked.get(idx), idx);
+            cumulativeBytes[idx + 1] = cumulativeBytes[idx] + bytes.get(ranked.get(idx));
+        }
+    }
+
+
+    /**
+     * @return number of nodes of all trees before pruning
+     */
+    public int getNodeCount() {
+        return roots.size() + ranked.size();
+    }
+
+
+    /**
+     * @return estimated heap bytes of all nodes before pruning
+     */
+    public long getByteCount() {
+        return rootBytes + cumulativeBytes[ranked.size()];
+    }
+
+
+    /**
+     * Computes impact of pruning to given number of nodes without changing the model.
+     *
+     * @param maxNodes maximal number of nodes of all trees, roots are always retained
+     * @return pruning result
+     */
+    public PruningResult evaluate(int maxNodes) {
+        return evaluateRetained(retainedByNodes(maxNodes));
+    }
+
+
+    /**
+     * Computes impact of pruning to given estimated heap bytes of nodes without changing the model.
+     *
+     * @param maxBytes maximal heap bytes of nodes, roots are always retained
+     * @return pruning result
+     */
+    public PruningResult evaluateBytes(long maxBytes) {
+        return evaluateRetained(retainedByBytes(maxBytes));
+    }
+
+
+    public PruningResult prune(int maxNodes) {
+        return pruneRetained(retainedByNodes(maxNodes));
+    }
+
+
+    public PruningResult pruneBytes(long maxBytes) {
+        return pruneRetained(retainedByBytes(maxBytes));
+    }
+
+
+    private int retainedByNodes(int maxNodes) {
+        return Math.max(0, Math.min(ranked.size(), maxNodes - roots.size()));
+    }
+
+
+    private int retainedByBytes(long maxBytes) {
+        int retained = 0;
+        while (retained < ranked.size() && rootBytes + cumulativeBytes[retained + 1] <= maxBytes) {
+            retained++;
+        }
+        return retained;
+    }
+
+
+    private PruningResult pruneRetained(int retained) {
+        PruningResult result = evaluateRetained(retained);
+        Set<LemmaTreeNode> kept = Collections.newSetFromMap(new IdentityHashMap<LemmaTreeNode, Boolean>());
+        kept.addAll(roots);
+        kept.addAll(ranked.subList(0, retained));
+        lemmatizer.retainNodes(kept);
+        return result;
+    }
+
+
+    private PruningResult evaluateRetained(int retained) {
+        LemmaTreeNode root = lemmatizer.getRootNode();
+        LemmaTreeNode rootFront = lemmatizer.getSettings().isBuildFrontLemmatizer()
+            ? lemmatizer.getRootNodeFront() : null;
+        long total = 0;
+        long covered = 0;
+        long lost = 0;
+        for (Map.Entry<String, Long> entry : profile.getEntries()) {
+            long count = entry.getValue();
+            total += count;
+            boolean same = true;
+            CharSequence word = entry.getKey();
+            CharSequence prunedWord = word;
+            if (rootFront != null) {
+                StringBuilder wordFront = new StringBuilder(word).reverse();
+                LemmaTreeNode node = rootFront.findNode(wordFront);
+                LemmaTreeNode retainedNode = retainedAncestor(node, retained);
+                same = node == retainedNode;
+                word = new StringBuilder(node.getBestRule().lemmatize(wordFront)).reverse();
+                prunedWord = new StringBuilder(retainedNode.getBestRule().lemmatize(wordFront)).reverse();
+            }
+            LemmaTreeNode node = root.findNode(word);
+            String lemma = node.getBestRule().lemmatize(word).toString();
+            LemmaTreeNode prunedNode = retainedAncestor(root.findNode(prunedWord), retained);
+            String prunedLemma = prunedNode.getBestRule().lemmatize(prunedWord).toString();
+            if (same && node == prunedNode) covered += count;
+            if (!lemma.equals(prunedLemma)) lost += count;
+        }
+        return new PruningResult(roots.size() + retained, getNodeCount(), rootBytes + cumulativeBytes[retained],
+            getByteCount(), total == 0 ? 1 : (double) covered / total, total == 0 ? 0 : (double) lost / total);
+    }
+
+
+    private LemmaTreeNode retainedAncestor(LemmaTreeNode node, int retained) {
+        while (true) {
+            Integer rank = ranks.get(node);
+            if (rank == null || rank < retained) return node;
+            node = node.getParentNode();
+        }
+    }
+
+
+    private static long nodeBytes(LemmaTreeNode node, char key) {
+        long size = HeapEstimator.TREE_NODE + HeapEstimator.string(node.getCondition());
+        WeightedRule[] bestRules = node.getBestRules();
+        if (bestRules != null) {
+            size += HeapEstimator.referenceArray(bestRules.length) + bestRules.length * HeapEstimator.WEIGHTED_RULE;
+        }
+        if (node.getParentNode() != null) {
+            size += HeapEstimator.HASH_MAP_NODE + HeapEstimator.character(key) + HeapEstimator.SUB_NODE_KEY;
+        }
+        return size;
+    }
+
+
+    /**
+     * Reports impact of pruning to several budgets and optionally prunes the model.
+     *
+     * @param args [-corpus] [-nodes N | -bytes N] profile model [output.lem], profile contains word and count
+     * separated by tab on every line or plain text if -corpus is used, model is file or name of prebuilt model
+     * @throws IOException if files cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        boolean corpus = false;
+        long nodes = -1;
+        long bytes = -1;
+        List<String> params = new ArrayList<>();
+        for (int idx = 0; idx < args.length; idx++) {
+            if ("-corpus".equals(args[idx])) {
+                corpus = true;
+            } else if ("-nodes".equals(args[idx]) && idx + 1 < args.length) {
+                nodes = Long.parseLong(args[++idx]);
+            } else if ("-bytes".equals(args[idx]) && idx + 1 < args.length) {
+                bytes = Long.parseLong(args[++idx]);
+            } else {
+                params.add(args[idx]);
+            }
+        }
+        if (params.size() < 2 || params.size() > 3 || (params.size() == 3 && nodes < 0 && bytes < 0)) {
+            System.err.println("Usage: ModelPruner [-corpus] [-nodes N | -bytes N] <profile> "
+                + "<file.lem | prebuilt name> [output.lem]");
+            System.exit(1);
+        }
+
+        WordProfile profile;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(params.get(0)), StandardCharsets.UTF_8))) {
+            profile = corpus ? WordProfile.readCorpus(reader) : WordProfile.read(reader);
+        }
+        DefaultLemmatizer lemmatizer = ModelAnalyzer.load(params.get(1));
+        ModelPruner pruner = new ModelPruner(lemmatizer, profile);
+
+        List<PruningResult> results = new ArrayList<>();
+        for (int percent : new int[]{100, 50, 25, 10, 5, 1}) {
+            results.add(pruner.evaluate((int) ((long) pruner.getNodeCount() * percent / 100)));
+        }
+        if (nodes >= 0) results.add(pruner.evaluate((int) Math.min(Integer.MAX_VALUE, nodes)));
+        if (bytes >= 0) results.add(pruner.evaluateBytes(bytes));
+        StringBuilder sb = new StringBuilder();
+        PruningResult.write(results, sb);
+        System.out.print(sb);
+
+        if (params.size() == 3) {
+            PruningResult result = bytes >= 0 ? pruner.pruneBytes(bytes)
+                : pruner.prune((int) Math.min(Integer.MAX_VALUE, nodes));
+            LemmatizerFactory.saveToFile(lemmatizer, new File(params.get(2)));
+            System.out.println("Pruned model with " + result.getNodes() + " nodes saved to " + params.get(2));
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.impl.LemmaRule;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of lemmatizer model computed by {@link ModelAnalyzer}.
+ *
+ * @author Michal Hlavac
+ */
+public final class ModelStatistics {
+
+    long nodeCount;
+    long leafCount;
+    long wholeWordCount;
+    long conditionLengthSum;
+    long[] depthHistogram = new long[16];
+    long[] fanoutHistogram = new long[16];
+    long[] conditionLengthHistogram = new long[16];
+    long[] bestRulesHistogram = new long[16];
+    final Map<LemmaRule, long[]> ruleUsage = new IdentityHashMap<>();
+
+    long nodesBytes;
+    long mapsBytes;
+    long rulesBytes;
+    long stringsBytes;
+    long examplesBytes;
+    long ruleCount;
+    long exampleCount;
+
+
+    ModelStatistics() {
+    }
+
+
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+
+    public long getLeafCount() {
+        return leafCount;
+    }
+
+
+    public int getMaxDepth() {
+        return lastNonZero(depthHistogram);
+    }
+
+
+    public long getWholeWordCount() {
+        return wholeWordCount;
+    }
+
+
+    /**
+     * @return number of nodes at each depth, root is at depth 0
+     */
+    public long[] getDepthHistogram() {
+        return Arrays.copyOf(depthHistogram, getMaxDepth() + 1);
+    }
+
+
+    /**
+     * @return number of nodes with given number of children
+     */
+    public long[] getFanoutHistogram() {
+        return Arrays.copyOf(fanoutHistogram, lastNonZero(fanoutHistogram) + 1);
+    }
+
+
+    /**
+     * @return number of nodes with given condition length
+     */
+    public long[] getConditionLengthHistogram() {
+        return Arrays.copyOf(conditionLengthHistogram, lastNonZero(conditionLengthHistogram) + 1);
+    }
+
+
+    /**
+     * Distribution of number of rules stored in nodes. Useful to choose maxRulesPerNode setting.
+     *
+     * @return number of nodes with given number of best rules
+     */
+    public long[] getBestRulesHistogram() {
+        return Arrays.copyOf(bestRulesHistogram, lastNonZero(bestRulesHistogram) + 1);
+    }
+
+
+    public double getAverageConditionLength() {
+        return nodeCount == 0 ? 0 : (double) conditionLengthSum / nodeCount;
+    }
+
+
+    /**
+     * Returns number of nodes where rule is the best rule.
+     *
+     * @param rule rule
+     * @return usage count
+     */
+    public long getBestRuleUsage(LemmaRule rule) {
+        long[] usage = ruleUsage.get(rule);
+        return usage == null ? 0 : usage[0];
+    }
+
+
+    /**
+     * Returns number of nodes which keep rule in its list of best rules.
+     *
+     * @param rule rule
+     * @return usage count
+     */
+    public long getListedRuleUsage(LemmaRule rule) {
+        long[] usage = ruleUsage.get(rule);
+        return usage == null ? 0 : usage[1];
+    }
+
+
+    /**
+     * Returns rules ordered by number of nodes where rule is the best rule.
+     *
+     * @param limit maximal number of returned rules
+     * @return most used rules
+     */
+    public List<LemmaRule> getTopRules(int limit) {
+        List<LemmaRule> rules = new ArrayList<>(ruleUsage.keySet());
+        Collections.sort(rules, new Comparator<LemmaRule>() {
+            @Override
+            public int compare(LemmaRule r1, LemmaRule r2) {
+                int result = Long.compare(ruleUsage.get(r2)[0], ruleUsage.get(r1)[0]);
+                return result != 0 ? result : Integer.compare(r1.getId(), r2.getId());
+            }
+        });
+        return rules.subList(0, Math.min(limit, rules.size()));
+    }
+
+
+    public long getRuleCount() {
+        return ruleCount;
+    }
+
+
+    public long getExampleCount() {
+        return exampleCount;
+    }
+
+
+    public long getNodesBytes() {
+        return nodesBytes;
+    }
+
+
+    public long getMapsBytes() {
+        return mapsBytes;
+    }
+
+
+    public long getRulesBytes() {
+        return rulesBytes;
+    }
+
+
+    public long getStringsBytes() {
+        return stringsBytes;
+    }
+
+
+    public long getExamplesBytes() {
+        return examplesBytes;
+    }
+
+
+    public long getTotalBytes() {
+        return nodesBytes + mapsBytes + rulesBytes + stringsBytes + examplesBytes;
+    }
+
+
+    public void write(Appendable out, int topRules) throws IOException {
+        out.append("nodes: ").append(String.valueOf(nodeCount));
+        out.append(", leaves: ").append(String.valueOf(leafCount));
+        out.append(", whole word: ").append(String.valueOf(wholeWordCount));
+        out.append(", max depth: ").append(String.valueOf(getMaxDepth())).append('\n');
+        out.append("rules: ").append(String.valueOf(ruleCount));
+        out.append(", examples: ").append(String.valueOf(exampleCount)).append('\n');
+        out.append("average condition length: ").append(String.format("%.2f", getAverageConditionLength()));
+        out.append('\n');
+        writeHistogram(out, "depth", getDepthHistogram());
+        writeHistogram(out, "fanout", getFanoutHistogram());
+        writeHistogram(out, "condition length", getConditionLengthHistogram());
+        writeHistogram(out, "rules per node", getBestRulesHistogram());
+        out.append("estimated heap (bytes):\n");
+        writeBytes(out, "nodes", nodesBytes);
+        writeBytes(out, "maps", mapsBytes);
+        writeBytes(out, "rules", rulesBytes);
+        writeBytes(out, "strings", stringsBytes);
+        writeBytes(out, "examples", examplesBytes);
+        writeBytes(out, "total", getTotalBytes());
+        if (topRules > 0) {
+            out.append("top rules (best in nodes / listed in nodes):\n");
+            for (LemmaRule rule : getTopRules(topRules)) {
+                long[] usage = ruleUsage.get(rule);
+                out.append("  ").append(rule.toString()).append(' ');
+                out.append(String.valueOf(usage[0])).append(" / ").append(String.valueOf(usage[1])).append('\n');
+            }
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(sb, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+
+    private static void writeHistogram(Appendable out, String name, long[] histogram) throws IOException {
+        out.append(name).append(':');
+        for (int idx = 0; idx < histogram.length; idx++) {
+            if (histogram[idx] > 0) {
+                out.append(' ').append(String.valueOf(idx)).append('=').append(String.valueOf(histogram[idx]));
+            }
+        }
+        out.append('\n');
+    }
+
+
+    private static void writeBytes(Appendable out, String name, long bytes) throws IOException {
+        out.append("  ").append(name).append(": ").append(String.valueOf(bytes)).append('\n');
+    }
+
+
+    static long[] increment(long[] histogram, int idx) {
+        long[] result = histogram;
+        if (idx >= result.length) {
+            result = Arrays.copyOf(result, Math.max(idx + 1, result.length * 2));
+        }
+        result[idx]++;
+        return result;
+    }
+
+
+    private static int lastNonZero(long[] histogram) {
+        int last = 0;
+        for (int idx = 0; idx < histogram.length; idx++) {
+            if (histogram[idx] > 0) last = idx;
+        }
+        return last;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Impact of pruning model to one budget. Coverage is the share of profile lookups which end in the same
+ * node as in the full model, lemma loss is the share of profile lookups which get different lemma than from
+ * the full model. Shares are weighted by word counts.
+ *
+ * @author Michal Hlavac
+ */
+public final class PruningResult {
+
+    private final int nodes;
+    private final int totalNodes;
+    private final long bytes;
+    private final long totalBytes;
+    private final double coverage;
+    private final double lemmaLoss;
+
+
+    PruningResult(int nodes, int totalNodes, long bytes, long totalBytes, double coverage, double lemmaLoss) {
+        this.nodes = nodes;
+        this.totalNodes = totalNodes;
+        this.bytes = bytes;
+        this.totalBytes = totalBytes;
+        this.coverage = coverage;
+        this.lemmaLoss = lemmaLoss;
+    }
+
+
+    /**
+     * @return number of retained nodes of all trees
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+
+    public int getTotalNodes() {
+        return totalNodes;
+    }
+
+
+    /**
+     * @return estimated heap bytes of retained nodes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+
+    public double getCoverage() {
+        return coverage;
+    }
+
+
+    public double getLemmaLoss() {
+        return lemmaLoss;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%8d %6.1f%% %10d %6.1f%% %8.3f%% %9.3f%%", nodes,
+            100.0 * nodes / totalNodes, bytes, 100.0 * bytes / totalBytes, 100 * coverage, 100 * lemmaLoss);
+    }
+
+
+    /**
+     * Writes table of results, one budget per line.
+     *
+     * @param results results
+     * @param out output
+     * @throws IOException if output fails
+     */
+    public static void write(Collection<PruningResult> results, Appendable out) throws IOException {
+        out.append(String.format(Locale.ROOT, "%8s %7s %10s %7s %9s %10s%n", "nodes", "", "bytes", "",
+            "coverage", "lemma loss"));
+        for (PruningResult result : results) {
+            out.append(result.toString()).append(String.format("%n"));
+        }
+    }
+}
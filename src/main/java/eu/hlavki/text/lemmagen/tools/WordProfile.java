@@ -0,0 +1,224 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmaTreeNode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Frequencies of words used to optimize models for real traffic. Profile is recorded from live
+ * lemmatization by {@link #recording(Lemmatizer)} or read from a corpus or from a word count file. Recording
+ * is thread safe.
+ *
+ * @author Michal Hlavac
+ */
+public class WordProfile {
+
+    private final Map<String, LongAdder> counts;
+
+
+    public WordProfile() {
+        this.counts = new ConcurrentHashMap<>();
+    }
+
+
+    public void record(CharSequence word) {
+        record(word, 1);
+    }
+
+
+    public void record(CharSequence word, long count) {
+        String key = word.toString();
+        LongAdder adder = counts.get(key);
+        if (adder == null) {
+            LongAdder created = new LongAdder();
+            adder = counts.putIfAbsent(key, created);
+            if (adder == null) adder = created;
+        }
+        adder.add(count);
+    }
+
+
+    public long getCount(String word) {
+        LongAdder adder = counts.get(word);
+        return adder == null ? 0 : adder.sum();
+    }
+
+
+    /**
+     * @return number of distinct words
+     */
+    public int size() {
+        return counts.size();
+    }
+
+
+    /**
+     * @return sum of counts of all words
+     */
+    public long getTotal() {
+        long total = 0;
+        for (LongAdder adder : counts.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+
+    /**
+     * @return words with their counts ordered by count descending
+     */
+    public List<Map.Entry<String, Long>> getEntries() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.size());
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+                int result = Long.compare(e2.getValue(), e1.getValue());
+                return result != 0 ? result : e1.getKey().compareTo(e2.getKey());
+            }
+        });
+        return entries;
+    }
+
+
+    /**
+     * Counts how many times is every tree node visited when words of the profile are lemmatized. Visit of
+     * node counts all its ancestors as visited too.
+     *
+     * @param lemmatizer lemmatizer
+     * @return number of visits of nodes, nodes which are never visited are not included
+     */
+    public Map<LemmaTreeNode, Long> countVisits(DefaultLemmatizer lemmatizer) {
+        Map<LemmaTreeNode, Long> visits = new IdentityHashMap<>();
+        LemmaTreeNode root = lemmatizer.getRootNode();
+        LemmaTreeNode rootFront = lemmatizer.getSettings().isBuildFrontLemmatizer()
+            ? lemmatizer.getRootNodeFront() : null;
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            CharSequence word = entry.getKey();
+            long count = entry.getValue().sum();
+            if (rootFront != null) {
+                StringBuilder wordFront = new StringBuilder(word).reverse();
+                LemmaTreeNode node = rootFront.findNode(wordFront);
+                addPath(visits, node, count);
+                word = new StringBuilder(node.getBestRule().lemmatize(wordFront)).reverse();
+            }
+            addPath(visits, root.findNode(word), count);
+        }
+        return visits;
+    }
+
+
+    private static void addPath(Map<LemmaTreeNode, Long> visits, LemmaTreeNode node, long count) {
+        for (; node != null; node = node.getParentNode()) {
+            Long current = visits.get(node);
+            visits.put(node, current == null ? count : current + count);
+        }
+    }
+
+
+    /**
+     * Wraps lemmatizer, so every lemmatized word is recorded to this profile.
+     *
+     * @param lemmatizer lemmatizer
+     * @return recording lemmatizer
+     */
+    public Lemmatizer recording(final Lemmatizer lemmatizer) {
+        return new Lemmatizer() {
+            @Override
+            public CharSequence lemmatize(CharSequence word) {
+                record(word);
+                return lemmatizer.lemmatize(word);
+            }
+
+
+            @Override
+            public void lemmatize(CharSequence[] words, CharSequence[] lemmas, int offset, int length) {
+                for (int idx = offset; idx < offset + length; idx++) {
+                    record(words[idx]);
+                }
+                lemmatizer.lemmatize(words, lemmas, offset, length);
+            }
+        };
+    }
+
+
+    /**
+     * Counts words of plain text corpus. Words are separated by white spaces.
+     *
+     * @param reader corpus reader
+     * @return profile
+     * @throws IOException if corpus cannot be read
+     */
+    public static WordProfile readCorpus(BufferedReader reader) throws IOException {
+        WordProfile profile = new WordProfile();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            for (String word : line.trim().split("\\s+")) {
+                if (!word.isEmpty()) profile.record(word);
+            }
+        }
+        return profile;
+    }
+
+
+    /**
+     * Reads profile written by {@link #write(Appendable)}, every line contains word and count separated by
+     * tab.
+     *
+     * @param reader profile reader
+     * @return profile
+     * @throws IOException if profile cannot be read or line is malformed
+     */
+    public static WordProfile read(BufferedReader reader) throws IOException {
+        WordProfile profile = new WordProfile();
+        String line;
+        int lineIdx = 0;
+        while ((line = reader.readLine()) != null) {
+            lineIdx++;
+            if (line.isEmpty()) continue;
+            int sep = line.lastIndexOf('\t');
+            try {
+                if (sep < 0) throw new NumberFormatException("Missing count");
+                profile.record(line.substring(0, sep), Long.parseLong(line.substring(sep + 1)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid profile line " + lineIdx + ": " + line, e);
+            }
+        }
+        return profile;
+    }
+
+
+    public void write(Appendable out) throws IOException {
+        for (Map.Entry<String, Long> entry : getEntries()) {
+            out.append(entry.getKey()).append('\t').append(String.valueOf(entry.getValue())).append('\n');
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.training;
+
+/**
+ * Receives progress of lemmatizer training from {@link TrainingMonitor}. Methods are called by the training
+ * thread, so they should return quickly. Phase can be started and finished more than once, e.g. when more
+ * lexicon files are added or when both front and rear trees are built.
+ *
+ * @author Michal Hlavac
+ */
+public interface TrainingListener {
+
+    default void phaseStarted(TrainingPhase phase) {
+    }
+
+
+    /**
+     * Called periodically while phase is running.
+     *
+     * @param phase running phase
+     * @param processed number of lines, examples or nodes processed by the phase so far
+     */
+    default void progress(TrainingPhase phase, long processed) {
+    }
+
+
+    /**
+     * Called when phase is finished.
+     *
+     * @param phase finished phase
+     * @param wallTime wall time of the phase in nanoseconds
+     * @param allocatedBytes bytes allocated by the training thread during the phase, -1 if not supported
+     */
+    default void phaseFinished(TrainingPhase phase, long wallTime, long allocatedBytes) {
+    }
+}
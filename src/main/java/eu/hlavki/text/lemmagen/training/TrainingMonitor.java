@@ -0,0 +1,298 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.training;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Observes training of one lemmatizer. Monitor records wall time, allocated bytes and processed units of
+ * every {@link TrainingPhase}, reports progress to {@link TrainingListener} and supports cooperative
+ * cancellation. Training code checks monitor regularly and throws {@link CancellationException} when
+ * {@link #cancel()} was called or when time budget is exceeded.
+ * <p>
+ * Allocated bytes are measured for the training thread only, so allocations of helper threads (e.g.
+ * parallel sort) are not included. They are measured only if measurement of thread allocated memory is
+ * already enabled in the JVM (default of HotSpot), monitor doesn't change this JVM wide setting. Methods used
+ * by training code must be called by the training thread, only {@link #cancel()} can be called from any
+ * thread.
+ *
+ * @author Michal Hlavac
+ */
+public class TrainingMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(TrainingMonitor.class);
+    private static final int CHECK_INTERVAL = 256;
+    private static final TrainingPhase[] PHASES = TrainingPhase.values();
+    private static final ThreadMXBean threads = allocationBean();
+
+    private TrainingListener listener;
+    private long timeBudget;
+    private long progressInterval;
+    private volatile boolean cancelled;
+
+    private boolean started;
+    private long startTime;
+    private TrainingPhase current;
+    private long currentStart;
+    private long currentAllocated;
+    private int checkCountdown;
+    private long nextProgress;
+    private final boolean[] running;
+    private final long[] wallTime;
+    private final long[] allocated;
+    private final long[] processed;
+    private final long[] runWallTime;
+    private final long[] runAllocated;
+
+
+    public TrainingMonitor() {
+        this(null);
+    }
+
+
+    public TrainingMonitor(TrainingListener listener) {
+        this.listener = listener;
+        this.progressInterval = 10000;
+        this.checkCountdown = CHECK_INTERVAL;
+        this.running = new boolean[PHASES.length];
+        this.wallTime = new long[PHASES.length];
+        this.allocated = new long[PHASES.length];
+        this.processed = new long[PHASES.length];
+        this.runWallTime = new long[PHASES.length];
+        this.runAllocated = new long[PHASES.length];
+    }
+
+
+    public TrainingListener getListener() {
+        return listener;
+    }
+
+
+    public void setListener(TrainingListener listener) {
+        this.listener = listener;
+    }
+
+
+    public long getTimeBudget(TimeUnit unit) {
+        return unit.convert(timeBudget, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * Sets maximal duration of training measured from the start of the first phase. Zero means no limit.
+     *
+     * @param budget time budget
+     * @param unit unit of the budget
+     */
+    public void setTimeBudget(long budget, TimeUnit unit) {
+        this.timeBudget = unit.toNanos(budget);
+    }
+
+
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+
+    /**
+     * Sets number of processed units between two calls of {@link TrainingListener#progress}.
+     *
+     * @param progressInterval number of units, default is 10000
+     */
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = Math.max(1, progressInterval);
+    }
+
+
+    /**
+     * Requests cancellation of training. Training stops at the next check with
+     * {@link CancellationException}.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+
+    /**
+     * @param phase training phase
+     * @return total wall time of the phase in nanoseconds
+     */
+    public long getWallTime(TrainingPhase phase) {
+        return wallTime[phase.ordinal()];
+    }
+
+
+    /**
+     * @param phase training phase
+     * @return total bytes allocated by the training thread during the phase, -1 if not supported or disabled
+     */
+    public long getAllocatedBytes(TrainingPhase phase) {
+        return threads == null ? -1 : allocated[phase.ordinal()];
+    }
+
+
+    /**
+     * @param phase training phase
+     * @return total number of lines, examples or nodes processed by the phase
+     */
+    public long getProcessed(TrainingPhase phase) {
+        return processed[phase.ordinal()];
+    }
+
+
+    /**
+     * Starts or resumes measurement of the phase. Listener is notified if phase is not running yet.
+     *
+     * @param phase phase to start
+     * @throws CancellationException if training is cancelled or time budget is exceeded
+     */
+    public void begin(TrainingPhase phase) {
+        suspend();
+        currentStart = System.nanoTime();
+        if (!started) {
+            started = true;
+            startTime = currentStart;
+        }
+        check();
+        int ord = phase.ordinal();
+        if (!running[ord]) {
+            running[ord] = true;
+            runWallTime[ord] = 0;
+            runAllocated[ord] = 0;
+            nextProgress = processed[ord] + progressInterval;
+            if (listener != null) listener.phaseStarted(phase);
+        }
+        current = phase;
+        currentAllocated = allocatedBytes();
+    }
+
+
+    /**
+     * Stops measurement of the current phase without finishing it, phase can be resumed by
+     * {@link #begin(TrainingPhase)}.
+     */
+    public void suspend() {
+        if (current == null) return;
+        int ord = current.ordinal();
+        long time = System.nanoTime() - currentStart;
+        long bytes = allocatedBytes() - currentAllocated;
+        wallTime[ord] += time;
+        runWallTime[ord] += time;
+        allocated[ord] += bytes;
+        runAllocated[ord] += bytes;
+        current = null;
+    }
+
+
+    /**
+     * Finishes the phase and notifies listener with wall time and allocated bytes measured since the phase
+     * was started.
+     *
+     * @param phase phase to finish
+     */
+    public void finish(TrainingPhase phase) {
+        if (current == phase) suspend();
+        int ord = phase.ordinal();
+        if (!running[ord]) return;
+        running[ord] = false;
+        if (listener != null) {
+            listener.phaseFinished(phase, runWallTime[ord], threads == null ? -1 : runAllocated[ord]);
+        }
+    }
+
+
+    /**
+     * Adds processed units to the current phase. Cancellation and time budget are checked periodically.
+     *
+     * @param units number of processed lines, examples or nodes
+     * @throws CancellationException if training is cancelled or time budget is exceeded
+     */
+    public void worked(int units) {
+        if (current == null) return;
+        long done = processed[current.ordinal()] += units;
+        if (done >= nextProgress) {
+            nextProgress = done + progressInterval;
+            if (listener != null) listener.progress(current, done);
+        }
+        checkCountdown -= units;
+        if (checkCountdown <= 0) {
+            checkCountdown = CHECK_INTERVAL;
+            check();
+        }
+    }
+
+
+    /**
+     * Checks cancellation and time budget.
+     *
+     * @throws CancellationException if training is cancelled or time budget is exceeded
+     */
+    public void check() {
+        if (cancelled) {
+            suspend();
+            throw new CancellationException("Training cancelled");
+        }
+        if (timeBudget > 0 && started && System.nanoTime() - startTime > timeBudget) {
+            suspend();
+            throw new CancellationException("Training time budget exceeded");
+        }
+    }
+
+
+    private static long allocatedBytes() {
+        return threads == null ? 0 : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+            Thread.currentThread().getId());
+    }
+
+
+    private static ThreadMXBean allocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                if (((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled()) return bean;
+                log.debug("Measurement of allocated memory is disabled");
+            }
+        } catch (LinkageError | UnsupportedOperationException e) {
+            log.debug("Measurement of allocated memory is not supported", e);
+        }
+        return null;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (TrainingPhase phase : PHASES) {
+            int ord = phase.ordinal();
+            if (wallTime[ord] == 0 && processed[ord] == 0) continue;
+            sb.append(String.format("%-13s %10.1f ms %12d units", phase, wallTime[ord] / 1e6, processed[ord]));
+            if (threads != null) sb.append(String.format(" %14d bytes", allocated[ord]));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.training;
+
+/**
+ * Phases of lemmatizer training in order in which they are executed. Parsing and joining are executed
+ * while lexicon is read, remaining phases are executed when model is built.
+ *
+ * @author Michal Hlavac
+ */
+public enum TrainingPhase {
+
+    /**
+     * Reading and splitting of lexicon lines, progress is number of lines.
+     */
+    PARSING,
+    /**
+     * Creation of examples and joining of duplicate examples, progress is number of examples.
+     */
+    JOINING,
+    /**
+     * Sorting of examples by reversed words, progress is number of examples.
+     */
+    SORTING,
+    /**
+     * Derivation of front and rear example lists of front lemmatizer, progress is number of examples.
+     */
+    FRONT_REAR,
+    /**
+     * Building of the suffix tree, progress is number of created nodes.
+     */
+    TREE_BUILDING,
+    /**
+     * Collapsing of tree nodes with single child, progress is number of visited nodes.
+     */
+    COLLAPSING
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.flow;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link Flow.Processor} which lemmatizes batches of words. Processor supports single subscriber, see
+ * {@link LemmaBatchProcessor} for demand and ordering rules.
+ * <pre>
+ * SubmissionPublisher&lt;CharSequence[]&gt; publisher = new SubmissionPublisher&lt;&gt;();
+ * LemmaFlowProcessor processor = new LemmaFlowProcessor(lemmatizer, executor, 8);
+ * publisher.subscribe(processor);
+ * processor.subscribe(subscriber);
+ * </pre>
+ *
+ * @author Michal Hlavac
+ */
+public class LemmaFlowProcessor extends LemmaBatchProcessor
+    implements Flow.Processor<CharSequence[], CharSequence[]> {
+
+    private Flow.Subscription subscription;
+    private Flow.Subscriber<? super CharSequence[]> subscriber;
+
+
+    public LemmaFlowProcessor(Lemmatizer lemmatizer) {
+        super(lemmatizer);
+    }
+
+
+    public LemmaFlowProcessor(Lemmatizer lemmatizer, Executor executor, int maxInFlight) {
+        super(lemmatizer, executor, maxInFlight);
+    }
+
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (subscription == null) throw new NullPointerException("subscription");
+        synchronized (this) {
+            if (this.subscription == null) {
+                this.subscription = subscription;
+                subscription = null;
+            }
+        }
+        if (subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        upstreamSubscribed();
+    }
+
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharSequence[]> subscriber) {
+        if (subscriber == null) throw new NullPointerException("subscriber");
+        boolean accepted;
+        synchronized (this) {
+            accepted = this.subscriber == null;
+            if (accepted) this.subscriber = subscriber;
+        }
+        if (!accepted) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Processor supports only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                LemmaFlowProcessor.this.request(n);
+            }
+
+
+            @Override
+            public void cancel() {
+                LemmaFlowProcessor.this.cancel();
+            }
+        });
+        downstreamSubscribed();
+    }
+
+
+    @Override
+    protected void requestUpstream(long n) {
+        upstream().request(n);
+    }
+
+
+    @Override
+    protected void cancelUpstream() {
+        upstream().cancel();
+    }
+
+
+    @Override
+    protected void emitNext(CharSequence[] lemmas) {
+        downstream().onNext(lemmas);
+    }
+
+
+    @Override
+    protected void emitError(Throwable error) {
+        downstream().onError(error);
+    }
+
+
+    @Override
+    protected void emitComplete() {
+        downstream().onComplete();
+    }
+
+
+    private synchronized Flow.Subscription upstream() {
+        return subscription;
+    }
+
+
+    private synchronized Flow.Subscriber<? super CharSequence[]> downstream() {
+        return subscriber;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import java.util.Arrays;
+
+/**
+ * Compares reversed words, i.e. suffixes of words. Java 9+ implementation uses
+ * {@link Arrays#mismatch(char[], char[])}, which HotSpot compiles to SIMD instructions (AVX2 on x86) comparing
+ * many chars per instruction.
+ *
+ * @author Michal Hlavac
+ */
+final class SuffixMatcher {
+
+    private SuffixMatcher() {
+    }
+
+
+    static int mismatch(char[] a, char[] b) {
+        return Arrays.mismatch(a, b);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen;
+
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmaExample;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void resumeTraining() throws IOException {
+        resume(new LemmatizerSettings());
+    }
+
+
+    @Test
+    public void resumeTrainingFront() throws IOException {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(true);
+        resume(settings);
+    }
+
+
+    @Test
+    public void incrementalAdditions() throws IOException {
+        List<String[]> lines = TestLexicon.lines();
+        List<String[]> base = lines.subList(0, lines.size() / 2);
+        List<String[]> more = lines.subList(lines.size() / 3, lines.size());
+
+        DefaultLemmatizer expected = new DefaultLemmatizer();
+        TestLexicon.add(expected, base);
+        TestLexicon.add(expected, more);
+        expected.buildModel();
+
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        TestLexicon.add(lm, base);
+        File file = folder.newFile("base.lgck");
+        LemmatizerFactory.saveCheckpoint(lm, file);
+        DefaultLemmatizer resumed = LemmatizerFactory.readCheckpoint(file);
+        TestLexicon.add(resumed, more);
+        resumed.buildModel();
+
+        assertEquals(expected.getExamples().getRules().size(), resumed.getExamples().getRules().size());
+        assertEquals(signatures(expected), signatures(resumed));
+        assertEquals(expected.getRootNode().toString(), resumed.getRootNode().toString());
+    }
+
+
+    private void resume(LemmatizerSettings settings) throws IOException {
+        List<String[]> lines = TestLexicon.lines();
+        DefaultLemmatizer lm = new DefaultLemmatizer(settings);
+        TestLexicon.add(lm, lines);
+        File file = folder.newFile("checkpoint.lgck");
+        LemmatizerFactory.saveCheckpoint(lm, file);
+        lm.buildModel();
+
+        long start = System.nanoTime();
+        DefaultLemmatizer resumed = LemmatizerFactory.readCheckpoint(file);
+        resumed.buildModel();
+        System.out.println("Model built from checkpoint in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        assertEquals(signatures(lm), signatures(resumed));
+        assertEquals(lm.getRootNode().toString(), resumed.getRootNode().toString());
+        if (settings.isBuildFrontLemmatizer()) {
+            assertEquals(lm.getRootNodeFront().toString(), resumed.getRootNodeFront().toString());
+        }
+        for (String[] line : lines) {
+            assertEquals(lm.lemmatize(line[0]).toString(), resumed.lemmatize(line[0]).toString());
+        }
+
+        File model = folder.newFile("model.lem");
+        LemmatizerFactory.saveToFile(lm, model);
+        try {
+            LemmatizerFactory.readCheckpoint(model);
+            fail("Model is not a checkpoint");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+
+    private static List<String> signatures(DefaultLemmatizer lm) {
+        List<String> result = new ArrayList<>();
+        for (LemmaExample le : lm.getExamples().getExamplesList()) {
+            result.add(le.getSignature() + " " + le.getWeight() + " " + le.getRule().getId());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen;
+
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.metrics.LemmatizerMetrics;
+import eu.hlavki.text.lemmagen.metrics.MetricsExporter;
+import eu.hlavki.text.lemmagen.metrics.MetricsRegistry;
+import eu.hlavki.text.lemmagen.metrics.MetricsSnapshot;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @After
+    public void afterTest() {
+        MetricsRegistry.setEnabled(false);
+    }
+
+    @Test
+    public void disabledByDefault() {
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        assertNull(lm.getMetrics());
+    }
+
+    @Test
+    public void recordLemmatizations() throws IOException {
+        MetricsRegistry.setEnabled(true);
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        lm.addExample("items", "item");
+        lm.addExample("dogs", "dog");
+        lm.addExample("singing", "sing");
+        lm.addExample("sing", "sing");
+        lm.buildModel();
+
+        LemmatizerMetrics metrics = lm.getMetrics();
+        assertNotNull(metrics);
+        metrics.reset();
+
+        assertEquals("cat", lm.lemmatize("cats").toString());
+        assertEquals("dog", lm.lemmatize("dogs").toString());
+        assertEquals("sing", lm.lemmatize("sing").toString());
+
+        assertEquals(3, metrics.getLemmatizeCount());
+        assertEquals(1, metrics.getDefaultRuleCount());
+        assertEquals(3, metrics.getLatency().getCount());
+        assertEquals(3, metrics.getDepth().getCount());
+
+        File tmpLemFile = File.createTempFile("lemmagen", ".lem");
+        try {
+            LemmatizerFactory.saveToFile(lm, tmpLemFile);
+            assertEquals(1, metrics.getSaveTime().getCount());
+            DefaultLemmatizer read = (DefaultLemmatizer) LemmatizerFactory.readFromFile(tmpLemFile);
+            assertSame(metrics, read.getMetrics());
+            assertEquals(1, metrics.getReadTime().getCount());
+        } finally {
+            tmpLemFile.delete();
+        }
+
+        final List<MetricsSnapshot> exported = new ArrayList<>();
+        MetricsExporter exporter = new MetricsExporter() {
+            @Override
+            public void export(Collection<MetricsSnapshot> snapshots) {
+                exported.addAll(snapshots);
+            }
+        };
+        MetricsRegistry.addExporter(exporter);
+        try {
+            MetricsRegistry.export();
+        } finally {
+            MetricsRegistry.removeExporter(exporter);
+        }
+        assertFalse(exported.isEmpty());
+        System.out.println(exported);
+    }
+}
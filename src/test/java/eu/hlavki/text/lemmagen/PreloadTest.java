@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PreloadTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private ClassLoader contextClassLoader;
+
+
+    @Before
+    public void beforeTest() throws IOException {
+        File dir = folder.getRoot();
+        save(new File(dir, "test-a.lem"), "dogs", "dog");
+        save(new File(dir, "test-b.lem"), "cats", "cat");
+        save(new File(dir, "test-c.lem"), "mice", "mouse");
+        contextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{dir.toURI().toURL()}));
+    }
+
+
+    @After
+    public void afterTest() {
+        Thread.currentThread().setContextClassLoader(contextClassLoader);
+    }
+
+
+    @Test
+    public void preloadInParallel() throws Exception {
+        PreloadResult result = LemmatizerFactory.preload(Arrays.asList("test-c", "test-a", "test-b"), 2)
+            .get(30, TimeUnit.SECONDS);
+        System.out.println(result);
+        assertEquals(Arrays.asList("test-c", "test-a", "test-b"), new ArrayList<>(result.getLoadTimes().keySet()));
+        assertEquals(Arrays.asList("test-c", "test-a", "test-b"), new ArrayList<>(result.getLemmatizers().keySet()));
+        assertEquals("dog", result.get("test-a").lemmatize("dogs").toString());
+        assertEquals("cat", result.get("test-b").lemmatize("cats").toString());
+        assertEquals("mouse", result.get("test-c").lemmatize("mice").toString());
+        for (long time : result.getLoadTimes().values()) {
+            assertTrue(time > 0 && time <= result.getTotalTime());
+        }
+    }
+
+
+    @Test
+    public void preloadFailsFastOnMissingLexicon() {
+        try {
+            LemmatizerFactory.preload(Arrays.asList("test-a", "missing"), 2);
+            fail("Missing lexicon must be reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("missing"));
+        }
+    }
+
+
+    @Test
+    public void prebuiltAsync() throws Exception {
+        Lemmatizer lm = LemmatizerFactory.getPrebuiltAsync("test-a").get(30, TimeUnit.SECONDS);
+        assertEquals("dog", lm.lemmatize("dogs").toString());
+        try {
+            LemmatizerFactory.getPrebuiltAsync("missing");
+            fail("Missing lexicon must be reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("missing.lem"));
+        }
+    }
+
+
+    private static void save(File file, String word, String lemma) throws IOException {
+        DefaultLemmatizer lm = new DefaultLemmatizer(new LemmatizerSettings());
+        lm.addExample(word, lemma);
+        lm.addExample("tree", "tree");
+        lm.buildModel();
+        LemmatizerFactory.saveToFile(lm, file);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen;
+
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReloadableLemmatizerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void reloadAndRollback() throws Exception {
+        File file = new File(folder.getRoot(), "model.lem");
+        save(file, "dogs", "dog");
+        try (ReloadableLemmatizer lm = new ReloadableLemmatizer(file)) {
+            assertEquals(1, lm.getVersion().getVersion());
+            assertTrue(lm.getVersion().getLoadTime() > 0);
+            assertNull(lm.getPreviousVersion());
+            assertEquals("dog", lm.lemmatize("dogs").toString());
+
+            replace(file, "dogs", "hound");
+            ModelVersion version = lm.reload().get(30, TimeUnit.SECONDS);
+            assertEquals(2, version.getVersion());
+            assertSame(version, lm.getVersion());
+            assertEquals("hound", lm.lemmatize("dogs").toString());
+
+            assertTrue(lm.rollback());
+            assertEquals(1, lm.getVersion().getVersion());
+            assertEquals("dog", lm.lemmatize("dogs").toString());
+            assertFalse(lm.rollback());
+        }
+    }
+
+
+    @Test
+    public void invalidModelNotPublished() throws Exception {
+        File file = new File(folder.getRoot(), "model.lem");
+        save(file, "dogs", "dog");
+        try (ReloadableLemmatizer lm = new ReloadableLemmatizer(file)) {
+            lm.setSmokeTest(Collections.singletonMap("dogs", "dog"));
+            replace(file, "dogs", "hound");
+            try {
+                lm.reload().get(30, TimeUnit.SECONDS);
+                fail("Model failing smoke test must not be published");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[]{1, 2, 3});
+            }
+            try {
+                lm.load(file);
+                fail("Corrupted model must not be published");
+            } catch (IOException e) {
+                // expected
+            }
+            assertEquals(1, lm.getVersion().getVersion());
+            assertEquals("dog", lm.lemmatize("dogs").toString());
+        }
+    }
+
+
+    @Test
+    public void watchFile() throws Exception {
+        File file = new File(folder.getRoot(), "model.lem");
+        save(file, "dogs", "dog");
+        try (ReloadableLemmatizer lm = new ReloadableLemmatizer(file)) {
+            lm.setSettleDelay(100);
+            lm.watch();
+            replace(file, "dogs", "hound");
+            long deadline = System.currentTimeMillis() + 30000;
+            while (lm.getVersion().getVersion() == 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals("hound", lm.lemmatize("dogs").toString());
+        }
+    }
+
+
+    private void replace(File file, String word, String lemma) throws IOException {
+        File tmp = folder.newFile();
+        save(tmp, word, lemma);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    private static void save(File file, String word, String lemma) throws IOException {
+        DefaultLemmatizer lm = new DefaultLemmatizer(new LemmatizerSettings());
+        lm.addExample(word, lemma);
+        lm.addExample("tree", "tree");
+        lm.buildModel();
+        LemmatizerFactory.saveToFile(lm, file);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen;
+
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * English test lexicon <code>wfl-me-en.tbl</code> in format <code>WLM</code> shared by tests and benchmarks.
+ *
+ * @author Michal Hlavac
+ */
+public final class TestLexicon {
+
+    public static final String RESOURCE = "/wfl-me-en.tbl";
+    public static final String FORMAT = "WLM";
+
+
+    private TestLexicon() {
+    }
+
+
+    /**
+     * @return new reader of the lexicon, caller closes it
+     * @throws IOException if resource is missing
+     */
+    public static BufferedReader reader() throws IOException {
+        InputStream in = TestLexicon.class.getResourceAsStream(RESOURCE);
+        if (in == null) throw new IOException("Missing test lexicon " + RESOURCE);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Reads the lexicon as multext file. Model isn't built.
+     *
+     * @param settings settings
+     * @return lemmatizer with examples of the lexicon
+     * @throws IOException if lexicon cannot be read
+     */
+    public static DefaultLemmatizer read(LemmatizerSettings settings) throws IOException {
+        try (BufferedReader br = reader()) {
+            return new DefaultLemmatizer(br, FORMAT, settings);
+        }
+    }
+
+
+    /**
+     * @return lines of the lexicon as word, lemma and msd; lemma <code>=</code> is replaced by word
+     * @throws IOException if lexicon cannot be read
+     */
+    public static List<String[]> lines() throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        try (BufferedReader br = reader()) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] cols = line.split("\t");
+                lines.add(new String[]{cols[0], "=".equals(cols[1]) ? cols[0] : cols[1], cols[2]});
+            }
+        }
+        return lines;
+    }
+
+
+    /**
+     * @return word forms of the lexicon in the order of lines
+     * @throws IOException if lexicon cannot be read
+     */
+    public static List<String> words() throws IOException {
+        List<String> words = new ArrayList<>();
+        for (String[] line : lines()) {
+            words.add(line[0]);
+        }
+        return words;
+    }
+
+
+    /**
+     * Adds every line of the lexicon as example with weight 1.
+     *
+     * @param lm lemmatizer
+     * @param lines lines returned by {@link #lines()}
+     */
+    public static void add(DefaultLemmatizer lm, List<String[]> lines) {
+        for (String[] line : lines) {
+            lm.addExample(line[0], line[1], 1, line[2]);
+        }
+    }
+
+
+    /**
+     * Trains lemmatizer on the whole lexicon and builds its model.
+     *
+     * @param settings settings
+     * @return lemmatizer with built model
+     * @throws IOException if lexicon cannot be read
+     */
+    public static DefaultLemmatizer train(LemmatizerSettings settings) throws IOException {
+        return train(settings, new ArrayList<String>());
+    }
+
+
+    /**
+     * Trains lemmatizer with default settings on the whole lexicon and builds its model.
+     *
+     * @param front whether front lemmatizer is built too
+     * @return lemmatizer with built model
+     * @throws IOException if lexicon cannot be read
+     */
+    public static DefaultLemmatizer train(boolean front) throws IOException {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(front);
+        return train(settings);
+    }
+
+
+    /**
+     * Trains lemmatizer on the whole lexicon and builds its model.
+     *
+     * @param settings settings
+     * @param words list which receives word forms of the lexicon
+     * @return lemmatizer with built model
+     * @throws IOException if lexicon cannot be read
+     */
+    public static DefaultLemmatizer train(LemmatizerSettings settings, List<String> words) throws IOException {
+        DefaultLemmatizer lm = new DefaultLemmatizer(settings);
+        List<String[]> lines = lines();
+        add(lm, lines);
+        for (String[] line : lines) {
+            words.add(line[0]);
+        }
+        lm.buildModel();
+        return lm;
+    }
+}
@@ -25,12 +25,9 @@ import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
 import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 public class TrainTest {
 
-    private static final String TEST_DICTIONARY = "/wfl-me-en.tbl";
     private static final String[] ACTUAL_WORDS = new String[]{"respond", "are", "uninflected", "items", "underlying", "singing"};
     private static final String[][] LEMMA_WORDS = new String[][]{
         {"respond", "be", "uninflect", "item", "underlie", "sing"}
@@ -56,11 +53,11 @@ public class TrainTest {
 //            settings.setMaxRulesPerNode(0);
 //            settings.setBuildFrontLemmatizer(true);
 
-            InputStream in = TrainTest.class.getResourceAsStream(TEST_DICTIONARY);
-            BufferedReader br = new BufferedReader(new InputStreamReader(in, "UTF-8"));
-
             System.out.println("Building model...");
-            DefaultLemmatizer lm = new DefaultLemmatizer(br, format, settings);
+            DefaultLemmatizer lm;
+            try (BufferedReader br = TestLexicon.reader()) {
+                lm = new DefaultLemmatizer(br, format, settings);
+            }
             lm.buildModel();
 
             System.out.println("Model built");
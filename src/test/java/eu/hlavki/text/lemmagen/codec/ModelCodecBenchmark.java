@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.codec;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Compares size and load time of model saved by every codec, sequential and sectioned. Model is trained
+ * from the test lexicon or read from file given as argument:
+ * <pre>
+ * java -cp target/classes:target/test-classes:slf4j-api.jar \
+ *     eu.hlavki.text.lemmagen.codec.ModelCodecBenchmark [model.lem]
+ * </pre>
+ */
+public class ModelCodecBenchmark {
+
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws IOException {
+        DefaultLemmatizer lm;
+        if (args.length > 0) {
+            lm = (DefaultLemmatizer) LemmatizerFactory.read(Files.newInputStream(new File(args[0]).toPath()));
+        } else {
+            lm = TestLexicon.read(new LemmatizerSettings());
+            lm.buildModel();
+        }
+
+        // the first pass warms up JIT
+        for (boolean print : new boolean[]{false, true}) {
+            for (boolean sectioned : new boolean[]{false, true}) {
+                bench(lm, ModelCodec.NONE, Deflater.DEFAULT_COMPRESSION, sectioned, print);
+                bench(lm, ModelCodec.LZ, Deflater.DEFAULT_COMPRESSION, sectioned, print);
+                bench(lm, ModelCodec.DEFLATE, Deflater.BEST_SPEED, sectioned, print);
+                bench(lm, ModelCodec.DEFLATE, Deflater.DEFAULT_COMPRESSION, sectioned, print);
+                bench(lm, ModelCodec.DEFLATE, Deflater.BEST_COMPRESSION, sectioned, print);
+                bench(lm, ModelCodec.GZIP, Deflater.DEFAULT_COMPRESSION, sectioned, print);
+            }
+        }
+    }
+
+
+    private static void bench(DefaultLemmatizer lm, ModelCodec codec, int level, boolean sectioned,
+        boolean print) throws IOException {
+        File file = File.createTempFile("lemmagen", ".lem");
+        try {
+            if (sectioned) {
+                LemmatizerFactory.saveSectioned(lm, file, codec, level);
+            } else {
+                LemmatizerFactory.saveToFile(lm, file, codec, level);
+            }
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            long[] times = new long[ROUNDS];
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                LemmatizerFactory.read(new ByteArrayInputStream(bytes));
+                times[round] = System.nanoTime() - start;
+            }
+            Arrays.sort(times);
+            if (print) System.out.printf("%-8s %-10s level %2d: %9d bytes, median load %6.2f ms%n", codec,
+                sectioned ? "sectioned" : "sequential", level, bytes.length, times[ROUNDS / 2] / 1e6);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.codec;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModelCodecTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void roundTripAllCodecs() throws IOException {
+        DefaultLemmatizer lm = model();
+        for (ModelCodec codec : ModelCodec.values()) {
+            File file = folder.newFile(codec + ".lem");
+            LemmatizerFactory.saveToFile(lm, file, codec, Deflater.BEST_SPEED);
+            try (InputStream in = new FileInputStream(file)) {
+                Lemmatizer read = LemmatizerFactory.read(in);
+                assertEquals(codec.toString(), "dog", read.lemmatize("dogs").toString());
+                assertEquals(codec.toString(), "mouse", read.lemmatize("mice").toString());
+            }
+        }
+    }
+
+
+    @Test
+    public void readLegacyModel() throws IOException {
+        File file = folder.newFile("legacy.lem");
+        try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(file)))) {
+            model().writeObject(out, false);
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            assertEquals("dog", LemmatizerFactory.read(in).lemmatize("dogs").toString());
+        }
+    }
+
+
+    @Test
+    public void defaultSaveWritesLegacyModel() throws IOException {
+        File file = folder.newFile("default.lem");
+        LemmatizerFactory.saveToFile(model(), file);
+        // plain GZIP stream without header, readable by older versions
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(file)))) {
+            assertEquals("dog", new DefaultLemmatizer(in).lemmatize("dogs").toString());
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            assertTrue(ModelFormat.read(in).isLegacy());
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            assertEquals("mouse", LemmatizerFactory.read(in).lemmatize("mice").toString());
+        }
+    }
+
+
+    @Test
+    public void thresholdsFlaggedInHeader() throws IOException {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setMinSplitGain(0.5);
+        settings.setMaxDepth(7);
+        DefaultLemmatizer lm = model(settings);
+
+        File plain = folder.newFile("plain.lem");
+        LemmatizerFactory.saveToFile(model(), plain, ModelCodec.GZIP, Deflater.DEFAULT_COMPRESSION);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(plain))) {
+            assertEquals(0, ModelFormat.read(in).getFlags());
+        }
+
+        File file = folder.newFile("thresholds.lem");
+        LemmatizerFactory.saveToFile(lm, file, ModelCodec.GZIP, Deflater.DEFAULT_COMPRESSION);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            assertTrue(ModelFormat.read(in).hasFlag(ModelFormat.THRESHOLDS_FLAG));
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            DefaultLemmatizer read = (DefaultLemmatizer) LemmatizerFactory.read(in);
+            assertEquals(0.5, read.getSettings().getMinSplitGain(), 0);
+            assertEquals(7, read.getSettings().getMaxDepth());
+            assertEquals("dog", read.lemmatize("dogs").toString());
+        }
+
+        File sectioned = folder.newFile("sectioned.lem");
+        LemmatizerFactory.saveSectioned(lm, sectioned, ModelCodec.GZIP, Deflater.DEFAULT_COMPRESSION);
+        try (InputStream in = new FileInputStream(sectioned)) {
+            DefaultLemmatizer read = (DefaultLemmatizer) LemmatizerFactory.read(in);
+            assertEquals(7, read.getSettings().getMaxDepth());
+            assertEquals("mouse", read.lemmatize("mice").toString());
+        }
+    }
+
+
+    @Test
+    public void legacyModelKeepsOriginalSettings() throws IOException {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setMsdConsider(LemmatizerSettings.MsdConsideration.JOIN_SAME_SUBSTRING);
+        settings.setMaxDepth(7);
+        File file = folder.newFile("legacy-thresholds.lem");
+        LemmatizerFactory.saveToFile(model(settings), file);
+        // settings are in the original layout, thresholds are not saved
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new FileInputStream(file)))) {
+            DefaultLemmatizer read = new DefaultLemmatizer(in);
+            assertEquals(LemmatizerSettings.MsdConsideration.JOIN_SAME_SUBSTRING,
+                read.getSettings().getMsdConsider());
+            assertEquals(0, read.getSettings().getMaxDepth());
+            assertEquals("dog", read.lemmatize("dogs").toString());
+        }
+    }
+
+
+    @Test
+    public void detectCorruptedModel() throws IOException {
+        File file = folder.newFile("none.lem");
+        LemmatizerFactory.saveToFile(model(), file, ModelCodec.NONE, Deflater.DEFAULT_COMPRESSION);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length / 2] ^= 0x10;
+        try {
+            LemmatizerFactory.read(new ByteArrayInputStream(bytes));
+            fail("Corruption must be detected");
+        } catch (IOException e) {
+            assertEquals("Block checksum mismatch", e.getMessage());
+        }
+    }
+
+
+    @Test
+    public void lzBlocks() throws IOException {
+        Random random = new Random(42);
+        for (int size : new int[]{0, 1, 3, 4, 15, 16, 300, 70000, 300000}) {
+            byte[] noise = new byte[size];
+            random.nextBytes(noise);
+            assertArrayEquals(noise, lzRoundTrip(noise));
+
+            byte[] text = new byte[size];
+            for (int idx = 0; idx < size; idx++) {
+                text[idx] = (byte) "abcabcabdabcaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaxyz".charAt(random.nextInt(47) % (idx % 47 + 1));
+            }
+            assertArrayEquals(text, lzRoundTrip(text));
+        }
+    }
+
+
+    private static byte[] lzRoundTrip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new BlockOutputStream(bytes, true)) {
+            out.write(data);
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream in = new BlockInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            byte[] buf = new byte[1000];
+            int read;
+            while ((read = in.read(buf)) >= 0) {
+                result.write(buf, 0, read);
+            }
+        }
+        return result.toByteArray();
+    }
+
+
+    private static DefaultLemmatizer model() {
+        return model(new LemmatizerSettings());
+    }
+
+
+    private static DefaultLemmatizer model(LemmatizerSettings settings) {
+        DefaultLemmatizer lm = new DefaultLemmatizer(settings);
+        lm.addExample("dogs", "dog");
+        lm.addExample("mice", "mouse");
+        lm.addExample("tree", "tree");
+        lm.buildModel();
+        return lm;
+    }
+}
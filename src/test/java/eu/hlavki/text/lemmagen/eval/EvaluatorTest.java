@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.eval;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings.MsdConsideration;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class EvaluatorTest {
+
+    @Test
+    public void splitKeepsWordsTogether() throws IOException {
+        Lexicon lexicon = load();
+        List<Lexicon> folds = lexicon.split(5, 1);
+        int size = 0;
+        Set<String> seen = new HashSet<>();
+        for (Lexicon fold : folds) {
+            size += fold.size();
+            Set<String> words = new HashSet<>();
+            for (Lexicon.Entry entry : fold.getEntries()) {
+                words.add(entry.getWord());
+            }
+            for (String word : words) {
+                assertTrue(word, seen.add(word));
+            }
+        }
+        assertEquals(lexicon.size(), size);
+        assertEquals(lexicon.size() - folds.get(2).size(), Lexicon.join(folds, 2).size());
+    }
+
+
+    @Test
+    public void evaluateGrid() throws IOException {
+        Evaluator evaluator = new Evaluator();
+        evaluator.setFolds(3);
+        evaluator.setThreads(4);
+        List<LemmatizerSettings> grid = Evaluator.grid(new boolean[]{true, false},
+            new MsdConsideration[]{MsdConsideration.DISTINCT}, new int[]{0}, new boolean[]{false});
+        List<EvaluationResult> results = evaluator.evaluate(load(), grid);
+        StringBuilder sb = new StringBuilder();
+        EvaluationResult.write(results, sb);
+        System.out.print(sb);
+
+        assertEquals(2, results.size());
+        for (EvaluationResult result : results) {
+            assertEquals(3, result.getFolds());
+            assertTrue(result.getAccuracy() > 0.5 && result.getAccuracy() <= 1);
+            assertTrue(result.getModelBytes() > 0);
+            assertTrue(result.getNodes() > 1);
+            assertTrue(result.getWordsPerSecond() > 0);
+        }
+        assertTrue(results.get(0).getSettings().isUseFromInRules());
+    }
+
+
+    @Test
+    public void thresholdsReport() throws IOException {
+        List<LemmatizerSettings> settingsList = new ArrayList<>();
+        settingsList.add(new LemmatizerSettings());
+        for (double weight : new double[]{2, 5}) {
+            LemmatizerSettings settings = new LemmatizerSettings();
+            settings.setMinSubtreeWeight(weight);
+            settingsList.add(settings);
+        }
+        for (double gain : new double[]{2, 5}) {
+            LemmatizerSettings settings = new LemmatizerSettings();
+            settings.setMinSplitGain(gain);
+            settingsList.add(settings);
+        }
+        LemmatizerSettings depth = new LemmatizerSettings();
+        depth.setMaxDepth(4);
+        settingsList.add(depth);
+
+        Evaluator evaluator = new Evaluator();
+        evaluator.setFolds(3);
+        List<EvaluationResult> results = evaluator.evaluate(load(), settingsList);
+        System.out.println("min weight  min gain  max depth     nodes  accuracy");
+        for (EvaluationResult result : results) {
+            LemmatizerSettings settings = result.getSettings();
+            System.out.println(String.format(Locale.ROOT, "%10.1f %9.1f %10d %9d %8.3f%%",
+                settings.getMinSubtreeWeight(), settings.getMinSplitGain(), settings.getMaxDepth(),
+                result.getNodes(), 100 * result.getAccuracy()));
+        }
+
+        EvaluationResult full = results.get(0);
+        for (EvaluationResult result : results.subList(1, results.size())) {
+            assertTrue(result.getNodes() < full.getNodes());
+            assertTrue(result.getAccuracy() > 0.5);
+        }
+        assertTrue(results.get(2).getNodes() <= results.get(1).getNodes());
+        assertTrue(results.get(4).getNodes() <= results.get(3).getNodes());
+    }
+
+
+    private static Lexicon load() throws IOException {
+        try (BufferedReader br = TestLexicon.reader()) {
+            return Lexicon.read(br, TestLexicon.FORMAT);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.flow;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LemmaBatchProcessorTest {
+
+    private static final Lemmatizer LOWER = new Lemmatizer() {
+        @Override
+        public CharSequence lemmatize(CharSequence word) {
+            if ("FAIL".equals(word.toString())) throw new IllegalStateException("failed");
+            return word.toString().toLowerCase();
+        }
+    };
+
+
+    @Test
+    public void keepsOrderOfBatches() {
+        HeldExecutor executor = new HeldExecutor();
+        Collector processor = new Collector(executor, 3);
+        processor.request(Long.MAX_VALUE);
+        assertEquals(3, processor.upstreamRequested);
+        processor.onNext(new CharSequence[]{"A", "B"});
+        processor.onNext(new CharSequence[]{"C"});
+        processor.onNext(new CharSequence[]{"D", "E", "F"});
+        assertEquals(3, processor.upstreamRequested);
+
+        // last batch finishes first
+        executor.runReversed();
+        assertEquals(3, processor.lemmas.size());
+        assertArrayEquals(new CharSequence[]{"a", "b"}, processor.lemmas.get(0));
+        assertArrayEquals(new CharSequence[]{"c"}, processor.lemmas.get(1));
+        assertArrayEquals(new CharSequence[]{"d", "e", "f"}, processor.lemmas.get(2));
+        assertEquals(6, processor.upstreamRequested);
+
+        processor.onComplete();
+        assertTrue(processor.completed);
+    }
+
+
+    @Test
+    public void honorsDownstreamDemand() {
+        HeldExecutor executor = new HeldExecutor();
+        Collector processor = new Collector(executor, 4);
+        assertEquals(0, processor.upstreamRequested);
+        processor.request(1);
+        assertEquals(1, processor.upstreamRequested);
+        processor.onNext(new CharSequence[]{"A"});
+        executor.runReversed();
+        assertEquals(1, processor.lemmas.size());
+        assertEquals(1, processor.upstreamRequested);
+
+        processor.request(2);
+        assertEquals(3, processor.upstreamRequested);
+        processor.onNext(new CharSequence[]{"B"});
+        processor.onNext(new CharSequence[]{"C"});
+        processor.onComplete();
+        executor.runReversed();
+        assertEquals(3, processor.lemmas.size());
+        assertTrue(processor.completed);
+    }
+
+
+    @Test
+    public void completionWaitsForBatchesInProgress() {
+        HeldExecutor executor = new HeldExecutor();
+        Collector processor = new Collector(executor, 2);
+        processor.request(2);
+        processor.onNext(new CharSequence[]{"A"});
+        processor.onComplete();
+        assertFalse(processor.completed);
+        executor.runReversed();
+        assertEquals(1, processor.lemmas.size());
+        assertTrue(processor.completed);
+    }
+
+
+    @Test
+    public void failedBatchCancelsUpstream() {
+        HeldExecutor executor = new HeldExecutor();
+        Collector processor = new Collector(executor, 4);
+        processor.request(Long.MAX_VALUE);
+        processor.onNext(new CharSequence[]{"A"});
+        processor.onNext(new CharSequence[]{"FAIL"});
+        processor.onNext(new CharSequence[]{"B"});
+        executor.runReversed();
+        assertEquals(1, processor.lemmas.size());
+        assertTrue(processor.error instanceof IllegalStateException);
+        assertTrue(processor.upstreamCancelled);
+        assertFalse(processor.completed);
+    }
+
+
+    @Test
+    public void invalidRequestFails() {
+        Collector processor = new Collector(new HeldExecutor(), 4);
+        processor.request(0);
+        assertTrue(processor.error instanceof IllegalArgumentException);
+        assertTrue(processor.upstreamCancelled);
+        assertEquals(0, processor.upstreamRequested);
+    }
+
+    /**
+     * Holds tasks until test runs them.
+     */
+    private static final class HeldExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+
+        void runReversed() {
+            List<Runnable> run = new ArrayList<>(tasks);
+            tasks.clear();
+            Collections.reverse(run);
+            for (Runnable task : run) {
+                task.run();
+            }
+        }
+    }
+
+    private static final class Collector extends LemmaBatchProcessor {
+
+        private final List<CharSequence[]> lemmas = new ArrayList<>();
+        private long upstreamRequested;
+        private boolean upstreamCancelled;
+        private boolean completed;
+        private Throwable error;
+
+
+        Collector(Executor executor, int maxInFlight) {
+            super(LOWER, executor, maxInFlight);
+            upstreamSubscribed();
+            downstreamSubscribed();
+        }
+
+
+        @Override
+        protected void requestUpstream(long n) {
+            upstreamRequested += n;
+        }
+
+
+        @Override
+        protected void cancelUpstream() {
+            upstreamCancelled = true;
+        }
+
+
+        @Override
+        protected void emitNext(CharSequence[] lemmas) {
+            this.lemmas.add(lemmas);
+        }
+
+
+        @Override
+        protected void emitError(Throwable error) {
+            this.error = error;
+        }
+
+
+        @Override
+        protected void emitComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings.MsdConsideration;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ExampleListTest {
+
+    @Test
+    public void joinExamples() {
+        ExampleList distinct = new ExampleList(new LemmatizerSettings(true, MsdConsideration.DISTINCT, 0, false));
+        distinct.addExample("dogs", "dog", 1, "Ncnp");
+        distinct.addExample("dogs", "dog", 2, "Ncnp");
+        distinct.addExample("dogs", "dog", 1, "Vmip3s");
+        distinct.addExample("dogs", "dog", 1, null);
+        distinct.addExample("dogs", "dog", 1, "");
+        assertEquals(3, distinct.getSize());
+        assertNull(distinct.get(0).getMsd());
+        assertEquals(2, distinct.get(0).getWeight(), 0);
+        assertEquals(3, distinct.get(1).getWeight(), 0);
+        assertEquals("[dogs]==>[dog](Ncnp)", distinct.get(1).getSignature());
+
+        ExampleList joined = new ExampleList(new LemmatizerSettings(true, MsdConsideration.JOIN_ALL, 0, false));
+        joined.addExample("dogs", "dog", 1, "Ncnp");
+        joined.addExample("dogs", "dog", 1, "Vmip3s");
+        assertEquals(1, joined.getSize());
+        assertEquals("Ncnp|Vmip3s", joined.get(0).getMsd());
+        assertEquals("[dogs]==>[dog]", joined.get(0).getSignature());
+    }
+
+
+    @Test
+    public void readFrequencyColumn() throws IOException {
+        String lexicon = "dogs\tdog\tNcnp\t3\ncats\t=\tNcnp\t2.5\nbroken\tline\n";
+        ExampleList examples = new ExampleList(new LemmatizerSettings(true, MsdConsideration.DISTINCT, 0, false));
+        examples.addMultextFile(new BufferedReader(new StringReader(lexicon)), "WLMF");
+        assertEquals(2, examples.getSize());
+        assertEquals("[dogs]==>[dog](Ncnp)", examples.get(0).getSignature());
+        assertEquals(3, examples.get(0).getWeight(), 0);
+        assertEquals("[cats]==>[cats](Ncnp)", examples.get(1).getSignature());
+        assertEquals(2.5, examples.get(1).getWeight(), 0);
+    }
+
+
+    @Test
+    public void shareRules() throws IOException, ClassNotFoundException {
+        LemmatizerSettings settings = new LemmatizerSettings(false, MsdConsideration.IGNORE, 0, false);
+        ExampleList examples = new ExampleList(settings);
+        LemmaRule cats = new LemmaExample("cats", "cat", 1, null, examples.getRules(), settings).getRule();
+        LemmaRule dogs = new LemmaExample("dogs", "dog", 1, null, examples.getRules(), settings).getRule();
+        LemmaRule mice = new LemmaExample("mice", "mouse", 1, null, examples.getRules(), settings).getRule();
+        assertSame(cats, dogs);
+        assertNotSame(cats, mice);
+        assertEquals(3, examples.getRules().size());
+        assertEquals("[#1]==>[]", cats.getSignature());
+        assertSame(cats, examples.getRules().get("[#1]==>[]"));
+        assertSame(mice, examples.getRules().getById(mice.getId()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            examples.getRules().writeObject(out, true);
+        }
+        RuleList read = new RuleList(new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())), null);
+        assertEquals(3, read.size());
+        assertEquals(mice.getSignature(), read.getById(mice.getId()).getSignature());
+        assertSame(read.getDefaultRule(), read.get("[#0]==>[]"));
+        assertSame(read.get("[#1]==>[]"), new LemmaExample("houses", "house", 1, null, read, settings).getRule());
+    }
+
+
+    @Test
+    public void releaseWordCharsAfterBuild() {
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        lm.addExample("dogs", "dog", 1, null);
+        lm.addExample("cats", "cat", 1, null);
+        lm.addExample("mice", "mouse", 1, null);
+        lm.addExample("house", "house", 1, null);
+        LemmaExample dogs = lm.getExamples().get(2);
+        assertEquals("dogs", dogs.getWord());
+        char[] chars = dogs.getWordCharsReversed();
+        assertSame(chars, dogs.getWordCharsReversed());
+        lm.buildModel();
+        assertNotSame(chars, dogs.getWordCharsReversed());
+        assertArrayEquals(chars, dogs.getWordCharsReversed());
+    }
+
+
+    @Test
+    public void mergeBuffers() throws IOException, InterruptedException {
+        LemmatizerSettings settings = new LemmatizerSettings(true, MsdConsideration.JOIN_ALL, 0, false);
+        final List<String[]> lines = new ArrayList<>();
+        try (BufferedReader reader = TestLexicon.reader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line.split("\t"));
+            }
+        }
+        ExampleList sequential = new ExampleList(settings);
+        for (int idx = 0; idx < lines.size(); idx++) {
+            String[] line = lines.get(idx);
+            sequential.addExample(line[0], line[1], 1 + idx % 3 / 10.0, line[2]);
+        }
+
+        ExampleList concurrent = new ExampleList(settings);
+        final int producers = 4;
+        List<Thread> threads = new ArrayList<>();
+        for (int producer = 0; producer < producers; producer++) {
+            final ExampleBuffer buffer = concurrent.newBuffer();
+            final int first = producer * lines.size() / producers;
+            final int last = (producer + 1) * lines.size() / producers;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int idx = first; idx < last; idx++) {
+                        String[] line = lines.get(idx);
+                        buffer.addExample(line[0], line[1], 1 + idx % 3 / 10.0, line[2]);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(sequential.getSize(), concurrent.getSize());
+        assertEquals(sequential.getRules().size(), concurrent.getRules().size());
+        for (int id = 0; id < sequential.getRules().size(); id++) {
+            assertEquals(sequential.getRules().getById(id).getSignature(),
+                concurrent.getRules().getById(id).getSignature());
+        }
+        for (int idx = 0; idx < sequential.getSize(); idx++) {
+            LemmaExample expected = sequential.get(idx);
+            LemmaExample actual = concurrent.get(idx);
+            assertEquals(expected.getSignature(), actual.getSignature());
+            assertEquals(expected.getMsd(), actual.getMsd());
+            assertEquals(expected.getWeight(), actual.getWeight(), 0);
+            assertSame(actual.getRule(), concurrent.getRules().getById(actual.getRule().getId()));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings.MsdConsideration;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ExampleSorterTest {
+
+    @Test
+    public void sortLexicon() throws IOException {
+        ExampleList examples;
+        try (BufferedReader br = TestLexicon.reader()) {
+            examples = new ExampleList(br, TestLexicon.FORMAT, new LemmatizerSettings());
+        }
+        assertSorted(examples.getExamplesList());
+    }
+
+
+    @Test
+    public void sortSimilarWords() {
+        Random random = new Random(3);
+        String[] msds = {"", "!x", "Nc", "(a", ")b", null};
+        for (MsdConsideration msd : MsdConsideration.values()) {
+            ExampleList examples = new ExampleList(new LemmatizerSettings(true, msd, 0, false));
+            for (int idx = 0; idx < 20000; idx++) {
+                StringBuilder word = new StringBuilder();
+                for (int len = random.nextInt(6); len >= 0; len--) {
+                    word.append(random.nextInt(10) == 0 ? 'š' : (char) ('a' + random.nextInt(3)));
+                }
+                String lemma = random.nextBoolean() ? word.toString() : word.substring(0, word.length() / 2);
+                // joining of missing msd is supported only by DISTINCT and IGNORE
+                int msdCount = msd == MsdConsideration.DISTINCT || msd == MsdConsideration.IGNORE ? msds.length
+                    : msds.length - 1;
+                examples.addExample(word.toString(), lemma, 1, msds[random.nextInt(msdCount)]);
+            }
+            assertSorted(examples.getExamplesList());
+        }
+    }
+
+
+    private static void assertSorted(List<LemmaExample> sorted) {
+        List<LemmaExample> expected = new ArrayList<>(sorted);
+        Collections.shuffle(expected, new Random(1));
+        Collections.sort(expected);
+        assertEquals(expected, ExampleSorter.sort(expected, false));
+        assertEquals(expected, ExampleSorter.sort(expected, true));
+        assertEquals(expected, sorted);
+    }
+}
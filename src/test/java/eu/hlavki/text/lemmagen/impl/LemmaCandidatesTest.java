@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LemmaCandidatesTest {
+
+    @Test
+    public void candidatesEnglish() throws IOException {
+        List<String> words = new ArrayList<>();
+        DefaultLemmatizer lm = TestLexicon.train(new LemmatizerSettings(), words);
+
+        LemmaCandidates candidates = new LemmaCandidates(4);
+        int ambiguous = 0;
+        for (String word : words) {
+            int count = lm.lemmatize(word, candidates);
+            assertTrue(count >= 1 && count <= 4);
+            assertEquals(lm.lemmatize(word).toString(), candidates.getLemma(0).toString());
+            if (count > 1) ambiguous++;
+        }
+        System.out.println("Words with more candidates: " + ambiguous + " of " + words.size());
+        lm.lemmatize("lying", candidates);
+        System.out.println("Candidates of lying: " + candidates);
+        assertTrue(ambiguous > 0);
+        assertNoAllocation(lm, words, candidates);
+    }
+
+
+    @Test
+    public void candidatesNonAscii() throws IOException {
+        // lexicon shifted to cyrillic, so no character of the tree is in the cache of Character
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        List<String> words = new ArrayList<>();
+        for (String[] line : TestLexicon.lines()) {
+            lm.addExample(shift(line[0]), shift(line[1]), 1, line[2]);
+            words.add(shift(line[0]));
+        }
+        lm.buildModel();
+
+        LemmaCandidates candidates = new LemmaCandidates(4);
+        for (String word : words) {
+            lm.lemmatize(word, candidates);
+        }
+        assertEquals(shift("have"), lm.lemmatize(shift("has")).toString());
+        assertNoAllocation(lm, words, candidates);
+    }
+
+
+    private static String shift(String word) {
+        char[] chars = word.toCharArray();
+        for (int idx = 0; idx < chars.length; idx++) {
+            chars[idx] += 0x400;
+        }
+        return new String(chars);
+    }
+
+
+    private static void assertNoAllocation(DefaultLemmatizer lm, List<String> words, LemmaCandidates candidates) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            long threadId = Thread.currentThread().getId();
+            long before = sunBean.getThreadAllocatedBytes(threadId);
+            for (String word : words) {
+                lm.lemmatize(word, candidates);
+            }
+            long allocated = sunBean.getThreadAllocatedBytes(threadId) - before;
+            System.out.println("Allocated bytes for " + words.size() + " lookups: " + allocated);
+            assertTrue(allocated < words.size());
+        }
+    }
+
+    @Test
+    public void candidatesFrontLemmatizer() throws IOException {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(true);
+        List<String> words = new ArrayList<>();
+        DefaultLemmatizer lm = TestLexicon.train(settings, words);
+
+        LemmaCandidates candidates = new LemmaCandidates(3);
+        for (String word : words) {
+            lm.lemmatize(word, candidates);
+            assertEquals(lm.lemmatize(word).toString(), candidates.getLemma(0).toString());
+        }
+    }
+
+    @Test
+    public void topRulesSameAsFullOrder() throws IOException {
+        LemmatizerSettings all = new LemmatizerSettings();
+        all.setMaxRulesPerNode(0);
+        LemmatizerSettings top = new LemmatizerSettings();
+        top.setMaxRulesPerNode(2);
+        List<LemmaTreeNode> allNodes = nodes(TestLexicon.train(all, new ArrayList<String>()).getRootNode());
+        List<LemmaTreeNode> topNodes = nodes(TestLexicon.train(top, new ArrayList<String>()).getRootNode());
+        assertEquals(allNodes.size(), topNodes.size());
+        for (int idx = 0; idx < allNodes.size(); idx++) {
+            WeightedRule[] allRules = allNodes.get(idx).getBestRules();
+            WeightedRule[] topRules = topNodes.get(idx).getBestRules();
+            assertEquals(Math.min(2, allRules.length), topRules.length);
+            assertEquals(allNodes.get(idx).getBestRule().getSignature(), topNodes.get(idx).getBestRule().getSignature());
+            for (int rule = 0; rule < topRules.length; rule++) {
+                assertEquals(allRules[rule].getRule().getSignature(), topRules[rule].getRule().getSignature());
+                assertEquals(allRules[rule].getWeight(), topRules[rule].getWeight(), 0);
+            }
+        }
+    }
+
+
+    private static List<LemmaTreeNode> nodes(LemmaTreeNode root) {
+        List<LemmaTreeNode> result = new ArrayList<>();
+        result.add(root);
+        for (int idx = 0; idx < result.size(); idx++) {
+            for (Character ch : new TreeSet<>(result.get(idx).getSubNodes().keySet())) {
+                result.add(result.get(idx).getSubNodes().get(ch));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays corpus made of shuffled words of the test lexicon, keeps all lemmas alive like a term dictionary and
+ * compares retained heap and time with and without {@link LemmaPool}. Run it as:
+ * <pre>
+ * java -cp target/classes:target/test-classes:slf4j-api.jar eu.hlavki.text.lemmagen.impl.LemmaPoolBenchmark
+ * </pre>
+ */
+public class LemmaPoolBenchmark {
+
+    private static final int REPEATS = 20;
+
+    public static void main(String[] args) throws IOException {
+        DefaultLemmatizer lm = TestLexicon.read(new LemmatizerSettings());
+        lm.buildModel();
+        List<String> corpus = new ArrayList<>();
+        for (int round = 0; round < REPEATS; round++) {
+            for (LemmaExample example : lm.getExamples().getExamplesList()) {
+                corpus.add(example.getWord());
+            }
+        }
+        Collections.shuffle(corpus, new Random(0));
+
+        for (int round = 0; round < 3; round++) {
+            replay(lm, corpus, null);
+            replay(lm, corpus, new LemmaPool(1 << 17));
+        }
+    }
+
+
+    private static void replay(DefaultLemmatizer lm, List<String> corpus, LemmaPool pool) {
+        lm.setLemmaPool(pool);
+        long before = usedHeap();
+        long start = System.nanoTime();
+        CharSequence[] lemmas = new CharSequence[corpus.size()];
+        for (int idx = 0; idx < lemmas.length; idx++) {
+            lemmas[idx] = lm.lemmatize(corpus.get(idx));
+        }
+        long time = System.nanoTime() - start;
+        long retained = usedHeap() - before;
+        System.out.println((pool == null ? "without pool: " : "with pool:    ") + lemmas.length + " tokens, "
+            + time / 1000000 + "ms, retained " + retained / 1024 + "kB"
+            + (pool == null ? "" : ", pooled lemmas " + pool.size()));
+    }
+
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int idx = 0; idx < 3; idx++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LemmaPoolTest {
+
+    @Test
+    public void canonicalInstances() {
+        LemmaPool pool = new LemmaPool(100);
+        String first = pool.intern("walking", 4, "");
+        assertEquals("walk", first);
+        assertSame(first, pool.intern(new StringBuilder("walks"), 4, ""));
+        assertSame(first, pool.intern("wal", 3, "k"));
+        assertSame(first, pool.intern("walk"));
+        assertEquals("talk", pool.intern("walk", 0, "talk"));
+        assertEquals(2, pool.size());
+    }
+
+
+    @Test
+    public void bounded() {
+        LemmaPool pool = new LemmaPool(10);
+        for (int idx = 0; idx < 1000; idx++) {
+            String lemma = "lemma" + idx;
+            assertEquals(lemma, pool.intern(lemma));
+        }
+        assertEquals(10, pool.size());
+    }
+
+
+    @Test
+    public void lemmatizerWithPool() throws IOException, InterruptedException, ExecutionException {
+        List<String> words = new ArrayList<>();
+        final DefaultLemmatizer lm = TestLexicon.train(new LemmatizerSettings(), words);
+        final String[] expected = new String[words.size()];
+        for (int idx = 0; idx < expected.length; idx++) {
+            expected[idx] = lm.lemmatize(words.get(idx)).toString();
+        }
+
+        lm.setLemmaPool(new LemmaPool(1 << 16));
+        final String[] wordArray = words.toArray(new String[words.size()]);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<CharSequence[]>> results = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            results.add(executor.submit(new Callable<CharSequence[]>() {
+                @Override
+                public CharSequence[] call() {
+                    CharSequence[] lemmas = new CharSequence[wordArray.length];
+                    for (int idx = 0; idx < wordArray.length; idx++) {
+                        lemmas[idx] = lm.lemmatize(wordArray[idx]);
+                    }
+                    return lemmas;
+                }
+            }));
+        }
+        executor.shutdown();
+        CharSequence[] first = results.get(0).get();
+        for (Future<CharSequence[]> result : results) {
+            CharSequence[] lemmas = result.get();
+            for (int idx = 0; idx < lemmas.length; idx++) {
+                assertEquals(expected[idx], lemmas[idx]);
+                assertSame(first[idx], lemmas[idx]);
+            }
+        }
+
+        CharSequence[] bulk = new CharSequence[wordArray.length];
+        lm.lemmatize(wordArray, bulk, 0, bulk.length);
+        for (int idx = 0; idx < bulk.length; idx++) {
+            assertSame(first[idx], bulk[idx]);
+        }
+    }
+}
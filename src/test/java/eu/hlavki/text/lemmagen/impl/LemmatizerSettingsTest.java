@@ -0,0 +1,67 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings.MsdConsideration;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LemmatizerSettingsTest {
+
+    @Test
+    public void serializeThresholds() throws IOException, ClassNotFoundException {
+        LemmatizerSettings settings = new LemmatizerSettings(false, MsdConsideration.JOIN_ALL, 3, true);
+        int plain = serialize(settings).length;
+
+        settings.setMinSubtreeWeight(2.5);
+        settings.setMinSplitGain(1);
+        settings.setMaxDepth(7);
+        // thresholds don't change the original format
+        assertEquals(plain, serialize(settings).length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            settings.writeObject(out);
+            settings.writeThresholds(out);
+        }
+        LemmatizerSettings read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = new LemmatizerSettings(in);
+            read.readThresholds(in);
+        }
+        assertFalse(read.isUseFromInRules());
+        assertEquals(MsdConsideration.JOIN_ALL, read.getMsdConsider());
+        assertEquals(3, read.getMaxRulesPerNode());
+        assertTrue(read.isBuildFrontLemmatizer());
+        assertEquals(2.5, read.getMinSubtreeWeight(), 0);
+        assertEquals(1, read.getMinSplitGain(), 0);
+        assertEquals(7, read.getMaxDepth());
+    }
+
+
+    private static byte[] serialize(LemmatizerSettings settings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            settings.writeObject(out);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.codec.ModelCodec;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SectionedModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void sameModelAsSequentialFormat() throws IOException {
+        compare(new LemmatizerSettings());
+    }
+
+
+    @Test
+    public void sameModelAsSequentialFormatFront() throws IOException {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(true);
+        compare(settings);
+    }
+
+
+    @Test
+    public void truncatedModel() throws IOException {
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        lm.addExample("dogs", "dog");
+        lm.addExample("mice", "mouse");
+        lm.addExample("tree", "tree");
+        File file = folder.newFile("model.lem");
+        LemmatizerFactory.saveSectioned(lm, file, ModelCodec.LZ, Deflater.DEFAULT_COMPRESSION);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals("dog", LemmatizerFactory.read(new ByteArrayInputStream(bytes)).lemmatize("dogs").toString());
+        try {
+            LemmatizerFactory.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 10)));
+            fail("Truncated model must not be read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+
+    private void compare(LemmatizerSettings settings) throws IOException {
+        List<String> words = new ArrayList<>();
+        DefaultLemmatizer lm = TestLexicon.train(settings, words);
+
+        File sequential = folder.newFile("sequential.lem");
+        LemmatizerFactory.saveToFile(lm, sequential, ModelCodec.DEFLATE, Deflater.BEST_SPEED);
+        for (ModelCodec codec : ModelCodec.values()) {
+            File sectioned = folder.newFile(codec + ".lem");
+            LemmatizerFactory.saveSectioned(lm, sectioned, codec, Deflater.BEST_SPEED);
+            DefaultLemmatizer expected = read(sequential);
+            DefaultLemmatizer actual = read(sectioned);
+            assertEquals(codec.toString(), expected.getRootNode().toString(), actual.getRootNode().toString());
+            if (settings.isBuildFrontLemmatizer()) {
+                assertEquals(expected.getRootNodeFront().toString(), actual.getRootNodeFront().toString());
+            }
+            for (String word : words) {
+                assertEquals(word, expected.lemmatize(word).toString(), actual.lemmatize(word).toString());
+            }
+        }
+    }
+
+
+    private static DefaultLemmatizer read(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return (DefaultLemmatizer) LemmatizerFactory.read(in);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares lookups of shuffled words of the test lexicon from the root and by {@link SuffixIndex} of every
+ * suffix length and reports skipped levels. Run it as:
+ * <pre>
+ * java -cp target/classes:target/test-classes:slf4j-api.jar eu.hlavki.text.lemmagen.impl.SuffixIndexBenchmark
+ * </pre>
+ */
+public class SuffixIndexBenchmark {
+
+    private static final int REPEATS = 20;
+
+    public static void main(String[] args) throws IOException {
+        DefaultLemmatizer lm = TestLexicon.read(new LemmatizerSettings());
+        lm.buildModel();
+        List<String> words = new ArrayList<>();
+        for (LemmaExample example : lm.getExamples().getExamplesList()) {
+            words.add(example.getWord());
+        }
+        Collections.shuffle(words, new Random(0));
+        LemmaTreeNode root = lm.getRootNode();
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long depth = 0;
+            for (int repeat = 0; repeat < REPEATS; repeat++) {
+                for (String word : words) {
+                    depth += root.findNode(word).getSimilarity();
+                }
+            }
+            report("root", System.nanoTime() - start, 0, words.size(), depth);
+            for (int length = 1; length <= SuffixIndex.MAX_SUFFIX_LENGTH; length++) {
+                SuffixIndex index = new SuffixIndex(root, length);
+                long skipped = 0;
+                for (String word : words) {
+                    skipped += index.findStart(word).getDepth();
+                }
+                start = System.nanoTime();
+                depth = 0;
+                for (int repeat = 0; repeat < REPEATS; repeat++) {
+                    for (String word : words) {
+                        depth += index.findNode(word).getSimilarity();
+                    }
+                }
+                report("index " + length + " (" + index.size() + " entries)", System.nanoTime() - start, skipped,
+                    words.size(), depth);
+            }
+        }
+    }
+
+
+    private static void report(String name, long time, long skipped, int words, long check) {
+        System.out.printf("%-26s %6.1f ns/word, skipped levels %.2f/word [%d]%n", name,
+            (double) time / words / REPEATS, (double) skipped / words, check);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.tools.ModelPruner;
+import eu.hlavki.text.lemmagen.tools.WordProfile;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SuffixIndexTest {
+
+    @Test
+    public void sameNodesAsFullWalk() throws IOException {
+        List<String> words = new ArrayList<>();
+        DefaultLemmatizer lm = TestLexicon.train(new LemmatizerSettings(), words);
+        words.addAll(mutations(words));
+        LemmaTreeNode root = lm.getRootNode();
+        for (int length = 1; length <= SuffixIndex.MAX_SUFFIX_LENGTH; length++) {
+            SuffixIndex index = new SuffixIndex(root, length);
+            assertTrue(index.size() > 0);
+            int skipped = 0;
+            for (String word : words) {
+                assertSame(word, root.findNode(word), index.findNode(word));
+                skipped += index.findStart(word).getDepth();
+            }
+            assertTrue(skipped > 0);
+        }
+    }
+
+
+    @Test
+    public void sameLemmas() throws IOException {
+        List<String> words = new ArrayList<>();
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(true);
+        DefaultLemmatizer lm = TestLexicon.train(settings, words);
+        words.addAll(mutations(words));
+        List<String> expected = new ArrayList<>();
+        for (String word : words) {
+            expected.add(lm.lemmatize(word).toString());
+        }
+        lm.setSuffixIndexLength(3);
+        for (int idx = 0; idx < words.size(); idx++) {
+            assertEquals(words.get(idx), expected.get(idx), lm.lemmatize(words.get(idx)).toString());
+        }
+        try {
+            lm.setSuffixIndexLength(SuffixIndex.MAX_SUFFIX_LENGTH + 1);
+            fail("Too long suffix");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void rebuiltAfterPruning() throws IOException {
+        List<String> words = new ArrayList<>();
+        DefaultLemmatizer lm = TestLexicon.train(new LemmatizerSettings(), words);
+        lm.setSuffixIndexLength(SuffixIndex.MAX_SUFFIX_LENGTH);
+        WordProfile profile = new WordProfile();
+        for (String word : words) {
+            lm.lemmatize(word);
+            profile.record(word, 1);
+        }
+        LemmaTreeNode root = lm.getRootNode();
+
+        // index built before pruning jumps into removed subtrees
+        new ModelPruner(lm, profile).prune(50);
+        for (String word : words) {
+            assertEquals(word, root.findNode(word).getBestRule().lemmatize(word).toString(),
+                lm.lemmatize(word).toString());
+        }
+    }
+
+
+    /**
+     * Words not in lexicon: random prefixes, suffixes and short words.
+     */
+    private static List<String> mutations(List<String> words) {
+        Random random = new Random(7);
+        List<String> result = new ArrayList<>();
+        for (int idx = 0; idx < 5000; idx++) {
+            String word = words.get(random.nextInt(words.size()));
+            char ch = (char) ('a' + random.nextInt(26));
+            result.add(ch + word);
+            result.add(word + ch);
+            result.add(word.substring(word.length() / 2));
+            result.add(word.substring(0, Math.min(word.length(), 1 + random.nextInt(3))));
+        }
+        return result;
+    }
+}
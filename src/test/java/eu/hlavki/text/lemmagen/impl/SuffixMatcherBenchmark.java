@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares scalar and vectorized suffix comparison on reversed words of the test lexicon and measures
+ * training time. Vectorized implementation is used only from multi-release jar on Java 9+, run it as:
+ * <pre>
+ * java -cp target/jlemmagen-VERSION.jar:target/test-classes:slf4j-api.jar \
+ *     eu.hlavki.text.lemmagen.impl.SuffixMatcherBenchmark
+ * </pre>
+ * Running from <code>target/classes</code> measures Java 8 scalar implementation in both cases.
+ */
+public class SuffixMatcherBenchmark {
+
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws IOException {
+        List<LemmaExample> examples = TestLexicon.read(new LemmatizerSettings()).getExamples().getExamplesList();
+        char[][] sorted = new char[examples.size()][];
+        for (int idx = 0; idx < sorted.length; idx++) {
+            sorted[idx] = examples.get(idx).getWordCharsReversed();
+        }
+        char[][] shuffled = sorted.clone();
+        Collections.shuffle(Arrays.asList(shuffled), new java.util.Random(0));
+
+        // neighbours of sorted examples share long suffixes like pairs compared by sorting and tree building
+        compare("sorted", sorted);
+        compare("shuffled", shuffled);
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            DefaultLemmatizer lm = TestLexicon.read(new LemmatizerSettings());
+            lm.buildModel();
+            System.out.println("training: " + (System.nanoTime() - start) / 1000000 + "ms");
+        }
+    }
+
+    private static void compare(String name, char[][] words) {
+        long[] scalar = new long[ROUNDS];
+        long[] current = new long[ROUNDS];
+        long sum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int idx = 1; idx < words.length; idx++) {
+                sum += ScalarSuffixMatcher.mismatch(words[idx - 1], words[idx]);
+            }
+            scalar[round] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int idx = 1; idx < words.length; idx++) {
+                sum -= SuffixMatcher.mismatch(words[idx - 1], words[idx]);
+            }
+            current[round] = System.nanoTime() - start;
+        }
+        Arrays.sort(scalar);
+        Arrays.sort(current);
+        System.out.println("mismatch of " + words.length + " " + name + " word pairs (median): scalar "
+            + scalar[ROUNDS / 2] / 1000 + "us, current " + current[ROUNDS / 2] / 1000 + "us (check " + sum + ")");
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares lemmatization of UTF-8 words by decoding, lemmatizing and encoding with direct lemmatization by
+ * {@link Utf8Lemmatizer}. Run it as:
+ * <pre>
+ * java -cp target/classes:target/test-classes:slf4j-api.jar eu.hlavki.text.lemmagen.impl.Utf8LemmatizerBenchmark
+ * </pre>
+ */
+public class Utf8LemmatizerBenchmark {
+
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws IOException {
+        DefaultLemmatizer lm = TestLexicon.read(new LemmatizerSettings());
+        Utf8Lemmatizer utf8 = new Utf8Lemmatizer(lm);
+        List<byte[]> words = new ArrayList<>();
+        for (LemmaExample example : lm.getExamples().getExamplesList()) {
+            words.add(example.getWord().getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] lemma = new byte[256];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (byte[] word : words) {
+                String lemmaStr = lm.lemmatize(new String(word, StandardCharsets.UTF_8)).toString();
+                sum += lemmaStr.getBytes(StandardCharsets.UTF_8).length;
+            }
+            long decoded = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (byte[] word : words) {
+                sum -= utf8.lemmatize(word, 0, word.length, lemma, 0);
+            }
+            long direct = System.nanoTime() - start;
+            if (round == ROUNDS - 1) {
+                System.out.println(words.size() + " words: decoded " + decoded / 1000 + "us, direct "
+                    + direct / 1000 + "us (check " + sum + ")");
+            }
+        }
+    }
+}
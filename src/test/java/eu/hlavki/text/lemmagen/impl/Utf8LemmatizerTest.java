@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.impl;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class Utf8LemmatizerTest {
+
+    @Test
+    public void sameAsDecodedEnglish() throws IOException {
+        List<String> words = new ArrayList<>();
+        DefaultLemmatizer lm = TestLexicon.train(new LemmatizerSettings());
+        for (String word : TestLexicon.words()) {
+            words.add(word);
+            words.add(word + "é");
+            words.add("ü" + word);
+        }
+
+        Utf8Lemmatizer utf8 = new Utf8Lemmatizer(lm);
+        assertEquals(lm.getRootNode().getTreeSize(), utf8.getNodeCount());
+        assertSame(lm, utf8, words);
+    }
+
+
+    private static final String[][] MULTIBYTE = {
+        {"mestá", "mesto"}, {"miest", "mesto"}, {"ženy", "žena"}, {"žien", "žena"}, {"ženách", "žena"},
+        {"ulice", "ulica"}, {"ulíc", "ulica"}, {"uliciach", "ulica"}, {"dlaždice", "dlaždica"},
+        {"dlaždíc", "dlaždica"}, {"kôň", "kôň"}, {"koňa", "kôň"}, {"koňoch", "kôň"}, {"städte", "stadt"},
+        {"日本語", "日本"}, {"言語", "言"}
+    };
+
+
+    @Test
+    public void sameAsDecodedMultibyte() {
+        DefaultLemmatizer lm = multibyte();
+        List<String> words = new ArrayList<>();
+        for (String[] example : MULTIBYTE) {
+            words.add(example[0]);
+        }
+        words.addAll(Arrays.asList("", "a", "ňa", "kráľoch", "ružiach", "ulíc😀", "😀", "😀ženách", "ab😀c",
+            "日語", "語", "ácé", "á́"));
+        assertSame(lm, new Utf8Lemmatizer(lm), words);
+    }
+
+
+    @Test
+    public void byteBuffers() {
+        Utf8Lemmatizer utf8 = new Utf8Lemmatizer(multibyte());
+
+        byte[] word = "ženách".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer in = ByteBuffer.allocateDirect(word.length);
+        in.put(word).flip();
+        ByteBuffer out = ByteBuffer.allocate(utf8.getMaxLemmaLength(word.length));
+        int length = utf8.lemmatize(in, out);
+        assertFalse(in.hasRemaining());
+        assertEquals(length, out.position());
+        assertEquals("žena", new String(out.array(), 0, length, StandardCharsets.UTF_8));
+
+        in = ByteBuffer.wrap("xulíc".getBytes(StandardCharsets.UTF_8), 1, 5).slice();
+        out = ByteBuffer.allocateDirect(2);
+        try {
+            utf8.lemmatize(in, out);
+            fail("Lemma doesn't fit into output buffer");
+        } catch (java.nio.BufferOverflowException e) {
+            assertEquals(5, in.remaining());
+        }
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void frontLemmatizerRejected() {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(true);
+        DefaultLemmatizer lm = new DefaultLemmatizer(settings);
+        lm.addExample("ženy", "žena");
+        new Utf8Lemmatizer(lm);
+    }
+
+
+    private static DefaultLemmatizer multibyte() {
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        for (String[] example : MULTIBYTE) {
+            lm.addExample(example[0], example[1]);
+        }
+        lm.buildModel();
+        return lm;
+    }
+
+
+    private static void assertSame(DefaultLemmatizer lm, Utf8Lemmatizer utf8, List<String> words) {
+        byte[] lemma = new byte[64];
+        for (String word : words) {
+            byte[] bytes = ("#" + word).getBytes(StandardCharsets.UTF_8);
+            String expected;
+            try {
+                expected = lm.lemmatize(word).toString();
+            } catch (IndexOutOfBoundsException e) {
+                expected = null;
+            }
+            try {
+                int length = utf8.lemmatize(bytes, 1, bytes.length - 1, lemma, 2);
+                assertEquals(word, expected, new String(lemma, 2, length, StandardCharsets.UTF_8));
+                assertArrayEquals(word, expected.getBytes(StandardCharsets.UTF_8),
+                    Arrays.copyOfRange(lemma, 2, 2 + length));
+            } catch (IndexOutOfBoundsException e) {
+                assertNull(word, expected);
+            }
+        }
+    }
+}
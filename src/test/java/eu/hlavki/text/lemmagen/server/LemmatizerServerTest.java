@@ -0,0 +1,291 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.server;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.AfterClass;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Load test of the server running on loopback interface. Word sequence is generated from fixed seed.
+ */
+public class LemmatizerServerTest {
+
+    private static final int CLIENTS = 8;
+    private static final int REQUESTS = 50;
+    private static final int WORDS = 100;
+
+    private static DefaultLemmatizer lemmatizer;
+    private static List<String> words;
+    private static LemmatizerServer server;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        words = new ArrayList<>();
+        lemmatizer = TestLexicon.train(new LemmatizerSettings(), words);
+
+        File tmpLemFile = File.createTempFile("lemmagen", ".lem");
+        try {
+            LemmatizerFactory.saveToFile(lemmatizer, tmpLemFile);
+            ServerSettings settings = new ServerSettings();
+            settings.setWorkerThreads(2);
+            settings.setIoThreads(CLIENTS * 2);
+            server = new LemmatizerServer(settings);
+            server.addModel("en", tmpLemFile);
+        } finally {
+            tmpLemFile.delete();
+        }
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void loadHttp() throws Exception {
+        runClients(false, "HTTP");
+    }
+
+    @Test
+    public void loadSocket() throws Exception {
+        runClients(true, "socket");
+    }
+
+    @Test
+    public void unknownModel() throws IOException {
+        HttpURLConnection conn = post("xx", new ArrayList<String>());
+        assertEquals(404, conn.getResponseCode());
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getSocketPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("xx\tword\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            assertTrue(reader.readLine().startsWith("!"));
+        }
+    }
+
+    @Test
+    public void idleConnectionsDontBlockHttp() throws IOException {
+        ServerSettings settings = new ServerSettings();
+        settings.setIoThreads(1);
+        settings.setMaxConnections(2);
+        settings.setReadTimeoutMillis(500);
+        LemmatizerServer limited = new LemmatizerServer(settings);
+        limited.addModel("en", lemmatizer);
+        limited.start();
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int idx = 0; idx < 2; idx++) {
+                sockets.add(new Socket(InetAddress.getLoopbackAddress(), limited.getSocketPort()));
+            }
+            // idle connections occupy connection pool only
+            HttpURLConnection conn = post(limited.getHttpPort(), "en", Collections.singletonList("dogs"));
+            assertEquals(200, conn.getResponseCode());
+
+            try (Socket refused = new Socket(InetAddress.getLoopbackAddress(), limited.getSocketPort())) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(refused.getInputStream(),
+                    StandardCharsets.UTF_8));
+                assertEquals("!Too many connections", reader.readLine());
+            }
+
+            for (Socket socket : sockets) {
+                socket.setSoTimeout(10000);
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            limited.stop();
+        }
+    }
+
+    @Test
+    public void rejectsLargeRequest() throws IOException {
+        ServerSettings settings = new ServerSettings();
+        settings.setSocketPort(ServerSettings.DISABLED);
+        settings.setMaxRequestBytes(100);
+        LemmatizerServer limited = new LemmatizerServer(settings);
+        limited.addModel("en", lemmatizer);
+        limited.start();
+        try {
+            HttpURLConnection conn = post(limited.getHttpPort(), "en", Collections.nCopies(10, "dogs"));
+            assertEquals(200, conn.getResponseCode());
+
+            conn = post(limited.getHttpPort(), "en", Collections.nCopies(100, "dogs"));
+            assertEquals(413, conn.getResponseCode());
+        } finally {
+            limited.stop();
+        }
+    }
+
+    private void runClients(final boolean socket, String name) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int client = 0; client < CLIENTS; client++) {
+                final Random random = new Random(client);
+                final Client c = socket ? new SocketClient() : new HttpClient();
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int count = 0;
+                        try {
+                            for (int req = 0; req < REQUESTS; req++) {
+                                List<String> request = new ArrayList<>();
+                                for (int idx = 0; idx < WORDS; idx++) {
+                                    request.add(words.get(random.nextInt(words.size())));
+                                }
+                                List<String> lemmas = c.lemmatize(request);
+                                assertEquals(request.size(), lemmas.size());
+                                for (int idx = 0; idx < request.size(); idx++) {
+                                    assertEquals(lemmatizer.lemmatize(request.get(idx)).toString(), lemmas.get(idx));
+                                }
+                                count += request.size();
+                            }
+                        } finally {
+                            c.close();
+                        }
+                        return count;
+                    }
+                }));
+            }
+            long total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            long time = System.nanoTime() - start;
+            System.out.println(name + ": " + total + " words in " + (time / 1000000) + "ms, "
+                + (total * 1000000000L / time) + " words/s");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<String> httpLemmatize(String model, List<String> request) throws IOException {
+        HttpURLConnection conn = post(model, request);
+        assertEquals(200, conn.getResponseCode());
+        List<String> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    private static HttpURLConnection post(String model, List<String> request) throws IOException {
+        return post(server.getHttpPort(), model, request);
+    }
+
+    private static HttpURLConnection post(int port, String model, List<String> request) throws IOException {
+        URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port,
+            "/lemmatize/" + model);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        try (Writer writer = new OutputStreamWriter(conn.getOutputStream(), StandardCharsets.UTF_8)) {
+            for (String word : request) {
+                writer.write(word);
+                writer.write('\n');
+            }
+        }
+        return conn;
+    }
+
+    private interface Client {
+
+        List<String> lemmatize(List<String> request) throws IOException;
+
+        void close() throws IOException;
+    }
+
+    private static class HttpClient implements Client {
+
+        @Override
+        public List<String> lemmatize(List<String> request) throws IOException {
+            return httpLemmatize("en", request);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class SocketClient implements Client {
+
+        private Socket socket;
+        private BufferedReader reader;
+        private Writer writer;
+
+        @Override
+        public List<String> lemmatize(List<String> request) throws IOException {
+            if (socket == null) {
+                socket = new Socket(InetAddress.getLoopbackAddress(), server.getSocketPort());
+                reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            }
+            writer.write("en");
+            for (String word : request) {
+                writer.write('\t');
+                writer.write(word);
+            }
+            writer.write('\n');
+            writer.flush();
+            List<String> result = new ArrayList<>();
+            for (String lemma : reader.readLine().split("\t", -1)) {
+                result.add(lemma);
+            }
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (socket != null) socket.close();
+        }
+    }
+}
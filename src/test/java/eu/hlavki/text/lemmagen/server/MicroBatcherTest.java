@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.server;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MicroBatcherTest {
+
+    private final List<Integer> batches = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private final Lemmatizer lower = new Lemmatizer() {
+        @Override
+        public CharSequence lemmatize(CharSequence word) {
+            if ("BAD".equals(word.toString())) throw new IllegalStateException("bad word");
+            return word.toString().toLowerCase();
+        }
+
+
+        @Override
+        public void lemmatize(CharSequence[] words, CharSequence[] lemmas, int offset, int length) {
+            batches.add(length);
+            for (int idx = offset; idx < offset + length; idx++) {
+                lemmas[idx] = lemmatize(words[idx]);
+            }
+        }
+    };
+
+    private ExecutorService workers;
+
+
+    @Before
+    public void setUp() {
+        workers = Executors.newSingleThreadExecutor();
+    }
+
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+
+    @Test
+    public void failingRequestDoesNotFailBatch() throws Exception {
+        ServerSettings settings = new ServerSettings();
+        settings.setMaxBatchWords(3);
+        settings.setMaxBatchDelayMicros(TimeUnit.SECONDS.toMicros(5));
+        MicroBatcher batcher = new MicroBatcher("test", lower, workers, settings);
+        batcher.start();
+        try {
+            CompletableFuture<CharSequence[]> dogs = batcher.submit(new CharSequence[]{"DOGS"});
+            CompletableFuture<CharSequence[]> bad = batcher.submit(new CharSequence[]{"BAD"});
+            CompletableFuture<CharSequence[]> cats = batcher.submit(new CharSequence[]{"CATS"});
+
+            assertArrayEquals(new CharSequence[]{"dogs"}, dogs.get(5, TimeUnit.SECONDS));
+            assertArrayEquals(new CharSequence[]{"cats"}, cats.get(5, TimeUnit.SECONDS));
+            try {
+                bad.get(5, TimeUnit.SECONDS);
+                fail("Bad request must fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            // one batch of all requests, then every request alone
+            assertEquals(Integer.valueOf(3), batches.get(0));
+        } finally {
+            batcher.stop();
+        }
+    }
+
+
+    @Test
+    public void stopFailsRequestsOfIncompleteBatch() throws Exception {
+        ServerSettings settings = new ServerSettings();
+        settings.setMaxBatchWords(100);
+        settings.setMaxBatchDelayMicros(TimeUnit.SECONDS.toMicros(30));
+        MicroBatcher batcher = new MicroBatcher("test", lower, workers, settings);
+        batcher.start();
+        CompletableFuture<CharSequence[]> waiting = batcher.submit(new CharSequence[]{"DOGS"});
+        // dispatcher takes the request and waits for more
+        Thread.sleep(200);
+        batcher.stop();
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            fail("Request must fail when batcher is stopped");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(batches.isEmpty());
+    }
+}
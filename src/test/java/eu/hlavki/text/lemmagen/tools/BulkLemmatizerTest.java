@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class BulkLemmatizerTest {
+
+    @Test
+    public void tokenPerLine() throws IOException {
+        List<String[]> lines = TestLexicon.lines();
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        TestLexicon.add(lm, lines);
+        lm.buildModel();
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int idx = 0; idx < lines.size(); idx++) {
+            String word = lines.get(idx)[0];
+            input.append(word).append(idx % 3 == 0 ? "\r\n" : "\n");
+            expected.append(lm.lemmatize(word)).append('\n');
+            if (idx % 1000 == 0) {
+                input.append('\n');
+                expected.append('\n');
+            }
+        }
+        input.append("cats");
+        expected.append(lm.lemmatize("cats")).append('\n');
+
+        for (Lemmatizer lemmatizer : new Lemmatizer[]{lm, new DecodingLemmatizer(lm)}) {
+            BulkLemmatizer bulk = new BulkLemmatizer(lemmatizer);
+            bulk.setThreads(4);
+            bulk.setChunkSize(1000);
+            bulk.setMaxPendingChunks(3);
+            assertEquals(expected.toString(), process(bulk, input.toString(), lines.size() + 1));
+        }
+    }
+
+
+    @Test
+    public void tsvColumn() throws IOException {
+        List<String[]> lines = TestLexicon.lines();
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(true);
+        DefaultLemmatizer lm = new DefaultLemmatizer(settings);
+        TestLexicon.add(lm, lines.subList(0, 5000));
+        lm.buildModel();
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        int tokens = 0;
+        for (String[] line : lines.subList(0, 5000)) {
+            String row = line[2] + "\t" + line[0] + "\t" + line[1];
+            input.append(row).append('\n');
+            expected.append(row).append('\t').append(lm.lemmatize(line[0])).append('\n');
+            tokens++;
+        }
+        input.append("x\n").append(longLine()).append('\n');
+        expected.append("x\t\n").append(longLine()).append("\t\n");
+
+        BulkLemmatizer bulk = new BulkLemmatizer(lm);
+        bulk.setThreads(2);
+        bulk.setChunkSize(64);
+        bulk.setColumn(2);
+        assertEquals(expected.toString(), process(bulk, input.toString(), tokens));
+    }
+
+
+    private static String longLine() {
+        char[] chars = new char[500];
+        Arrays.fill(chars, 'a');
+        return new String(chars);
+    }
+
+
+    private static String process(BulkLemmatizer bulk, String input, long tokens) throws IOException {
+        File file = File.createTempFile("bulk", ".txt");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(input.getBytes(StandardCharsets.UTF_8));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(tokens, bulk.process(Arrays.asList(file), out));
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            file.delete();
+        }
+    }
+
+
+    private static final class DecodingLemmatizer implements Lemmatizer {
+
+        private final Lemmatizer lemmatizer;
+
+
+        DecodingLemmatizer(Lemmatizer lemmatizer) {
+            this.lemmatizer = lemmatizer;
+        }
+
+
+        @Override
+        public CharSequence lemmatize(CharSequence word) {
+            return lemmatizer.lemmatize(word);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares lookup time of model saved in original layout and model optimized by {@link LayoutOptimizer}.
+ * Lookups follow Zipf distribution over words of the test lexicon, the same distribution is used as profile:
+ * <pre>
+ * java -cp target/classes:target/test-classes:slf4j-api.jar \
+ *     eu.hlavki.text.lemmagen.tools.LayoutBenchmark
+ * </pre>
+ */
+public class LayoutBenchmark {
+
+    private static final int LOOKUPS = 1 << 20;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws IOException {
+        List<String> words = TestLexicon.words();
+        DefaultLemmatizer lm = TestLexicon.read(new LemmatizerSettings());
+        lm.buildModel();
+
+        // words are shuffled, so hot words don't share suffixes by lexicon order
+        Random random = new Random(0);
+        String[] ranked = words.toArray(new String[words.size()]);
+        for (int idx = ranked.length - 1; idx > 0; idx--) {
+            int other = random.nextInt(idx + 1);
+            String tmp = ranked[idx];
+            ranked[idx] = ranked[other];
+            ranked[other] = tmp;
+        }
+        double[] cumulative = new double[ranked.length];
+        double sum = 0;
+        for (int idx = 0; idx < ranked.length; idx++) {
+            sum += 1.0 / (idx + 1);
+            cumulative[idx] = sum;
+        }
+        CharSequence[] lookups = new CharSequence[LOOKUPS];
+        WordProfile profile = new WordProfile();
+        for (int idx = 0; idx < LOOKUPS; idx++) {
+            int pos = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            lookups[idx] = ranked[pos < 0 ? Math.min(-pos - 1, ranked.length - 1) : pos];
+            profile.record(lookups[idx]);
+        }
+
+        File original = File.createTempFile("layout", ".lem");
+        File optimized = File.createTempFile("layout", ".lem");
+        try {
+            LemmatizerFactory.saveToFile(lm, original);
+            LayoutOptimizer.optimize(lm, profile);
+            LemmatizerFactory.saveToFile(lm, optimized);
+            // the first pass warms up JIT
+            for (boolean print : new boolean[]{false, true}) {
+                bench("original", original, lookups, print);
+                bench("optimized", optimized, lookups, print);
+            }
+        } finally {
+            original.delete();
+            optimized.delete();
+        }
+    }
+
+
+    private static void bench(String name, File file, CharSequence[] lookups, boolean print) throws IOException {
+        Lemmatizer lm;
+        try (InputStream in = new FileInputStream(file)) {
+            lm = LemmatizerFactory.read(in);
+        }
+        CharSequence[] lemmas = new CharSequence[lookups.length];
+        long[] times = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            lm.lemmatize(lookups, lemmas, 0, lookups.length);
+            times[round] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        if (print) System.out.printf("%-9s median %6.1f ns per lookup%n", name, (double) times[ROUNDS / 2] / lookups.length);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmaTreeNode;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LayoutOptimizerTest {
+
+    @Test
+    public void recordProfile() throws IOException {
+        WordProfile profile = new WordProfile();
+        Lemmatizer lm = profile.recording(TestLexicon.train(false));
+        lm.lemmatize("dogs");
+        lm.lemmatize("dogs");
+        lm.lemmatize(new CharSequence[]{"cats", "dogs"}, new CharSequence[2], 0, 2);
+        assertEquals(3, profile.getCount("dogs"));
+        assertEquals(4, profile.getTotal());
+
+        StringBuilder sb = new StringBuilder();
+        profile.write(sb);
+        assertEquals("dogs\t3\ncats\t1\n", sb.toString());
+        WordProfile read = WordProfile.read(new BufferedReader(new StringReader(sb.toString())));
+        assertEquals(3, read.getCount("dogs"));
+        assertEquals(2, read.size());
+    }
+
+
+    @Test
+    public void optimizeLayout() throws IOException {
+        for (boolean front : new boolean[]{false, true}) {
+            DefaultLemmatizer lm = TestLexicon.train(front);
+            List<String> words = TestLexicon.words();
+            WordProfile profile = new WordProfile();
+            for (int idx = 0; idx < words.size(); idx++) {
+                profile.record(words.get(idx), 1 + words.size() / (idx + 1));
+            }
+            Map<LemmaTreeNode, Long> visits = LayoutOptimizer.optimize(lm, profile);
+            assertEquals(profile.getTotal(), (long) visits.get(lm.getRootNode()));
+            assertOrdered(lm.getRootNode(), visits);
+
+            File file = File.createTempFile("layout", ".lem");
+            try {
+                LemmatizerFactory.saveToFile(lm, file);
+                Lemmatizer read;
+                try (InputStream in = new FileInputStream(file)) {
+                    read = LemmatizerFactory.read(in);
+                }
+                DefaultLemmatizer reference = TestLexicon.train(front);
+                for (String word : words) {
+                    assertEquals(word, reference.lemmatize(word).toString(), read.lemmatize(word).toString());
+                }
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+
+    private static void assertOrdered(LemmaTreeNode node, Map<LemmaTreeNode, Long> visits) {
+        long previous = Long.MAX_VALUE;
+        for (LemmaTreeNode child : node.getSubNodes().values()) {
+            Long count = visits.get(child);
+            long current = count == null ? 0 : count;
+            assertTrue(current <= previous);
+            previous = current;
+            assertOrdered(child, visits);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmaExample;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LemmatizerCodeGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void generateRearLemmatizer() throws Exception {
+        DefaultLemmatizer lm = load(new LemmatizerSettings());
+        Lemmatizer generated = compile(lm, "test.gen.EnLemmatizer", 100);
+        assertSameLemmas(lm, generated);
+    }
+
+
+    @Test
+    public void generateFrontLemmatizer() throws Exception {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(true);
+        DefaultLemmatizer lm = load(settings);
+        Lemmatizer generated = compile(lm, "EnFrontLemmatizer", 256);
+        assertSameLemmas(lm, generated);
+    }
+
+
+    @Test
+    public void generateNullFollowedByDigit() throws Exception {
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        lm.addExample("house", "house", 1, null);
+        lm.addExample("dogs", "dog", 1, null);
+        lm.addExample("a1s", "a\u00001", 1, null);
+        lm.addExample("b1s", "b\u00001", 1, null);
+        lm.addExample("c\u00002x", "c", 1, null);
+        lm.addExample("d\u00002x", "d", 1, null);
+        lm.buildModel();
+        assertEquals("e\u00001", lm.lemmatize("e1s").toString());
+        Lemmatizer generated = compile(lm, "NullLemmatizer", 1);
+        assertSameLemmas(lm, generated);
+        assertEquals("e\u00001", generated.lemmatize("e1s").toString());
+        assertEquals("e", generated.lemmatize("e\u00002x").toString());
+    }
+
+
+    private Lemmatizer compile(DefaultLemmatizer lm, String className, int methodsPerClass) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+        File sources = folder.newFolder("src");
+        File classes = folder.newFolder("classes");
+        LemmatizerCodeGenerator generator = new LemmatizerCodeGenerator(className);
+        generator.setMethodsPerClass(methodsPerClass);
+        File file = generator.generate(lm, sources);
+        int result = compiler.run(null, null, null, "-encoding", "UTF-8", "-classpath",
+            System.getProperty("java.class.path"), "-d", classes.getPath(), file.getPath());
+        assertEquals(0, result);
+        assertTrue(new File(classes, className.replace('.', File.separatorChar) + "$R1.class").isFile());
+
+        ClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        return (Lemmatizer) loader.loadClass(className).newInstance();
+    }
+
+
+    private void assertSameLemmas(DefaultLemmatizer lm, Lemmatizer generated) {
+        for (LemmaExample example : lm.getExamples().getExamplesList()) {
+            String word = example.getWord();
+            assertEquals(word, lm.lemmatize(word).toString(), generated.lemmatize(word).toString());
+        }
+        for (String word : Arrays.asList("", "a", "unknownness", "xyzzy", "ß", "Ωmega", "running'")) {
+            assertEquals(word, lm.lemmatize(word).toString(), generated.lemmatize(word).toString());
+        }
+    }
+
+
+    private DefaultLemmatizer load(LemmatizerSettings settings) throws IOException {
+        DefaultLemmatizer lm = TestLexicon.read(settings);
+        lm.buildModel();
+        return lm;
+    }
+}
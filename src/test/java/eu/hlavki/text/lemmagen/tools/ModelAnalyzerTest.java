@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.IOException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ModelAnalyzerTest {
+
+    @Test
+    public void analyzeEnglish() throws IOException {
+        DefaultLemmatizer lm = TestLexicon.read(new LemmatizerSettings());
+        lm.buildModel();
+
+        ModelStatistics stats = ModelAnalyzer.analyze(lm);
+        System.out.println(stats);
+
+        assertEquals(lm.getRootNode().getTreeSize(), stats.getNodeCount());
+        long depthSum = 0;
+        for (long count : stats.getDepthHistogram()) {
+            depthSum += count;
+        }
+        assertEquals(stats.getNodeCount(), depthSum);
+        assertEquals(1, stats.getDepthHistogram()[0]);
+        assertEquals(lm.getExamples().getRules().size(), stats.getRuleCount());
+        assertTrue(stats.getTotalBytes() > 0);
+        assertFalse(stats.getTopRules(5).isEmpty());
+
+        StringBuilder dump = new StringBuilder();
+        ModelAnalyzer.dump(lm.getRootNode(), dump);
+        assertEquals(lm.getRootNode().toString(), dump.toString());
+    }
+}
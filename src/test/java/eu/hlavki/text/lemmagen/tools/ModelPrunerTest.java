@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.tools;
+
+import eu.hlavki.text.lemmagen.LemmatizerFactory;
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ModelPrunerTest {
+
+    @Test
+    public void pruneToBudget() throws IOException {
+        for (boolean front : new boolean[]{false, true}) {
+            DefaultLemmatizer lm = TestLexicon.train(front);
+            DefaultLemmatizer reference = TestLexicon.train(front);
+            WordProfile profile = new WordProfile();
+            List<String> words = TestLexicon.words();
+            for (int idx = 0; idx < words.size(); idx += 2) {
+                profile.record(words.get(idx), 1 + words.size() / (idx + 1));
+            }
+
+            ModelPruner pruner = new ModelPruner(lm, profile);
+            int total = lm.getRootNode().getTreeSize() + (front ? lm.getRootNodeFront().getTreeSize() : 0);
+            assertEquals(total, pruner.getNodeCount());
+            PruningResult full = pruner.evaluate(total);
+            assertEquals(1, full.getCoverage(), 0);
+            assertEquals(0, full.getLemmaLoss(), 0);
+            PruningResult half = pruner.evaluateBytes(pruner.getByteCount() / 2);
+            assertTrue(half.getBytes() <= pruner.getByteCount() / 2);
+            assertTrue(half.getCoverage() <= full.getCoverage());
+
+            PruningResult result = pruner.prune(total / 4);
+            int pruned = lm.getRootNode().getTreeSize() + (front ? lm.getRootNodeFront().getTreeSize() : 0);
+            assertEquals(total / 4, pruned);
+            assertEquals(pruned, result.getNodes());
+            assertTrue(result.getLemmaLoss() > 0 && result.getLemmaLoss() < 1);
+
+            File file = File.createTempFile("pruned", ".lem");
+            try {
+                LemmatizerFactory.saveToFile(lm, file);
+                Lemmatizer read;
+                try (InputStream in = new FileInputStream(file)) {
+                    read = LemmatizerFactory.read(in);
+                }
+                long lost = 0;
+                for (Map.Entry<String, Long> entry : profile.getEntries()) {
+                    String lemma = read.lemmatize(entry.getKey()).toString();
+                    assertEquals(lm.lemmatize(entry.getKey()).toString(), lemma);
+                    if (!reference.lemmatize(entry.getKey()).toString().equals(lemma)) lost += entry.getValue();
+                }
+                assertEquals(result.getLemmaLoss(), (double) lost / profile.getTotal(), 1e-9);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.training;
+
+import eu.hlavki.text.lemmagen.TestLexicon;
+import eu.hlavki.text.lemmagen.impl.DefaultLemmatizer;
+import eu.hlavki.text.lemmagen.impl.LemmatizerSettings;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TrainingMonitorTest {
+
+    @Test
+    public void reportsPhases() throws IOException {
+        final List<TrainingPhase> finished = new ArrayList<>();
+        TrainingMonitor monitor = new TrainingMonitor(new TrainingListener() {
+            @Override
+            public void phaseFinished(TrainingPhase phase, long wallTime, long allocatedBytes) {
+                finished.add(phase);
+            }
+        });
+        LemmatizerSettings settings = new LemmatizerSettings();
+        settings.setBuildFrontLemmatizer(true);
+        DefaultLemmatizer lm = new DefaultLemmatizer(settings);
+        try (BufferedReader br = TestLexicon.reader()) {
+            lm.addMultextFile(br, TestLexicon.FORMAT, monitor);
+        }
+        lm.buildModel(monitor);
+        System.out.print(monitor);
+
+        assertEquals(TrainingPhase.PARSING, finished.get(0));
+        assertEquals(TrainingPhase.JOINING, finished.get(1));
+        assertEquals(TrainingPhase.SORTING, finished.get(2));
+        assertEquals(TrainingPhase.FRONT_REAR, finished.get(3));
+        assertEquals(8, finished.size());
+        assertEquals(lm.getExamples().getSize(), monitor.getProcessed(TrainingPhase.SORTING));
+        int nodes = lm.getRootNode().getTreeSize() + lm.getRootNodeFront().getTreeSize();
+        assertTrue(monitor.getProcessed(TrainingPhase.TREE_BUILDING) >= nodes);
+        assertTrue(monitor.getProcessed(TrainingPhase.COLLAPSING) >= nodes);
+        for (TrainingPhase phase : TrainingPhase.values()) {
+            assertTrue(phase.toString(), monitor.getWallTime(phase) > 0);
+        }
+        assertEquals("have", lm.lemmatize("has").toString());
+    }
+
+
+    @Test
+    public void cancelAndRetry() throws IOException {
+        final TrainingMonitor monitor = new TrainingMonitor();
+        monitor.setProgressInterval(100);
+        monitor.setListener(new TrainingListener() {
+            @Override
+            public void progress(TrainingPhase phase, long processed) {
+                if (phase == TrainingPhase.TREE_BUILDING) monitor.cancel();
+            }
+        });
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        try (BufferedReader br = TestLexicon.reader()) {
+            lm.addMultextFile(br, TestLexicon.FORMAT, monitor);
+        }
+        try {
+            lm.buildModel(monitor);
+            fail("Training should be cancelled");
+        } catch (CancellationException e) {
+            assertTrue(monitor.isCancelled());
+        }
+
+        DefaultLemmatizer reference = new DefaultLemmatizer();
+        try (BufferedReader br = TestLexicon.reader()) {
+            reference.addMultextFile(br, TestLexicon.FORMAT);
+        }
+        lm.buildModel();
+        assertEquals(reference.getRootNode().toString(), lm.getRootNode().toString());
+    }
+
+
+    @Test(expected = CancellationException.class)
+    public void timeBudget() throws IOException {
+        TrainingMonitor monitor = new TrainingMonitor();
+        monitor.setTimeBudget(1, TimeUnit.NANOSECONDS);
+        DefaultLemmatizer lm = new DefaultLemmatizer();
+        try (BufferedReader br = TestLexicon.reader()) {
+            lm.addMultextFile(br, TestLexicon.FORMAT, monitor);
+        }
+    }
+}
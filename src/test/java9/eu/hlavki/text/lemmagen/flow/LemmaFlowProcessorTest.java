@@ -0,0 +1,299 @@
+/*
+ * Copyright 2013 Michal Hlavac
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.hlavki.text.lemmagen.flow;
+
+import eu.hlavki.text.lemmagen.api.Lemmatizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LemmaFlowProcessorTest {
+
+    private static final long TIMEOUT = 10;
+
+    /**
+     * Lemmatizes words <code>W&lt;n&gt;</code>, earlier words take longer, so batches finish out of order.
+     */
+    private static final Lemmatizer SLOW_LOWER = new Lemmatizer() {
+        @Override
+        public CharSequence lemmatize(CharSequence word) {
+            int idx = Integer.parseInt(word.toString().substring(1));
+            sleep(4 - idx % 4);
+            return word.toString().toLowerCase();
+        }
+    };
+
+    private ExecutorService executor;
+
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    public void keepsOrderForSlowSubscriber() throws InterruptedException {
+        LemmaFlowProcessor processor = new LemmaFlowProcessor(SLOW_LOWER, executor, 4);
+        Recorder recorder = new Recorder(2);
+        SubmissionPublisher<CharSequence[]> publisher = new SubmissionPublisher<>(executor, 8);
+        publisher.subscribe(processor);
+        processor.subscribe(recorder);
+        recorder.request(1);
+
+        for (int idx = 0; idx < 40; idx++) {
+            publisher.submit(new CharSequence[]{"W" + idx});
+        }
+        publisher.close();
+
+        assertTrue(recorder.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(recorder.error);
+        assertTrue(recorder.completed);
+        assertFalse(recorder.overflow);
+        List<String> lemmas = recorder.lemmas();
+        assertEquals(40, lemmas.size());
+        for (int idx = 0; idx < lemmas.size(); idx++) {
+            assertEquals("w" + idx, lemmas.get(idx));
+        }
+    }
+
+
+    @Test
+    public void honorsDownstreamDemand() throws InterruptedException {
+        LemmaFlowProcessor processor = new LemmaFlowProcessor(SLOW_LOWER, executor, 4);
+        Recorder recorder = new Recorder(0);
+        SubmissionPublisher<CharSequence[]> publisher = new SubmissionPublisher<>(executor, 8);
+        publisher.subscribe(processor);
+        processor.subscribe(recorder);
+        recorder.request(2);
+        for (int idx = 0; idx < 6; idx++) {
+            publisher.submit(new CharSequence[]{"W" + idx});
+        }
+        publisher.close();
+
+        recorder.awaitLemmas(2);
+        Thread.sleep(200);
+        assertEquals(2, recorder.lemmas().size());
+        assertFalse(recorder.completed);
+
+        recorder.request(Long.MAX_VALUE);
+        assertTrue(recorder.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(recorder.completed);
+        assertFalse(recorder.overflow);
+        assertEquals(6, recorder.lemmas().size());
+    }
+
+
+    @Test
+    public void cancelStopsPublisher() throws InterruptedException {
+        LemmaFlowProcessor processor = new LemmaFlowProcessor(SLOW_LOWER, executor, 4);
+        Recorder recorder = new Recorder(0);
+        SubmissionPublisher<CharSequence[]> publisher = new SubmissionPublisher<>(executor, 8);
+        publisher.subscribe(processor);
+        processor.subscribe(recorder);
+        recorder.request(1);
+        publisher.submit(new CharSequence[]{"W0"});
+        recorder.awaitLemmas(1);
+
+        recorder.cancel();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (publisher.getNumberOfSubscribers() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, publisher.getNumberOfSubscribers());
+        publisher.submit(new CharSequence[]{"W1"});
+        publisher.close();
+        Thread.sleep(200);
+        assertEquals(1, recorder.lemmas().size());
+        assertFalse(recorder.completed);
+        assertNull(recorder.error);
+    }
+
+
+    @Test
+    public void forwardsCancelUpstream() throws InterruptedException {
+        LemmaFlowProcessor processor = new LemmaFlowProcessor(SLOW_LOWER, executor, 4);
+        RecordingSubscription upstream = new RecordingSubscription();
+        processor.onSubscribe(upstream);
+        Recorder recorder = new Recorder(0);
+        processor.subscribe(recorder);
+        recorder.request(10);
+        assertEquals(4, upstream.requested.get());
+
+        recorder.cancel();
+        assertTrue(upstream.cancelled);
+
+        // second upstream is cancelled immediately
+        RecordingSubscription second = new RecordingSubscription();
+        processor.onSubscribe(second);
+        assertTrue(second.cancelled);
+        assertEquals(0, second.requested.get());
+    }
+
+
+    @Test
+    public void rejectsSecondSubscriber() throws InterruptedException {
+        LemmaFlowProcessor processor = new LemmaFlowProcessor(SLOW_LOWER, executor, 4);
+        SubmissionPublisher<CharSequence[]> publisher = new SubmissionPublisher<>(executor, 8);
+        publisher.subscribe(processor);
+        Recorder first = new Recorder(0);
+        processor.subscribe(first);
+
+        Recorder second = new Recorder(0);
+        processor.subscribe(second);
+        assertTrue(second.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(second.error instanceof IllegalStateException);
+        assertNotNull(second.subscription);
+
+        first.request(Long.MAX_VALUE);
+        publisher.submit(new CharSequence[]{"W0"});
+        publisher.close();
+        assertTrue(first.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(first.completed);
+        assertEquals(1, first.lemmas().size());
+        assertTrue(second.lemmas().isEmpty());
+    }
+
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Subscriber which checks that it never receives more than requested. If delay is set, it processes
+     * every batch slowly and requests next one.
+     */
+    private static final class Recorder implements Flow.Subscriber<CharSequence[]> {
+
+        private final long delay;
+        private final List<String> lemmas = new ArrayList<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+        private volatile boolean overflow;
+        private volatile boolean completed;
+        private volatile Throwable error;
+
+
+        Recorder(long delay) {
+            this.delay = delay;
+        }
+
+
+        void request(long n) {
+            demand.addAndGet(n);
+            subscription.request(n);
+        }
+
+
+        void cancel() {
+            subscription.cancel();
+        }
+
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+
+        @Override
+        public void onNext(CharSequence[] item) {
+            if (demand.decrementAndGet() < 0) overflow = true;
+            synchronized (lemmas) {
+                for (CharSequence lemma : item) {
+                    lemmas.add(lemma.toString());
+                }
+                lemmas.notifyAll();
+            }
+            if (delay > 0) {
+                sleep(delay);
+                request(1);
+            }
+        }
+
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            done.countDown();
+        }
+
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+
+
+        List<String> lemmas() {
+            synchronized (lemmas) {
+                return new ArrayList<>(lemmas);
+            }
+        }
+
+
+        void awaitLemmas(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+            synchronized (lemmas) {
+                while (lemmas.size() < count) {
+                    long wait = deadline - System.currentTimeMillis();
+                    assertTrue("Timeout waiting for " + count + " lemmas", wait > 0);
+                    lemmas.wait(wait);
+                }
+            }
+        }
+    }
+
+    private static final class RecordingSubscription implements Flow.Subscription {
+
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled;
+
+
+        @Override
+        public void request(long n) {
+            requested.addAndGet(n);
+        }
+
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}